@@ -5,7 +5,42 @@ class ExpenseManager {
         this.budget = this.loadFromStorage('budget') || 0;
         this.categoryChart = null;
         this.trendChart = null;
+        // Served by Expenso's API server: keep data there instead of in this browser
+        this.api = location.protocol.startsWith('http') ? '/api' : null;
+        this.online = false;
         this.init();
+        this.loadFromServer();
+    }
+
+    async loadFromServer() {
+        if (!this.api) return;
+        try {
+            const [expenses, budget] = await Promise.all([
+                this.request('GET', '/expenses'),
+                this.request('GET', '/budget')
+            ]);
+            this.expenses = expenses;
+            this.budget = budget.budget;
+            this.online = true;
+            this.updateUI();
+        } catch (e) {
+            // Not reachable or needs a profile sign-in: keep using local storage
+            this.online = false;
+        }
+    }
+
+    async request(method, path, body) {
+        const options = { method, headers: {} };
+        if (body !== undefined) {
+            options.headers['Content-Type'] = 'application/json';
+            options.body = JSON.stringify(body);
+        }
+        const response = await fetch(this.api + path, options);
+        if (!response.ok) {
+            const error = await response.json().catch(() => ({}));
+            throw new Error(error.error || response.statusText);
+        }
+        return response.status === 204 ? null : response.json();
     }
 
     init() {
@@ -52,7 +87,7 @@ class ExpenseManager {
         document.getElementById('expenseDate').value = today;
     }
 
-    addExpense() {
+    async addExpense() {
         const name = document.getElementById('expenseName').value.trim();
         const amount = parseFloat(document.getElementById('expenseAmount').value);
         const category = document.getElementById('expenseCategory').value;
@@ -72,8 +107,17 @@ class ExpenseManager {
             timestamp: new Date().toISOString()
         };
 
-        this.expenses.unshift(expense);
-        this.saveToStorage('expenses', this.expenses);
+        if (this.online) {
+            try {
+                this.expenses.unshift(await this.request('POST', '/expenses', { name, amount, category, date }));
+            } catch (e) {
+                this.showAlert(e.message, 'danger');
+                return;
+            }
+        } else {
+            this.expenses.unshift(expense);
+            this.saveToStorage('expenses', this.expenses);
+        }
         this.updateUI();
         this.checkBudgetAlerts();
         
@@ -84,9 +128,17 @@ class ExpenseManager {
         this.showAlert('Expense added successfully!', 'success');
     }
 
-    deleteExpense(id) {
+    async deleteExpense(id) {
+        if (this.online) {
+            try {
+                await this.request('DELETE', `/expenses/${id}`);
+            } catch (e) {
+                this.showAlert(e.message, 'danger');
+                return;
+            }
+        }
         this.expenses = this.expenses.filter(exp => exp.id !== id);
-        this.saveToStorage('expenses', this.expenses);
+        if (!this.online) this.saveToStorage('expenses', this.expenses);
         this.updateUI();
         this.checkBudgetAlerts();
     }
@@ -105,14 +157,22 @@ class ExpenseManager {
         this.renderExpenses(filteredExpenses);
     }
 
-    clearAllExpenses() {
+    async clearAllExpenses() {
+        if (this.online) {
+            try {
+                await this.request('DELETE', '/expenses');
+            } catch (e) {
+                this.showAlert(e.message, 'danger');
+                return;
+            }
+        }
         this.expenses = [];
-        this.saveToStorage('expenses', this.expenses);
+        if (!this.online) this.saveToStorage('expenses', this.expenses);
         this.updateUI();
         document.getElementById('alertContainer').innerHTML = '';
     }
 
-    setBudget() {
+    async setBudget() {
         const budgetInput = document.getElementById('monthlyBudget');
         const budget = parseFloat(budgetInput.value);
 
@@ -121,8 +181,16 @@ class ExpenseManager {
             return;
         }
 
+        if (this.online) {
+            try {
+                await this.request('PUT', '/budget', { budget });
+            } catch (e) {
+                this.showAlert(e.message, 'danger');
+                return;
+            }
+        }
         this.budget = budget;
-        this.saveToStorage('budget', this.budget);
+        if (!this.online) this.saveToStorage('budget', this.budget);
         this.updateBudgetInfo();
         this.checkBudgetAlerts();
         this.showAlert('Budget set successfully!', 'success');
@@ -163,7 +231,7 @@ class ExpenseManager {
         expensesList.innerHTML = expenses.map(expense => `
             <div class="expense-item">
                 <div class="expense-info">
-                    <div class="expense-name">${expense.name}</div>
+                    <div class="expense-name">${this.escapeHtml(expense.name)}</div>
                     <div class="expense-meta">
                         <span class="expense-category">${this.getCategoryEmoji(expense.category)} ${expense.category}</span>
                         <span class="expense-date">${this.formatDate(expense.date)}</span>
@@ -465,6 +533,12 @@ class ExpenseManager {
         return dates;
     }
 
+    escapeHtml(text) {
+        const div = document.createElement('div');
+        div.textContent = text;
+        return div.innerHTML;
+    }
+
     getCategoryEmoji(category) {
         const emojis = {
             'Food': '🍔',
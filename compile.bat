@@ -6,9 +6,19 @@ REM Create bin directory if it doesn't exist
 if not exist "bin" mkdir bin
 
 REM Compile all Java files (excluding GmailConnector.java which requires additional dependencies)
-javac -d bin -sourcepath src src\com\expenso\*.java src\com\expenso\model\*.java src\com\expenso\data\*.java src\com\expenso\ui\ExpensoApp.java src\com\expenso\ui\ChartPanel.java src\com\expenso\ui\ImportTransactionsDialog.java src\com\expenso\ui\UpiPaymentDialog.java src\com\expenso\util\BankStatementParser.java src\com\expenso\util\EmailTransactionParser.java src\com\expenso\util\QRCodeGenerator.java
+javac -d bin -sourcepath src src\com\expenso\*.java src\com\expenso\model\*.java src\com\expenso\data\*.java src\com\expenso\ui\ExpensoApp.java src\com\expenso\ui\ChartPanel.java src\com\expenso\ui\ImportTransactionsDialog.java src\com\expenso\ui\UpiPaymentDialog.java src\com\expenso\util\BankStatementParser.java src\com\expenso\util\EmailTransactionParser.java src\com\expenso\util\QRCodeGenerator.java src\com\expenso\util\UpiQrBatch.java
 
 if %ERRORLEVEL% EQU 0 (
+    REM Package the classes and record an AppCDS archive of the classes startup loads.
+    REM The training run opens the window on an empty data folder and closes it once
+    REM everything has been shown; run.bat then maps the archive instead of loading
+    REM those classes one by one. Needs JDK 13 or newer, otherwise run.bat starts without it.
+    echo Creating AppCDS archive...
+    if exist "bin\expenso.jsa" del "bin\expenso.jsa"
+    jar cfm bin\Expenso.jar MANIFEST.MF -C bin com
+    java -XX:ArchiveClassesAtExit=bin\expenso.jsa -Duser.home=bin\cds -Dexpenso.startup.exit=true -jar bin\Expenso.jar
+    if errorlevel 1 echo AppCDS archive skipped - Expenso will start without it.
+    
     echo.
     echo ========================================
     echo Compilation successful!
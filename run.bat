@@ -11,7 +11,12 @@ if not exist "bin" (
     exit /b 1
 )
 
-REM Run the application
-java -cp bin com.expenso.Main
+REM Run the application, from the AppCDS archive made by compile.bat when there is one.
+REM Startup times are kept in .expenso\startup.log in your home folder.
+if exist "bin\expenso.jsa" (
+    java -XX:SharedArchiveFile=bin\expenso.jsa -Xshare:auto -jar bin\Expenso.jar
+) else (
+    java -cp bin com.expenso.Main
+)
 
 pause
@@ -0,0 +1,395 @@
+package com.expenso;
+
+import com.expenso.data.DataManager;
+import com.expenso.data.StatementHistory;
+import com.expenso.data.UserStore;
+import com.expenso.model.Expense;
+import com.expenso.model.Transaction;
+import com.expenso.model.User;
+import com.expenso.util.ApiServer;
+import com.expenso.util.AuthService;
+import com.expenso.util.BankStatementParser;
+import com.expenso.util.ExpenseExporter;
+import com.expenso.util.ExpenseFilter;
+import com.expenso.util.ExpenseSummary;
+import com.expenso.util.ImportJob;
+import com.expenso.util.ImportSources;
+import com.expenso.util.Json;
+import com.expenso.util.MboxImporter;
+import com.expenso.util.StatementReconciler;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command-line entry point for running Expenso without a display
+ * Imports statements and mailboxes, exports expenses and prints summaries
+ * using the same data files as the window. Only data and parser classes are
+ * loaded, never AWT or Swing, so it starts quickly on servers.
+ */
+public class Cli {
+    private static final String USAGE = String.join(System.lineSeparator(),
+        "Usage: java -cp Expenso.jar com.expenso.Cli [--profile NAME] [--data DIR] COMMAND ...",
+        "",
+        "Commands:",
+        "  import FILE...            Import bank statements (csv, ofx, qif, xml, .gz, .zip)",
+        "                            and mailboxes (mbox, eml); already imported ones are skipped",
+        "  export [--format csv|json|ndjson|expc] [--out FILE] [--from DATE] [--to DATE]",
+        "         [--category NAME] [--q TEXT]",
+        "                            Write expenses, newest first, to FILE or standard output;",
+        "                            expc is a compact columnar file",
+        "  summary [--month YYYY-MM] [--json]",
+        "                            Totals by category and month, and the month against the budget",
+        "  budget [AMOUNT]           Show or set the monthly budget",
+        "  serve [--port N]          Run the HTTP API until stopped",
+        "",
+        "Once profiles exist, --profile is required; the password is read from the",
+        "EXPENSO_PASSWORD environment variable or asked for on the console.",
+        "--data works on a data folder directly, without signing in.");
+    
+    // Exit codes
+    private static final int OK = 0;
+    private static final int FAILED = 1;
+    private static final int USAGE_ERROR = 2;
+    
+    private final PrintStream out;
+    private final PrintStream err;
+    private final Map<String, String> options = new HashMap<>();
+    private final List<String> arguments = new ArrayList<>();
+    
+    /**
+     * Thrown for wrong arguments; the message is shown with a hint to --help
+     */
+    private static class UsageException extends Exception {
+        UsageException(String message) {
+            super(message);
+        }
+    }
+    
+    public Cli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+    
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        System.exit(new Cli(System.out, System.err).run(args));
+    }
+    
+    /**
+     * @return process exit code: 0 on success, 1 if the command failed, 2 for bad arguments
+     */
+    public int run(String[] args) {
+        try {
+            parseArguments(args);
+            if (arguments.isEmpty() || arguments.get(0).equals("help") || options.containsKey("help")) {
+                out.println(USAGE);
+                return arguments.isEmpty() && !options.containsKey("help") ? USAGE_ERROR : OK;
+            }
+            String command = arguments.remove(0);
+            switch (command) {
+                case "import":
+                    return importFiles();
+                case "export":
+                    return export();
+                case "summary":
+                    return summary();
+                case "budget":
+                    return budget();
+                case "serve":
+                    return serve();
+                default:
+                    throw new UsageException("Unknown command: " + command);
+            }
+        } catch (UsageException e) {
+            err.println(e.getMessage());
+            err.println("Run with --help for usage.");
+            return USAGE_ERROR;
+        } catch (Exception e) {
+            err.println("Error: " + e.getMessage());
+            return FAILED;
+        }
+    }
+    
+    private void parseArguments(String[] args) throws UsageException {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--help") || arg.equals("-h") || arg.equals("--json")) {
+                options.put(arg.replaceFirst("^-+", ""), "true");
+            } else if (arg.startsWith("--")) {
+                if (i + 1 == args.length) {
+                    throw new UsageException("Missing value for " + arg);
+                }
+                options.put(arg.substring(2), args[++i]);
+            } else {
+                arguments.add(arg);
+            }
+        }
+        if (options.containsKey("h")) {
+            options.put("help", "true");
+        }
+    }
+    
+    /**
+     * Open the data of the chosen profile, signing in when profiles exist
+     */
+    private DataManager openData() throws Exception {
+        String dir = options.get("data");
+        if (dir != null) {
+            File directory = new File(dir);
+            DataManager.setActiveDirectory(directory);
+            return new DataManager(directory);
+        }
+        
+        UserStore users = new UserStore();
+        String profile = options.get("profile");
+        if (profile == null) {
+            if (users.hasUsers()) {
+                throw new UsageException("Choose a profile with --profile NAME");
+            }
+            return new DataManager();
+        }
+        User user = users.authenticate(profile, readPassword(profile));
+        if (user == null) {
+            throw new IOException("Wrong profile name or password");
+        }
+        File directory = users.getDirectory(user);
+        DataManager.setActiveDirectory(directory);
+        return new DataManager(directory);
+    }
+    
+    private String readPassword(String profile) throws IOException {
+        String password = System.getenv("EXPENSO_PASSWORD");
+        if (password != null) {
+            return password;
+        }
+        Console console = System.console();
+        if (console == null) {
+            throw new IOException("Set EXPENSO_PASSWORD to sign in without a console");
+        }
+        char[] typed = console.readPassword("Password for %s: ", profile);
+        return typed != null ? new String(typed) : "";
+    }
+    
+    /**
+     * Import each file through the same pipeline as the watched folder
+     */
+    private int importFiles() throws Exception {
+        if (arguments.isEmpty()) {
+            throw new UsageException("Name at least one file to import");
+        }
+        List<File> files = new ArrayList<>();
+        for (String name : arguments) {
+            File file = new File(name);
+            if (!file.isFile()) {
+                throw new UsageException("No such file: " + name);
+            }
+            if (!MboxImporter.isSupportedFile(file) && !BankStatementParser.isSupportedFile(file)) {
+                throw new UsageException("Not a statement or mailbox: " + name);
+            }
+            files.add(file);
+        }
+        
+        DataManager data = openData();
+        StatementHistory history = new StatementHistory();
+        int failures = 0;
+        try {
+            for (File file : files) {
+                if (!importFile(data, history, file)) {
+                    failures++;
+                }
+            }
+        } finally {
+            data.close();
+        }
+        return failures == 0 ? OK : FAILED;
+    }
+    
+    private boolean importFile(DataManager data, StatementHistory history, File file) throws InterruptedException {
+        boolean mailbox = MboxImporter.isSupportedFile(file);
+        ImportJob.Committer committer = new ImportJob.Committer() {
+            private boolean changed;
+            
+            public void commit(List<ImportJob.Entry> entries) {
+                List<Transaction> transactions = new ArrayList<>(entries.size());
+                for (ImportJob.Entry entry : entries) {
+                    transactions.add(entry.getTransaction());
+                }
+                changed |= data.addTransactions(transactions) > 0;
+            }
+            
+            public void complete() {
+                data.saveImports(changed);
+            }
+        };
+        
+        ImportJob job = new ImportJob(mailbox ? ImportSources.mailbox(file) : ImportSources.bankStatement(file), committer);
+        job.setDuplicateDetector(data.getDuplicateDetector());
+        StatementReconciler reconciler = mailbox || BankStatementParser.isZip(file.getName()) ? null : new StatementReconciler();
+        job.setReconciler(reconciler);
+        long start = System.nanoTime();
+        job.start();
+        job.await();
+        
+        ImportJob.Progress progress = job.getProgress();
+        if (job.getState() != ImportJob.State.COMPLETED) {
+            Throwable error = job.getError();
+            err.println(file.getName() + ": import failed" + (error != null ? ": " + error.getMessage() : ""));
+            return false;
+        }
+        out.printf("%s: %d transactions, %d new, %d duplicates skipped (%.1f s)%n", file.getName(),
+            progress.getTransactions(), progress.getCommitted(), progress.getDuplicates(),
+            (System.nanoTime() - start) / 1e9);
+        if (reconciler != null) {
+            StatementReconciler.Result result = reconciler.getResult();
+            for (StatementReconciler.Issue issue : result.getIssues()) {
+                err.println("  warning: " + issue);
+            }
+            for (String warning : history.check(result)) {
+                err.println("  warning: " + warning);
+            }
+            history.record(result);
+        }
+        return true;
+    }
+    
+    private int export() throws Exception {
+        ExpenseExporter.Format format = ExpenseExporter.Format.of(options.getOrDefault("format", "csv"));
+        if (format == null) {
+            throw new UsageException("Unknown format: " + options.get("format"));
+        }
+        ExpenseFilter filter = parseFilter();
+        DataManager data = openData();
+        
+        String target = options.get("out");
+        boolean toFile = target != null && !target.equals("-");
+        long start = System.nanoTime();
+        long count;
+        if (toFile) {
+            try (ExpenseExporter exporter = new ExpenseExporter(new FileOutputStream(target), format, filter)) {
+                count = data.exportExpenses(exporter);
+            }
+        } else {
+            count = data.exportExpenses(new ExpenseExporter(out, format, filter));
+        }
+        if (toFile) {
+            out.printf("Exported %d expenses to %s (%.1f s)%n", count, target, (System.nanoTime() - start) / 1e9);
+        }
+        return OK;
+    }
+    
+    private ExpenseFilter parseFilter() throws UsageException {
+        LocalDate from = parseDate("from");
+        LocalDate to = parseDate("to");
+        Expense.Category category = null;
+        if (options.containsKey("category")) {
+            category = Expense.Category.parse(options.get("category"));
+            if (category == null) {
+                throw new UsageException("Unknown category: " + options.get("category"));
+            }
+        }
+        return new ExpenseFilter(category, from, to, options.get("q"));
+    }
+    
+    private LocalDate parseDate(String option) throws UsageException {
+        String value = options.get(option);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new UsageException("--" + option + " takes a date like 2024-03-31");
+        }
+    }
+    
+    private int summary() throws Exception {
+        YearMonth month = YearMonth.now();
+        if (options.containsKey("month")) {
+            try {
+                month = YearMonth.parse(options.get("month"));
+            } catch (DateTimeParseException e) {
+                throw new UsageException("--month takes a month like 2024-03");
+            }
+        }
+        DataManager data = openData();
+        ExpenseSummary summary = ExpenseSummary.of(data.getExpensesSnapshot(), data.getBudget(), month);
+        
+        if (options.containsKey("json")) {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            summary.writeJson(new Json.Writer(writer));
+            writer.write('\n');
+            writer.flush();
+            return OK;
+        }
+        out.printf("%d expenses, %s in total%n", summary.getCount(), ExpenseSummary.format(summary.getTotal()));
+        out.printf("%s: spent %s", month, ExpenseSummary.format(summary.getMonthTotal()));
+        if (summary.getBudget() > 0) {
+            out.printf(" of %s budget, %s %s", ExpenseSummary.format(summary.getBudget()),
+                ExpenseSummary.format(Math.abs(summary.getRemaining())), summary.getRemaining() >= 0 ? "left" : "over");
+        }
+        out.println();
+        if (!summary.getByCategory().isEmpty()) {
+            out.println();
+            out.println("By category:");
+            for (Map.Entry<Expense.Category, long[]> entry : summary.getByCategory().entrySet()) {
+                out.printf("  %-14s %14s  %6d%n", entry.getKey().getLabel(),
+                    ExpenseSummary.format(entry.getValue()[0]), entry.getValue()[1]);
+            }
+            out.println();
+            out.println("By month:");
+            for (Map.Entry<YearMonth, Long> entry : summary.getByMonth().entrySet()) {
+                out.printf("  %-14s %14s%n", entry.getKey(), ExpenseSummary.format(entry.getValue()));
+            }
+        }
+        return OK;
+    }
+    
+    private int budget() throws Exception {
+        DataManager data = openData();
+        if (!arguments.isEmpty()) {
+            double budget;
+            try {
+                budget = Double.parseDouble(arguments.get(0));
+            } catch (NumberFormatException e) {
+                throw new UsageException("Not an amount: " + arguments.get(0));
+            }
+            if (!(budget > 0) || Double.isInfinite(budget)) {
+                throw new UsageException("The budget must be more than 0");
+            }
+            data.setBudget(budget);
+        }
+        out.println("Monthly budget: " + ExpenseSummary.format(ExpenseSummary.toPaise(data.getBudget())));
+        return OK;
+    }
+    
+    private int serve() throws Exception {
+        int port = ApiServer.DEFAULT_PORT;
+        if (options.containsKey("port")) {
+            try {
+                port = Integer.parseInt(options.get("port"));
+            } catch (NumberFormatException e) {
+                throw new UsageException("Not a port: " + options.get("port"));
+            }
+        }
+        // With --data the folder is served as is; otherwise clients sign in to profiles themselves
+        AuthService auth = options.containsKey("data") ? null : new AuthService(new UserStore());
+        ApiServer api = new ApiServer(port, auth, auth == null ? openData() : null);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            api.stop();
+            if (auth != null) {
+                auth.shutdown();
+            }
+        }));
+        api.start();
+        out.println("Expenso API on http://localhost:" + api.getPort() + "/api/, Ctrl+C to stop");
+        Thread.currentThread().join();
+        return OK;
+    }
+}
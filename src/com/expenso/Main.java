@@ -1,6 +1,12 @@
 package com.expenso;
 
+import com.expenso.data.DataManager;
+import com.expenso.data.UserStore;
+import com.expenso.model.User;
 import com.expenso.ui.ExpensoApp;
+import com.expenso.ui.ProfileDialog;
+import com.expenso.util.AuthService;
+import com.expenso.util.StartupMetrics;
 import javax.swing.*;
 
 /**
@@ -8,6 +14,13 @@ import javax.swing.*;
  */
 public class Main {
     public static void main(String[] args) {
+        // With arguments, run a command without opening the window (see Cli)
+        if (args.length > 0) {
+            Cli.main(args);
+            return;
+        }
+        StartupMetrics.started();
+        
         // Set system look and feel
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -15,9 +28,24 @@ public class Main {
             System.err.println("Failed to set look and feel: " + e.getMessage());
         }
         
-        // Launch application on EDT
+        // Launch application on EDT, signing in first once profiles exist
         SwingUtilities.invokeLater(() -> {
-            ExpensoApp app = new ExpensoApp();
+            UserStore users = new UserStore();
+            AuthService auth = new AuthService(users);
+            User user = null;
+            if (users.hasUsers()) {
+                // Typing the password is not part of the startup time
+                StartupMetrics.signInStarted();
+                AuthService.Session session = ProfileDialog.signIn(null, auth, null);
+                StartupMetrics.signInFinished();
+                if (session == null) {
+                    System.exit(0);
+                }
+                user = session.getUser();
+                DataManager.setActiveDirectory(users.getDirectory(user));
+            }
+            // The window shows at once and loads the data behind a skeleton view
+            ExpensoApp app = new ExpensoApp(auth, user);
             app.setVisible(true);
         });
     }
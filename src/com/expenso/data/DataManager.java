@@ -1,41 +1,132 @@
 package com.expenso.data;
 
 import com.expenso.model.Expense;
+import com.expenso.model.Transaction;
+import com.expenso.util.ExpenseExporter;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Manages data persistence for expenses and budget
+ * Each instance works on one data folder: the Expenso directory itself, or a
+ * profile's folder once profiles are in use (see UserStore).
  */
 public class DataManager {
     private static final String DATA_DIR = System.getProperty("user.home") + File.separator + ".expenso";
-    private static final String EXPENSES_FILE = DATA_DIR + File.separator + "expenses.dat";
-    private static final String BUDGET_FILE = DATA_DIR + File.separator + "budget.dat";
+    private static final String EXPENSES_FILE = "expenses.dat";
+    private static final String BUDGET_FILE = "budget.dat";
     
+    // Folder of the signed-in profile, or null before profiles are used
+    private static volatile File activeDirectory;
+    
+    private final File directory;
     private List<Expense> expenses;
     private double budget;
+    // Bumped by every change to expenses or budget
+    private volatile long version;
+    // Highest expense id handed out, so every expense gets its own
+    private long lastId;
+    private DuplicateDetector duplicateDetector;
+    private UpiPaymentStore upiPayments;
+    
+    /**
+     * Directory holding the signed-in profile's data files
+     */
+    public static File getDataDirectory() {
+        File dir = activeDirectory;
+        return dir != null ? dir : getRootDirectory();
+    }
+    
+    /**
+     * Expenso directory in the user's home, holding the profile list
+     */
+    public static File getRootDirectory() {
+        File dir = new File(DATA_DIR);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        return dir;
+    }
+    
+    /**
+     * Make a profile's folder the one used by getDataDirectory(), on sign-in
+     */
+    public static void setActiveDirectory(File directory) {
+        activeDirectory = directory;
+    }
     
     public DataManager() {
+        this(getDataDirectory());
+    }
+    
+    /**
+     * Data in a given folder, e.g. a profile other than the signed-in one
+     */
+    public DataManager(File directory) {
+        this.directory = directory;
         createDataDirectory();
         loadData();
     }
     
     private void createDataDirectory() {
-        File dir = new File(DATA_DIR);
-        if (!dir.exists()) {
-            dir.mkdirs();
+        if (!directory.exists()) {
+            directory.mkdirs();
         }
     }
     
-    public void loadData() {
+    public File getDirectory() {
+        return directory;
+    }
+    
+    public synchronized void loadData() {
         expenses = loadExpenses();
         budget = loadBudget();
+        if (repairIds()) {
+            saveExpenses();
+        }
+        version++;
+    }
+    
+    /**
+     * Give expenses that share an id a new one; older versions used the
+     * creation time, which all rows of one import had in common
+     * @return whether any id changed
+     */
+    private boolean repairIds() {
+        lastId = 0;
+        for (Expense expense : expenses) {
+            lastId = Math.max(lastId, expense.getId());
+        }
+        Set<Long> seen = new HashSet<>();
+        boolean changed = false;
+        for (Expense expense : expenses) {
+            if (!seen.add(expense.getId())) {
+                expense.setId(++lastId);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Ids start from the creation time; bump them so expenses added in the
+     * same millisecond, e.g. by an import, stay unique
+     */
+    private void assignId(Expense expense) {
+        long id = Math.max(expense.getId(), lastId + 1);
+        expense.setId(id);
+        lastId = id;
     }
     
     @SuppressWarnings("unchecked")
     private List<Expense> loadExpenses() {
-        File file = new File(EXPENSES_FILE);
+        File file = new File(directory, EXPENSES_FILE);
         if (!file.exists()) {
             return new ArrayList<>();
         }
@@ -49,7 +140,7 @@ public class DataManager {
     }
     
     private double loadBudget() {
-        File file = new File(BUDGET_FILE);
+        File file = new File(directory, BUDGET_FILE);
         if (!file.exists()) {
             return 0.0;
         }
@@ -62,8 +153,8 @@ public class DataManager {
         }
     }
     
-    public void saveExpenses() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(EXPENSES_FILE))) {
+    public synchronized void saveExpenses() {
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(new File(directory, EXPENSES_FILE)))) {
             oos.writeObject(expenses);
         } catch (Exception e) {
             System.err.println("Error saving expenses: " + e.getMessage());
@@ -71,46 +162,214 @@ public class DataManager {
     }
     
     public void saveBudget() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(BUDGET_FILE))) {
+        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(new File(directory, BUDGET_FILE)))) {
             oos.writeDouble(budget);
         } catch (Exception e) {
             System.err.println("Error saving budget: " + e.getMessage());
         }
     }
     
+    /**
+     * Index of already imported transactions, opened on first use
+     */
+    public synchronized DuplicateDetector getDuplicateDetector() {
+        if (duplicateDetector == null) {
+            duplicateDetector = new DuplicateDetector(directory);
+        }
+        return duplicateDetector;
+    }
+    
+    /**
+     * Ledger of UPI payments, opened on first use
+     */
+    public synchronized UpiPaymentStore getUpiPayments() {
+        if (upiPayments == null) {
+            upiPayments = new UpiPaymentStore(new File(directory, UpiPaymentStore.PAYMENTS_FILE));
+        }
+        return upiPayments;
+    }
+    
     public List<Expense> getExpenses() {
         return expenses;
     }
     
-    public void addExpense(Expense expense) {
+    /**
+     * Copy of the expenses, newest first, safe to read from any thread
+     */
+    public synchronized List<Expense> getExpensesSnapshot() {
+        return new ArrayList<>(expenses);
+    }
+    
+    /**
+     * Write the expenses, newest first, straight from the loaded list without copying it
+     * Changes wait until the export is done, so use a snapshot for slow readers such as network clients.
+     * @return number of expenses written
+     */
+    public synchronized long exportExpenses(ExpenseExporter exporter) throws IOException {
+        long written = exporter.writeAll(expenses);
+        exporter.finish();
+        return written;
+    }
+    
+    /**
+     * Counter that changes whenever expenses or the budget do, e.g. for HTTP ETags
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    public synchronized void addExpense(Expense expense) {
+        assignId(expense);
         expenses.add(0, expense);
+        version++;
         saveExpenses();
     }
     
-    public void deleteExpense(long id) {
-        expenses.removeIf(e -> e.getId() == id);
-        saveExpenses();
+    /**
+     * Add transactions that were not imported before as expenses
+     * Credits are skipped. Saves once for the whole batch.
+     * @return number of expenses added
+     */
+    public synchronized int importTransactions(List<Transaction> transactions) {
+        return importTransactions(transactions, null);
+    }
+    
+    /**
+     * Like importTransactions(List), keeping expenses already made for the
+     * transactions, e.g. categorized for a preview
+     * @param madeExpenses Expense for each transaction, in the same order
+     * @return number of expenses added
+     */
+    public synchronized int importTransactions(List<Transaction> transactions, List<Expense> madeExpenses) {
+        int added = addTransactions(transactions, madeExpenses);
+        saveImports(added > 0);
+        return added;
+    }
+    
+    /**
+     * Like importTransactions but without writing to disk, for callers that
+     * import in several batches; call saveImports() after the last one
+     * @return number of expenses added
+     */
+    public synchronized int addTransactions(List<Transaction> transactions) {
+        return addTransactions(transactions, null);
+    }
+    
+    private int addTransactions(List<Transaction> transactions, List<Expense> madeExpenses) {
+        DuplicateDetector detector = getDuplicateDetector();
+        UpiPaymentStore payments = getUpiPayments();
+        boolean matchPayments = payments.getPendingCount() > 0;
+        List<Expense> added = new ArrayList<>();
+        Map<Transaction, Expense> prepared = null;
+        if (madeExpenses != null) {
+            prepared = new IdentityHashMap<>();
+            for (int i = 0; i < transactions.size(); i++) {
+                prepared.put(transactions.get(i), madeExpenses.get(i));
+            }
+        }
+        
+        for (Transaction txn : detector.filterNew(transactions)) {
+            Expense expense = prepared != null ? prepared.get(txn) : txn.toExpense();
+            detector.record(txn);
+            if (expense != null) {
+                // Before matching, so the payment links to the final id
+                assignId(expense);
+                expense.setImportKey(DuplicateDetector.keyOf(txn));
+            }
+            if (matchPayments) {
+                payments.match(txn, expense);
+            }
+            if (expense != null) {
+                added.add(expense);
+            }
+        }
+        
+        // Newest first, shifting the existing list only once
+        Collections.reverse(added);
+        expenses.addAll(0, added);
+        if (!added.isEmpty()) {
+            version++;
+        }
+        return added.size();
+    }
+    
+    /**
+     * Persist the duplicate index and, if anything was added, the expenses
+     */
+    public synchronized void saveImports(boolean expensesChanged) {
+        getDuplicateDetector().save();
+        getUpiPayments().save();
+        if (expensesChanged) {
+            saveExpenses();
+        }
+    }
+    
+    /**
+     * Save and release the data files, e.g. before switching profile
+     */
+    public synchronized void close() {
+        if (duplicateDetector != null) {
+            duplicateDetector.close();
+            duplicateDetector = null;
+        }
+        if (upiPayments != null) {
+            upiPayments.save();
+            upiPayments = null;
+        }
+    }
+    
+    /**
+     * @return whether an expense with the id existed
+     */
+    public synchronized boolean deleteExpense(long id) {
+        List<Long> importKeys = new ArrayList<>();
+        boolean removed = expenses.removeIf(e -> {
+            if (e.getId() != id) return false;
+            if (e.getImportKey() != 0) importKeys.add(e.getImportKey());
+            return true;
+        });
+        if (removed) {
+            version++;
+            saveExpenses();
+        }
+        if (!importKeys.isEmpty()) {
+            // Importing the statement again brings the expense back
+            DuplicateDetector detector = getDuplicateDetector();
+            for (long key : importKeys) {
+                detector.forget(key);
+            }
+            detector.save();
+        }
+        return removed;
     }
     
-    public void clearAllExpenses() {
+    /**
+     * Remove every expense and forget every import, so statements can be imported afresh
+     */
+    public synchronized void clearAllExpenses() {
         expenses.clear();
+        version++;
         saveExpenses();
+        DuplicateDetector detector = getDuplicateDetector();
+        detector.clear();
+        detector.save();
     }
     
-    public double getBudget() {
+    public synchronized double getBudget() {
         return budget;
     }
     
-    public void setBudget(double budget) {
+    public synchronized void setBudget(double budget) {
         this.budget = budget;
+        version++;
         saveBudget();
     }
     
-    public double getTotalExpenses() {
+    public synchronized double getTotalExpenses() {
         return expenses.stream().mapToDouble(Expense::getAmount).sum();
     }
     
-    public double getCurrentMonthExpenses() {
+    public synchronized double getCurrentMonthExpenses() {
         int currentMonth = java.time.LocalDate.now().getMonthValue();
         int currentYear = java.time.LocalDate.now().getYear();
         
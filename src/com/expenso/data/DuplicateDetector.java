@@ -0,0 +1,570 @@
+package com.expenso.data;
+
+import com.expenso.model.Transaction;
+import com.expenso.util.BloomFilter;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Detects transactions that were already imported
+ * Keys on reference number, falling back to a (date, amount, description) fingerprint
+ * plus the row's occurrence number within its statement, so two identical
+ * purchases on one day are both kept while a re-import still matches them.
+ * A Bloom filter answers most lookups in memory; positives are confirmed against
+ * a memory-mapped open-addressing index so history never has to be loaded into the heap.
+ *
+ * The index grows by writing a new generation file (dedupe.1.idx, dedupe.2.idx, ...)
+ * and switching to it, so a mapped file is never renamed or overwritten, which
+ * Windows does not allow. The Bloom file records the generation and size of the
+ * index it was built from and is rebuilt when they no longer match, e.g. after
+ * a crash between recording transactions and saving.
+ */
+public class DuplicateDetector {
+
+    // Generation 0; later generations are dedupe.<n>.idx
+    private static final String INDEX_FILE = "dedupe.idx";
+    private static final String BLOOM_FILE = "dedupe.bloom";
+
+    private static final int INDEX_MAGIC = 0x45494458; // "EIDX"
+    private static final int HEADER_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final double MAX_LOAD = 0.6;
+    private static final double BLOOM_FPP = 0.01;
+
+    private final File dataDir;
+    private FileChannel channel;
+    private MappedByteBuffer table;
+    private int capacity;
+    private int size;
+    private int generation;
+    private BloomFilter bloom;
+    private long bloomCapacity;
+
+    public DuplicateDetector(File dataDir) {
+        this.dataDir = dataDir;
+        try {
+            openIndex();
+            loadBloom();
+        } catch (IOException e) {
+            System.err.println("Error opening duplicate index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Check whether a transaction has already been recorded
+     */
+    public synchronized boolean isDuplicate(Transaction txn) {
+        return containsKey(keyOf(txn));
+    }
+
+    /**
+     * Record a transaction as imported
+     */
+    public synchronized void record(Transaction txn) {
+        long key = keyOf(txn);
+        if (table == null || indexContains(key)) {
+            return;
+        }
+        if (size + 1 > capacity * MAX_LOAD) {
+            try {
+                resize(capacity << 1);
+            } catch (IOException e) {
+                // The current table keeps working, only with longer probes
+                System.err.println("Error growing duplicate index: " + e.getMessage());
+            }
+        }
+        if (size + 1 >= capacity) {
+            System.err.println("Error updating duplicate index: index is full");
+            return;
+        }
+        indexInsert(key);
+        if (size > bloomCapacity) {
+            rebuildBloom(bloomCapacity << 1);
+        } else {
+            bloom.add(key);
+        }
+    }
+
+    /**
+     * Forget an imported transaction, e.g. when its expense is deleted, so importing
+     * its statement again brings it back
+     * Entries behind it in the probe sequence are shifted back, so no tombstones
+     * are needed. The Bloom filter keeps the bit, which only costs an index lookup.
+     */
+    synchronized void forget(long key) {
+        if (table == null) return;
+        int mask = capacity - 1;
+        int hole = (int) (key ^ (key >>> 32)) & mask;
+        while (true) {
+            long value = table.getLong(HEADER_SIZE + hole * 8);
+            if (value == 0) return;
+            if (value == key) break;
+            hole = (hole + 1) & mask;
+        }
+        for (int next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+            long value = table.getLong(HEADER_SIZE + next * 8);
+            if (value == 0) break;
+            int home = (int) (value ^ (value >>> 32)) & mask;
+            // Move it into the hole if the hole lies on its probe path
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table.putLong(HEADER_SIZE + hole * 8, value);
+                hole = next;
+            }
+        }
+        table.putLong(HEADER_SIZE + hole * 8, 0);
+        size--;
+        table.putInt(8, size);
+    }
+
+    /**
+     * Forget every imported transaction, e.g. when all expenses are cleared
+     */
+    public synchronized void clear() {
+        if (table == null) return;
+        for (int i = 0; i < capacity; i++) {
+            table.putLong(HEADER_SIZE + i * 8, 0);
+        }
+        size = 0;
+        table.putInt(8, size);
+        rebuildBloom(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Return the transactions that are neither previously imported nor repeated within the batch
+     */
+    public synchronized List<Transaction> filterNew(List<Transaction> transactions) {
+        List<Transaction> result = new ArrayList<>();
+        Set<Long> batchKeys = new HashSet<>();
+
+        // A list that was not counted while it was read is taken as one statement
+        Occurrences occurrences = new Occurrences();
+        for (Transaction txn : transactions) {
+            if (txn.getOccurrence() == 0) {
+                occurrences.number(txn);
+            }
+        }
+        for (Transaction txn : transactions) {
+            long key = keyOf(txn);
+            if (!containsKey(key) && batchKeys.add(key)) {
+                result.add(txn);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Flush the index and persist the Bloom filter
+     */
+    public synchronized void save() {
+        if (table == null) return;
+        table.putInt(8, size);
+        table.force();
+
+        File tmp = new File(dataDir, BLOOM_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(BloomFilter.MAGIC);
+            out.writeInt(generation);
+            out.writeInt(size);
+            out.writeLong(bloomCapacity);
+            bloom.writeTo(out);
+        } catch (IOException e) {
+            System.err.println("Error saving bloom filter: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), new File(dataDir, BLOOM_FILE).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Error saving bloom filter: " + e.getMessage());
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void close() {
+        save();
+        closeChannel();
+    }
+
+    /**
+     * Build the dedupe key for a transaction
+     * Repeats of a fingerprint get "#n" appended; the first keeps the bare key,
+     * so indexes written before occurrences were counted still match.
+     */
+    public static String dedupeKey(Transaction txn) {
+        String key = baseKey(txn);
+        if (!hasReference(txn) && txn.getOccurrence() > 1) {
+            key += "#" + txn.getOccurrence();
+        }
+        return key;
+    }
+
+    /**
+     * Whether the transaction is keyed by its bank reference rather than a fingerprint
+     */
+    public static boolean hasReference(Transaction txn) {
+        String ref = txn.getReferenceNumber();
+        return ref != null && !ref.trim().isEmpty();
+    }
+
+    private static String baseKey(Transaction txn) {
+        if (hasReference(txn)) {
+            return "ref:" + txn.getReferenceNumber().trim().toUpperCase();
+        }
+        return "fp:" + txn.getDate() + "|" + Math.round(txn.getAmount() * 100) + "|"
+            + normalizeDescription(txn.getDescription());
+    }
+
+    /**
+     * Lowercase, keep letters and digits, collapse everything else to single spaces
+     */
+    static String normalizeDescription(String description) {
+        if (description == null) return "";
+        StringBuilder sb = new StringBuilder(description.length());
+        boolean space = false;
+        for (int i = 0; i < description.length(); i++) {
+            char c = description.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && sb.length() > 0) sb.append(' ');
+                sb.append(Character.toLowerCase(c));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    private boolean containsKey(long key) {
+        if (bloom == null || !bloom.mightContain(key)) {
+            return false;
+        }
+        return table != null && indexContains(key);
+    }
+
+    static long keyOf(Transaction txn) {
+        long h = hash64(dedupeKey(txn));
+        return h == 0 ? 1 : h; // 0 marks an empty slot
+    }
+
+    /**
+     * 64-bit FNV-1a with a murmur finalizer for good bit dispersion
+     */
+    private static long hash64(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // Index file layout: magic, capacity, size, generation, then capacity longs
+
+    /**
+     * Map the newest valid generation, setting damaged ones aside
+     * If none is usable a fresh, empty index is started so duplicates are
+     * still caught from here on.
+     */
+    private void openIndex() throws IOException {
+        List<Integer> generations = findGenerations();
+        int newest = generations.isEmpty() ? -1 : generations.get(0);
+        for (int gen : generations) {
+            File file = indexFile(gen);
+            try {
+                mapIndex(file, gen);
+            } catch (CorruptIndexException e) {
+                closeChannel();
+                System.err.println("Duplicate index " + file.getName() + " is damaged, starting over: " + e.getMessage());
+                setAside(file);
+                continue;
+            }
+            for (int older : generations) {
+                if (older < gen) {
+                    Files.deleteIfExists(indexFile(older).toPath());
+                }
+            }
+            return;
+        }
+        // A Bloom filter of older data must not vouch for the new index
+        Files.deleteIfExists(new File(dataDir, BLOOM_FILE).toPath());
+        writeGeneration(newest + 1, INITIAL_CAPACITY);
+    }
+
+    /**
+     * Generations present on disk, newest first
+     */
+    private List<Integer> findGenerations() {
+        List<Integer> generations = new ArrayList<>();
+        String[] names = dataDir.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.equals(INDEX_FILE)) {
+                    generations.add(0);
+                } else if (isIndexFile(name)) {
+                    try {
+                        generations.add(Integer.parseInt(name.substring(7, name.length() - 4)));
+                    } catch (NumberFormatException e) {
+                        // Not an index generation
+                    }
+                }
+            }
+        }
+        generations.sort(java.util.Collections.reverseOrder());
+        return generations;
+    }
+
+    /**
+     * Whether a file name is one of the index generations, e.g. when moving them
+     */
+    static boolean isIndexFile(String name) {
+        return name.startsWith("dedupe.") && name.endsWith(".idx");
+    }
+
+    private File indexFile(int gen) {
+        return new File(dataDir, gen == 0 ? INDEX_FILE : "dedupe." + gen + ".idx");
+    }
+
+    private void mapIndex(File file, int gen) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (channel.read(header, 0) < HEADER_SIZE) {
+            throw new CorruptIndexException("header is missing");
+        }
+        int cap = header.getInt(4);
+        int count = header.getInt(8);
+        if (header.getInt(0) != INDEX_MAGIC || header.getInt(12) != gen) {
+            throw new CorruptIndexException("bad header");
+        }
+        if (cap < INITIAL_CAPACITY || Integer.bitCount(cap) != 1 || count < 0 || count >= cap
+                || channel.size() < HEADER_SIZE + (long) cap * 8) {
+            throw new CorruptIndexException("capacity " + cap + ", size " + count);
+        }
+        table = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) cap * 8);
+        capacity = cap;
+        size = count;
+        generation = gen;
+    }
+
+    /**
+     * Write a complete index of the given capacity as generation gen, holding
+     * the keys of the current table, and switch to it
+     * The magic number is written last, so a file cut short by a crash is never
+     * taken for a valid index and the previous generation is used instead.
+     */
+    private void writeGeneration(int gen, int newCapacity) throws IOException {
+        File file = indexFile(gen);
+        Files.deleteIfExists(file.toPath());
+        FileChannel out = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer next;
+        int count = 0;
+        try {
+            next = out.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) newCapacity * 8);
+            if (table != null) {
+                for (int i = 0; i < capacity; i++) {
+                    long value = table.getLong(HEADER_SIZE + i * 8);
+                    if (value != 0) {
+                        insertInto(next, newCapacity, value);
+                        count++;
+                    }
+                }
+            }
+            next.putInt(4, newCapacity);
+            next.putInt(8, count);
+            next.putInt(12, gen);
+            next.force();
+            next.putInt(0, INDEX_MAGIC);
+            next.force();
+        } catch (IOException e) {
+            out.close();
+            Files.deleteIfExists(file.toPath());
+            throw e;
+        }
+
+        int previous = generation;
+        boolean hadTable = table != null;
+        closeChannel();
+        channel = out;
+        table = next;
+        capacity = newCapacity;
+        size = count;
+        generation = gen;
+        if (hadTable) {
+            try {
+                Files.deleteIfExists(indexFile(previous).toPath());
+            } catch (IOException e) {
+                // Still mapped (Windows keeps it until the mapping is collected); removed on the next open
+            }
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing duplicate index: " + e.getMessage());
+        }
+        channel = null;
+        table = null;
+    }
+
+    /**
+     * Keep a damaged index for inspection under a name that is no longer read
+     */
+    private static void setAside(File file) {
+        try {
+            Files.move(file.toPath(), new File(file.getParentFile(), file.getName() + ".corrupt").toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            file.delete();
+        }
+    }
+
+    private boolean indexContains(long key) {
+        int mask = capacity - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (true) {
+            long value = table.getLong(HEADER_SIZE + slot * 8);
+            if (value == 0) return false;
+            if (value == key) return true;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void indexInsert(long key) {
+        insertInto(table, capacity, key);
+        size++;
+        table.putInt(8, size);
+    }
+
+    private static void insertInto(MappedByteBuffer buffer, int cap, long key) {
+        int mask = cap - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (buffer.getLong(HEADER_SIZE + slot * 8) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        buffer.putLong(HEADER_SIZE + slot * 8, key);
+    }
+
+    /**
+     * Rehash into the next generation file
+     */
+    private void resize(int newCapacity) throws IOException {
+        writeGeneration(generation + 1, newCapacity);
+    }
+
+    private void loadBloom() throws IOException {
+        File file = new File(dataDir, BLOOM_FILE);
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                // Only trust a filter saved from exactly this index
+                if (in.readInt() == BloomFilter.MAGIC && in.readInt() == generation && in.readInt() == size) {
+                    long savedCapacity = in.readLong();
+                    BloomFilter saved = BloomFilter.readFrom(in);
+                    if (savedCapacity >= size) {
+                        bloom = saved;
+                        bloomCapacity = savedCapacity;
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Rebuilding bloom filter: " + e.getMessage());
+            }
+        }
+        rebuildBloom(Math.max(INITIAL_CAPACITY, (long) size * 2));
+    }
+
+    /**
+     * Rebuild the filter from the index with one sequential scan
+     */
+    private void rebuildBloom(long newCapacity) {
+        BloomFilter rebuilt = new BloomFilter(newCapacity, BLOOM_FPP);
+        for (int i = 0; i < capacity; i++) {
+            long value = table.getLong(HEADER_SIZE + i * 8);
+            if (value != 0) {
+                rebuilt.add(value);
+            }
+        }
+        bloom = rebuilt;
+        bloomCapacity = newCapacity;
+    }
+
+    /**
+     * Numbers repeats of the same row within one statement or mailbox
+     * Counts are kept per 64-bit key hash in primitive arrays, so a long
+     * statement costs about 12 bytes per distinct row rather than a String each.
+     */
+    public static final class Occurrences {
+        private long[] keys = new long[1024];
+        private int[] counts = new int[1024];
+        private int size;
+
+        /**
+         * Count a transaction and store its occurrence number on it
+         * @return the occurrence number, 1 for the first
+         */
+        public int number(Transaction txn) {
+            long key = hash64(baseKey(txn));
+            if (key == 0) key = 1;
+            if (size + 1 > keys.length * MAX_LOAD) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = (int) (key ^ (key >>> 32)) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                size++;
+            }
+            int count = ++counts[slot];
+            txn.setOccurrence(count);
+            return count;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new long[oldKeys.length << 1];
+            counts = new int[keys.length];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = (int) (oldKeys[i] ^ (oldKeys[i] >>> 32)) & mask;
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * The index file is not one this class wrote completely
+     */
+    private static class CorruptIndexException extends IOException {
+        CorruptIndexException(String message) {
+            super(message);
+        }
+    }
+}
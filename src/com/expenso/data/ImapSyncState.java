@@ -0,0 +1,142 @@
+package com.expenso.data;
+
+import java.io.*;
+import java.time.LocalDate;
+import java.util.Properties;
+
+/**
+ * Persisted IMAP sync position per account and folder
+ * Records UIDVALIDITY, the highest UID already processed and the earliest
+ * date the synced window covers, so later runs only fetch newer messages.
+ * Also remembers the address the profile signs in to Gmail with. Every call
+ * reads the file again, so several instances (the setup dialog, the shared
+ * connector, live import) never write back each other's stale copies.
+ */
+public class ImapSyncState {
+    private static final String STATE_FILE = "imap-sync.properties";
+    private static final String ACCOUNT_KEY = "account";
+
+    private final File file;
+    private final Properties props = new Properties();
+
+    public ImapSyncState() {
+        this(new File(DataManager.getDataDirectory(), STATE_FILE));
+    }
+
+    public ImapSyncState(File file) {
+        this.file = file;
+        load();
+    }
+
+    /**
+     * Address saved for this profile, or "" if none
+     */
+    public synchronized String getAccount() {
+        load();
+        return props.getProperty(ACCOUNT_KEY, "");
+    }
+
+    /**
+     * Save the address this profile signs in with
+     */
+    public synchronized void setAccount(String account) {
+        load();
+        props.setProperty(ACCOUNT_KEY, account);
+        save();
+    }
+
+    /**
+     * Folder position, or null if the folder was never synced
+     */
+    public synchronized FolderState get(String account, String folder) {
+        load();
+        String prefix = key(account, folder);
+        String validity = props.getProperty(prefix + "uidvalidity");
+        String lastUid = props.getProperty(prefix + "lastuid");
+        String since = props.getProperty(prefix + "since");
+        if (validity == null || lastUid == null || since == null) {
+            return null;
+        }
+        try {
+            return new FolderState(Long.parseLong(validity), Long.parseLong(lastUid),
+                LocalDate.ofEpochDay(Long.parseLong(since)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Store folder position and write it to disk
+     */
+    public synchronized void put(String account, String folder, FolderState state) {
+        load();
+        String prefix = key(account, folder);
+        props.setProperty(prefix + "uidvalidity", Long.toString(state.getUidValidity()));
+        props.setProperty(prefix + "lastuid", Long.toString(state.getLastUid()));
+        props.setProperty(prefix + "since", Long.toString(state.getSince().toEpochDay()));
+        save();
+    }
+
+    /**
+     * Forget a folder so the next run does a full sync
+     */
+    public synchronized void clear(String account, String folder) {
+        load();
+        String prefix = key(account, folder);
+        props.remove(prefix + "uidvalidity");
+        props.remove(prefix + "lastuid");
+        props.remove(prefix + "since");
+        save();
+    }
+
+    private static String key(String account, String folder) {
+        return account.toLowerCase() + "/" + folder + ".";
+    }
+
+    private void load() {
+        props.clear();
+        if (!file.exists()) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+        } catch (IOException e) {
+            System.err.println("Error loading sync state: " + e.getMessage());
+        }
+    }
+
+    private void save() {
+        try (OutputStream out = new FileOutputStream(file)) {
+            props.store(out, "Expenso IMAP sync state");
+        } catch (IOException e) {
+            System.err.println("Error saving sync state: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sync position of one folder
+     */
+    public static class FolderState {
+        private final long uidValidity;
+        private final long lastUid;
+        private final LocalDate since;
+
+        public FolderState(long uidValidity, long lastUid, LocalDate since) {
+            this.uidValidity = uidValidity;
+            this.lastUid = lastUid;
+            this.since = since;
+        }
+
+        public long getUidValidity() {
+            return uidValidity;
+        }
+
+        public long getLastUid() {
+            return lastUid;
+        }
+
+        public LocalDate getSince() {
+            return since;
+        }
+    }
+}
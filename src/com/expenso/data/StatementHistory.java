@@ -0,0 +1,156 @@
+package com.expenso.data;
+
+import com.expenso.util.StatementReconciler;
+import java.io.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Date ranges and balances of statements already imported, per account
+ * Lets a new statement be checked for overlap with earlier imports and for
+ * a balance that does not carry on from the statement before it. Statements
+ * whose account number could not be read are neither checked nor recorded:
+ * lumping them together would compare unrelated accounts with each other.
+ */
+public class StatementHistory {
+    private static final String HISTORY_FILE = "statement-history.properties";
+
+    private final File file;
+    private final Properties props = new Properties();
+
+    public StatementHistory() {
+        this(new File(DataManager.getDataDirectory(), HISTORY_FILE));
+    }
+
+    public StatementHistory(File file) {
+        this.file = file;
+        load();
+    }
+
+    /**
+     * Warnings about how a reconciled statement fits with earlier ones; empty if it fits
+     */
+    public synchronized List<String> check(StatementReconciler.Result result) {
+        List<String> warnings = new ArrayList<>();
+        if (result.getFrom() == null || result.getTo() == null || !isKnown(result.getAccount())) {
+            return warnings;
+        }
+
+        Range previous = null;
+        Range following = null;
+        for (Range range : ranges(result.getAccount())) {
+            if (range.from.equals(result.getFrom()) && range.to.equals(result.getTo())) {
+                warnings.add("A statement for " + range.from + " to " + range.to + " was already imported");
+            } else if (!range.to.isBefore(result.getFrom()) && !range.from.isAfter(result.getTo())) {
+                warnings.add("Overlaps the statement imported for " + range.from + " to " + range.to);
+            } else if (range.to.isBefore(result.getFrom())) {
+                if (previous == null || range.to.isAfter(previous.to)) {
+                    previous = range;
+                }
+            } else if (following == null || range.from.isBefore(following.from)) {
+                following = range;
+            }
+        }
+
+        if (!result.hasBalances()) {
+            return warnings;
+        }
+        long opening = Math.round(result.getOpeningBalance() * 100);
+        long closing = Math.round(result.getClosingBalance() * 100);
+        if (previous != null && previous.hasBalances && previous.closing != opening) {
+            warnings.add(String.format("Opening balance ₹%.2f does not follow the ₹%.2f closing balance on %s;"
+                + " transactions may be missing in between", opening / 100.0, previous.closing / 100.0, previous.to));
+        }
+        if (following != null && following.hasBalances && following.opening != closing) {
+            warnings.add(String.format("Closing balance ₹%.2f does not lead to the ₹%.2f opening balance on %s;"
+                + " transactions may be missing in between", closing / 100.0, following.opening / 100.0, following.from));
+        }
+        return warnings;
+    }
+
+    /**
+     * Remember an imported statement and write the history to disk
+     */
+    public synchronized void record(StatementReconciler.Result result) {
+        if (result.getFrom() == null || result.getTo() == null || !isKnown(result.getAccount())) {
+            return;
+        }
+        String key = key(result.getAccount());
+        StringBuilder value = new StringBuilder(props.getProperty(key, ""));
+        if (value.length() > 0) {
+            value.append(',');
+        }
+        value.append(result.getFrom().toEpochDay()).append('|').append(result.getTo().toEpochDay());
+        if (result.hasBalances()) {
+            value.append('|').append(Math.round(result.getOpeningBalance() * 100))
+                .append('|').append(Math.round(result.getClosingBalance() * 100));
+        }
+        props.setProperty(key, value.toString());
+        save();
+    }
+
+    private List<Range> ranges(String account) {
+        List<Range> ranges = new ArrayList<>();
+        String value = props.getProperty(key(account));
+        if (value == null || value.isEmpty()) {
+            return ranges;
+        }
+        for (String item : value.split(",")) {
+            String[] parts = item.split("\\|");
+            try {
+                Range range = new Range();
+                range.from = LocalDate.ofEpochDay(Long.parseLong(parts[0]));
+                range.to = LocalDate.ofEpochDay(Long.parseLong(parts[1]));
+                if (parts.length == 4) {
+                    range.hasBalances = true;
+                    range.opening = Long.parseLong(parts[2]);
+                    range.closing = Long.parseLong(parts[3]);
+                }
+                ranges.add(range);
+            } catch (RuntimeException e) {
+                System.err.println("Skipping bad statement history entry: " + item);
+            }
+        }
+        return ranges;
+    }
+
+    private static boolean isKnown(String account) {
+        return account != null && !account.trim().isEmpty();
+    }
+
+    private static String key(String account) {
+        return account.trim().toLowerCase() + ".statements";
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+        } catch (IOException e) {
+            System.err.println("Error loading statement history: " + e.getMessage());
+        }
+    }
+
+    private void save() {
+        try (OutputStream out = new FileOutputStream(file)) {
+            props.store(out, "Expenso imported statements");
+        } catch (IOException e) {
+            System.err.println("Error saving statement history: " + e.getMessage());
+        }
+    }
+
+    /**
+     * One imported statement; balances are in paise
+     */
+    private static class Range {
+        LocalDate from;
+        LocalDate to;
+        boolean hasBalances;
+        long opening;
+        long closing;
+    }
+}
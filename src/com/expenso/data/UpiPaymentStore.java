@@ -0,0 +1,332 @@
+package com.expenso.data;
+
+import com.expenso.model.Expense;
+import com.expenso.model.Transaction;
+import com.expenso.model.UpiPayment;
+import com.expenso.model.UpiPayment.PaymentStatus;
+import java.io.*;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Ledger of UPI payments started from Expenso
+ * Payments are kept in memory with indexes by status, payee UPI id, amount of
+ * open payments and transaction reference, so ledger queries never scan the
+ * whole list. Imported transactions are matched against open payments to
+ * complete them and link them to the expense they produced. Payments started
+ * but never opened in a UPI app are marked failed after EXPIRE_AFTER_DAYS so
+ * they stop showing as pending.
+ */
+public class UpiPaymentStore {
+    static final String PAYMENTS_FILE = "upi-payments.dat";
+    // A bank transaction can post a few days after the payment was started
+    private static final int MATCH_WINDOW_DAYS = 7;
+    // Statements often arrive a while after the window closes
+    private static final int EXPIRE_AFTER_DAYS = 30;
+
+    private final File file;
+    private final Map<Long, UpiPayment> byId = new LinkedHashMap<>();
+    private final Map<PaymentStatus, Map<Long, UpiPayment>> byStatus = new EnumMap<>(PaymentStatus.class);
+    private final Map<String, List<UpiPayment>> byPayee = new HashMap<>();
+    private final Map<Long, List<UpiPayment>> openByAmount = new HashMap<>();
+    private final Map<String, UpiPayment> byReference = new HashMap<>();
+    private long lastId;
+    private boolean dirty;
+
+    public UpiPaymentStore() {
+        this(new File(DataManager.getDataDirectory(), PAYMENTS_FILE));
+    }
+
+    public UpiPaymentStore(File file) {
+        this.file = file;
+        for (PaymentStatus status : PaymentStatus.values()) {
+            byStatus.put(status, new LinkedHashMap<>());
+        }
+        load();
+        expireStale();
+    }
+
+    /**
+     * Record a new payment and save; gives it a unique id and transaction reference
+     */
+    public synchronized void add(UpiPayment payment) {
+        register(payment);
+        save();
+    }
+
+    /**
+     * Record several payments with a single save, e.g. a batch QR run
+     */
+    public synchronized void addAll(Collection<UpiPayment> payments) {
+        for (UpiPayment payment : payments) {
+            register(payment);
+        }
+        save();
+    }
+
+    private void register(UpiPayment payment) {
+        // Ids come from the clock, keep them unique when payments are added in a burst
+        long id = Math.max(payment.getId(), lastId + 1);
+        payment.setId(id);
+        lastId = id;
+        if (payment.getTransactionRef() == null) {
+            payment.setTransactionRef("EXP" + id);
+        }
+        index(payment);
+        dirty = true;
+    }
+
+    /**
+     * Move a payment to a new status, record the transition and save
+     */
+    public synchronized void updateStatus(UpiPayment payment, PaymentStatus status) {
+        if (byId.get(payment.getId()) != payment || payment.getStatus() == status) {
+            return;
+        }
+        unindexStatus(payment);
+        payment.updateStatus(status);
+        indexStatus(payment);
+        dirty = true;
+        save();
+    }
+
+    /**
+     * Mark initiated payments older than EXPIRE_AFTER_DAYS failed, and save if any were
+     * @return number of payments expired
+     */
+    public synchronized int expireStale() {
+        LocalDate cutoff = LocalDate.now().minusDays(EXPIRE_AFTER_DAYS);
+        List<UpiPayment> stale = new ArrayList<>();
+        for (UpiPayment payment : byStatus.get(PaymentStatus.INITIATED).values()) {
+            if (payment.getTimestamp() != null && payment.getTimestamp().toLocalDate().isBefore(cutoff)) {
+                stale.add(payment);
+            }
+        }
+        for (UpiPayment payment : stale) {
+            unindexStatus(payment);
+            payment.updateStatus(PaymentStatus.FAILED);
+            indexStatus(payment);
+            dirty = true;
+        }
+        save();
+        return stale.size();
+    }
+
+    public synchronized UpiPayment get(long id) {
+        return byId.get(id);
+    }
+
+    /**
+     * All payments, oldest first
+     */
+    public synchronized List<UpiPayment> getAll() {
+        return new ArrayList<>(byId.values());
+    }
+
+    public synchronized List<UpiPayment> getByStatus(PaymentStatus status) {
+        return new ArrayList<>(byStatus.get(status).values());
+    }
+
+    /**
+     * Payments started but not yet completed or failed
+     */
+    public synchronized List<UpiPayment> getPending() {
+        List<UpiPayment> pending = new ArrayList<>(byStatus.get(PaymentStatus.INITIATED).values());
+        pending.addAll(byStatus.get(PaymentStatus.PENDING).values());
+        pending.sort(Comparator.comparingLong(UpiPayment::getId));
+        return pending;
+    }
+
+    public synchronized int getPendingCount() {
+        return byStatus.get(PaymentStatus.INITIATED).size() + byStatus.get(PaymentStatus.PENDING).size();
+    }
+
+    /**
+     * Payments to a UPI id, oldest first
+     */
+    public synchronized List<UpiPayment> getByPayee(String upiId) {
+        List<UpiPayment> payments = byPayee.get(upiId.toLowerCase());
+        return payments != null ? new ArrayList<>(payments) : new ArrayList<>();
+    }
+
+    /**
+     * Complete the open payment a debit transaction settles, if any, and link it to
+     * the expense created from it. A payment matches when the transaction carries its
+     * reference, or failing that when the amount agrees, the date falls shortly after
+     * the payment and the description names exactly one such payment, by UPI id or
+     * else by payee name. Ambiguous transactions are left unmatched rather than
+     * completing the wrong payment. Call save() after a batch.
+     * @return the payment completed, or null
+     */
+    public synchronized UpiPayment match(Transaction txn, Expense expense) {
+        if (txn.getType() == Transaction.TransactionType.CREDIT
+                || txn.getType() == Transaction.TransactionType.UPI_RECEIVED) {
+            return null;
+        }
+
+        UpiPayment payment = null;
+        if (txn.getReferenceNumber() != null) {
+            UpiPayment candidate = byReference.get(txn.getReferenceNumber().toUpperCase());
+            if (candidate != null && isOpen(candidate)) {
+                payment = candidate;
+            }
+        }
+        if (payment == null) {
+            List<UpiPayment> candidates = openByAmount.get(paise(txn.getAmount()));
+            if (candidates == null) {
+                return null;
+            }
+            String description = txn.getDescription() != null ? txn.getDescription().toLowerCase() : "";
+            List<UpiPayment> byUpiId = new ArrayList<>();
+            List<UpiPayment> byName = new ArrayList<>();
+            for (UpiPayment candidate : candidates) {
+                if (!isInWindow(candidate, txn.getDate())) {
+                    continue;
+                }
+                if (mentionsUpiId(description, candidate)) {
+                    byUpiId.add(candidate);
+                } else if (mentionsName(description, candidate)) {
+                    byName.add(candidate);
+                }
+            }
+            List<UpiPayment> matches = byUpiId.isEmpty() ? byName : byUpiId;
+            if (matches.size() != 1) {
+                return null;
+            }
+            payment = matches.get(0);
+        }
+
+        unindexStatus(payment);
+        payment.updateStatus(PaymentStatus.COMPLETED);
+        payment.setUpiReference(txn.getReferenceNumber());
+        if (expense != null) {
+            payment.setExpenseId(expense.getId());
+        }
+        indexStatus(payment);
+        dirty = true;
+        return payment;
+    }
+
+    /**
+     * Match a batch of imported transactions and their expenses (null for credits), then save
+     * @return number of payments completed
+     */
+    public synchronized int matchAll(List<Transaction> transactions, List<Expense> expenses) {
+        int matched = 0;
+        if (getPendingCount() == 0) {
+            return 0;
+        }
+        for (int i = 0; i < transactions.size(); i++) {
+            if (match(transactions.get(i), expenses != null ? expenses.get(i) : null) != null) {
+                matched++;
+            }
+        }
+        save();
+        return matched;
+    }
+
+    private static boolean isOpen(UpiPayment payment) {
+        return payment.getStatus() == PaymentStatus.INITIATED || payment.getStatus() == PaymentStatus.PENDING;
+    }
+
+    private static boolean isInWindow(UpiPayment payment, LocalDate date) {
+        if (date == null || payment.getTimestamp() == null) {
+            return true;
+        }
+        LocalDate started = payment.getTimestamp().toLocalDate();
+        // Statements date by value date, which may be the day before in another timezone
+        return !date.isBefore(started.minusDays(1)) && !date.isAfter(started.plusDays(MATCH_WINDOW_DAYS));
+    }
+
+    private static boolean mentionsUpiId(String description, UpiPayment payment) {
+        String upiId = payment.getPayeeUpiId().toLowerCase();
+        if (description.contains(upiId)) {
+            return true;
+        }
+        // Bank narrations often carry just the handle before the @
+        int at = upiId.indexOf('@');
+        return at > 2 && containsWord(description, upiId.substring(0, at));
+    }
+
+    private static boolean mentionsName(String description, UpiPayment payment) {
+        String name = payment.getPayeeName() != null ? payment.getPayeeName().toLowerCase().trim() : "";
+        return name.length() > 2 && containsWord(description, name);
+    }
+
+    /**
+     * Whether text contains word not as part of a longer word, so "ram" does not match "ramesh"
+     */
+    private static boolean containsWord(String text, String word) {
+        for (int i = text.indexOf(word); i >= 0; i = text.indexOf(word, i + 1)) {
+            int end = i + word.length();
+            if ((i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)))
+                    && (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long paise(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    private void index(UpiPayment payment) {
+        byId.put(payment.getId(), payment);
+        byPayee.computeIfAbsent(payment.getPayeeUpiId().toLowerCase(), k -> new ArrayList<>()).add(payment);
+        if (payment.getTransactionRef() != null) {
+            byReference.put(payment.getTransactionRef().toUpperCase(), payment);
+        }
+        indexStatus(payment);
+    }
+
+    private void indexStatus(UpiPayment payment) {
+        byStatus.get(payment.getStatus()).put(payment.getId(), payment);
+        if (isOpen(payment)) {
+            openByAmount.computeIfAbsent(paise(payment.getAmount()), k -> new ArrayList<>()).add(payment);
+        }
+    }
+
+    private void unindexStatus(UpiPayment payment) {
+        byStatus.get(payment.getStatus()).remove(payment.getId());
+        if (isOpen(payment)) {
+            List<UpiPayment> sameAmount = openByAmount.get(paise(payment.getAmount()));
+            if (sameAmount != null) {
+                sameAmount.remove(payment);
+                if (sameAmount.isEmpty()) {
+                    openByAmount.remove(paise(payment.getAmount()));
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            for (UpiPayment payment : (List<UpiPayment>) ois.readObject()) {
+                index(payment);
+                lastId = Math.max(lastId, payment.getId());
+            }
+        } catch (Exception e) {
+            System.err.println("Error loading UPI payments: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write the ledger if it changed since the last save
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            oos.writeObject(new ArrayList<>(byId.values()));
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println("Error saving UPI payments: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.expenso.data;
+
+import com.expenso.model.User;
+import com.expenso.util.BCrypt;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Profiles sharing this machine and their BCrypt password hashes
+ * Kept in users.properties in the Expenso directory. Each profile's data lives
+ * in its own folder under profiles/, so signing in opens only that folder and
+ * no other profile's data is ever read.
+ */
+public class UserStore {
+    private static final String USERS_FILE = "users.properties";
+    private static final String PROFILES_DIR = "profiles";
+    private static final Pattern USERNAME = Pattern.compile("[\\p{L}\\p{N} ._-]{1,32}");
+    // Hashing should take about this long on this machine, but never below cost 10
+    private static final long TARGET_HASH_MILLIS = 250;
+    private static final int MIN_COST = 10;
+    // Files of the single-user layout, moved into the first profile along with every dedupe*.idx
+    private static final String[] LEGACY_FILES = {
+        "expenses.dat", "budget.dat", "dedupe.bloom", "upi-payments.dat",
+        "statement-history.properties", "imap-sync.properties", "watched-imports.properties"
+    };
+
+    private final File root;
+    private final File file;
+    private final Properties props = new Properties();
+    // Checked against when the username is unknown, so a miss takes as long as a wrong password
+    private String dummyHash;
+
+    public UserStore() {
+        this(DataManager.getRootDirectory());
+    }
+
+    public UserStore(File root) {
+        this.root = root;
+        this.file = new File(root, USERS_FILE);
+        load();
+    }
+
+    public synchronized boolean hasUsers() {
+        return props.getProperty("next.id") != null;
+    }
+
+    /**
+     * All profiles, by name
+     */
+    public synchronized List<User> getUsers() {
+        List<User> users = new ArrayList<>();
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith("user.") && key.endsWith(".id")) {
+                users.add(find(key.substring(5, key.length() - 3)));
+            }
+        }
+        users.sort(Comparator.comparing(u -> u.getUsername().toLowerCase()));
+        return users;
+    }
+
+    /**
+     * Add a profile and create its data folder
+     * @throws IllegalArgumentException if the name is invalid or taken, or the password is empty
+     */
+    public User createUser(String username, String password) {
+        String name = username != null ? username.trim() : "";
+        if (!USERNAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Use 1-32 letters, digits, spaces, dots, dashes or underscores");
+        }
+        if (password == null || password.isEmpty()) {
+            throw new IllegalArgumentException("Enter a password");
+        }
+        // Hash outside the lock so other sign-ins are not held up
+        String hash = BCrypt.hashpw(password, BCrypt.gensalt(getCost()));
+
+        User user;
+        synchronized (this) {
+            if (find(key(name)) != null) {
+                throw new IllegalArgumentException("A profile named " + name + " already exists");
+            }
+            long id = Long.parseLong(props.getProperty("next.id", "1"));
+            user = new User(id, name, hash);
+            props.setProperty("next.id", String.valueOf(id + 1));
+            put(user);
+            save();
+        }
+        getDirectory(user);
+        return user;
+    }
+
+    /**
+     * The profile if the password is right, otherwise null
+     * Hashes made at a lower cost than this machine now calls for are upgraded.
+     * Hashing runs outside the lock, so several checks can run at once; callers
+     * on the event thread should go through AuthService instead.
+     */
+    public User authenticate(String username, String password) {
+        if (username == null || password == null || password.isEmpty()) {
+            return null;
+        }
+        User user = getUser(username);
+        if (user == null) {
+            BCrypt.checkpw(password, getDummyHash());
+            return null;
+        }
+        if (!BCrypt.checkpw(password, user.getPasswordHash())) {
+            return null;
+        }
+        int cost = getCost();
+        if (BCrypt.getLogRounds(user.getPasswordHash()) < cost) {
+            String upgraded = BCrypt.hashpw(password, BCrypt.gensalt(cost));
+            synchronized (this) {
+                User current = find(key(user.getUsername()));
+                // Leave it if the password changed meanwhile
+                if (current != null && user.getPasswordHash().equals(current.getPasswordHash())) {
+                    user.setPasswordHash(upgraded);
+                    put(user);
+                    save();
+                }
+            }
+        }
+        return user;
+    }
+
+    /**
+     * Profile by name, ignoring case, or null
+     */
+    public synchronized User getUser(String username) {
+        return username != null ? find(key(username.trim())) : null;
+    }
+
+    /**
+     * @return false if the current password is wrong
+     */
+    public boolean changePassword(User user, String currentPassword, String newPassword) {
+        if (newPassword == null || newPassword.isEmpty()) {
+            throw new IllegalArgumentException("Enter a password");
+        }
+        User stored = authenticate(user.getUsername(), currentPassword);
+        if (stored == null) {
+            return false;
+        }
+        String hash = BCrypt.hashpw(newPassword, BCrypt.gensalt(getCost()));
+        synchronized (this) {
+            stored.setPasswordHash(hash);
+            user.setPasswordHash(hash);
+            put(stored);
+            save();
+        }
+        return true;
+    }
+
+    /**
+     * The profile's data folder, created if missing
+     */
+    public File getDirectory(User user) {
+        File dir = new File(new File(root, PROFILES_DIR), String.valueOf(user.getId()));
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        return dir;
+    }
+
+    /**
+     * Move data from before profiles existed into a profile that has none yet
+     * Close anything holding those files (see DataManager.close) first.
+     * @return number of files moved
+     */
+    public int adoptLegacyData(User user) {
+        File dir = getDirectory(user);
+        if (new File(dir, LEGACY_FILES[0]).exists()) {
+            return 0;
+        }
+        List<String> names = new ArrayList<>(Arrays.asList(LEGACY_FILES));
+        // Every generation of the duplicate index, not just the first
+        String[] indexFiles = root.list((d, name) -> DuplicateDetector.isIndexFile(name));
+        if (indexFiles != null) {
+            names.addAll(Arrays.asList(indexFiles));
+        }
+        int moved = 0;
+        for (String name : names) {
+            File legacy = new File(root, name);
+            if (legacy.exists()) {
+                if (legacy.renameTo(new File(dir, name))) {
+                    moved++;
+                } else {
+                    System.err.println("Error moving " + legacy + " into profile " + user.getUsername());
+                }
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * BCrypt cost for new hashes, calibrated once for this machine
+     */
+    private synchronized int getCost() {
+        String cost = props.getProperty("bcrypt.cost");
+        if (cost == null) {
+            cost = String.valueOf(Math.max(MIN_COST, BCrypt.calibrate(TARGET_HASH_MILLIS)));
+            props.setProperty("bcrypt.cost", cost);
+            save();
+        }
+        return Integer.parseInt(cost);
+    }
+
+    private synchronized String getDummyHash() {
+        if (dummyHash == null) {
+            dummyHash = BCrypt.hashpw("expenso", BCrypt.gensalt(getCost()));
+        }
+        return dummyHash;
+    }
+
+    private User find(String key) {
+        String id = props.getProperty("user." + key + ".id");
+        if (id == null) {
+            return null;
+        }
+        return new User(Long.parseLong(id), props.getProperty("user." + key + ".name", key),
+            props.getProperty("user." + key + ".hash"));
+    }
+
+    private void put(User user) {
+        String key = key(user.getUsername());
+        props.setProperty("user." + key + ".id", String.valueOf(user.getId()));
+        props.setProperty("user." + key + ".name", user.getUsername());
+        props.setProperty("user." + key + ".hash", user.getPasswordHash());
+    }
+
+    // Names are unique regardless of case
+    private static String key(String username) {
+        return username.toLowerCase();
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+        } catch (IOException e) {
+            System.err.println("Error loading profiles: " + e.getMessage());
+        }
+    }
+
+    private void save() {
+        try (OutputStream out = new FileOutputStream(file)) {
+            props.store(out, "Expenso profiles");
+        } catch (IOException e) {
+            System.err.println("Error saving profiles: " + e.getMessage());
+        }
+    }
+}
@@ -15,6 +15,7 @@ public class Expense implements Serializable {
     private double amount;
     private Category category;
     private LocalDate date;
+    private long importKey; // Duplicate index key of the imported transaction, 0 if entered by hand
     
     public enum Category {
         FOOD("🍔 Food"),
@@ -36,6 +37,30 @@ public class Expense implements Serializable {
             return displayName;
         }
         
+        /**
+         * Name without the emoji, e.g. "Food", as the web app and exports use it
+         */
+        public String getLabel() {
+            return displayName.substring(displayName.indexOf(' ') + 1);
+        }
+        
+        /**
+         * Category by name, label or display name, ignoring case; null if none matches
+         */
+        public static Category parse(String text) {
+            if (text == null) {
+                return null;
+            }
+            String value = text.trim();
+            for (Category category : values()) {
+                if (category.name().equalsIgnoreCase(value) || category.getLabel().equalsIgnoreCase(value)
+                        || category.displayName.equalsIgnoreCase(value)) {
+                    return category;
+                }
+            }
+            return null;
+        }
+        
         @Override
         public String toString() {
             return displayName;
@@ -64,6 +89,17 @@ public class Expense implements Serializable {
         this.id = id;
     }
     
+    /**
+     * Key the duplicate index holds for the transaction this expense was imported from, or 0
+     */
+    public long getImportKey() {
+        return importKey;
+    }
+    
+    public void setImportKey(long importKey) {
+        this.importKey = importKey;
+    }
+    
     public String getName() {
         return name;
     }
@@ -21,6 +21,8 @@ public class Transaction implements Serializable {
     private String account;
     private String source; // Bank name, UPI app, etc.
     private boolean imported;
+    private Double balance; // Statement balance after this transaction, if known
+    private int occurrence; // Repeat number of this row within its statement, 0 until counted
     
     public enum TransactionType {
         DEBIT("Debit", "Expense"),
@@ -216,6 +218,26 @@ public class Transaction implements Serializable {
         this.imported = imported;
     }
     
+    public Double getBalance() {
+        return balance;
+    }
+    
+    public void setBalance(Double balance) {
+        this.balance = balance;
+    }
+    
+    /**
+     * How often this date, amount and description appeared in the statement up
+     * to and including this row: 1 for the first, 0 if not counted yet
+     */
+    public int getOccurrence() {
+        return occurrence;
+    }
+    
+    public void setOccurrence(int occurrence) {
+        this.occurrence = occurrence;
+    }
+    
     public String getFormattedAmount() {
         return String.format("₹%.2f", amount);
     }
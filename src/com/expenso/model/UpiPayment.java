@@ -1,14 +1,19 @@
 package com.expenso.model;
 
+import com.expenso.util.UpiLinkBuilder;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * UPI Payment model class
  */
 public class UpiPayment implements Serializable {
     private static final long serialVersionUID = 1L;
+    private static final ThreadLocal<UpiLinkBuilder> LINK_BUILDERS = ThreadLocal.withInitial(UpiLinkBuilder::new);
     
     private long id;
     private String payeeUpiId;
@@ -17,12 +22,17 @@ public class UpiPayment implements Serializable {
     private String note;
     private LocalDateTime timestamp;
     private PaymentStatus status;
+    private String transactionRef; // Our reference, sent as tr in the link
+    private String upiReference; // Bank/UPI reference of the matching transaction
+    private long expenseId;
+    private List<StatusChange> statusHistory;
     
     public enum PaymentStatus {
         INITIATED("Initiated"),
         PENDING("Pending"),
         COMPLETED("Completed"),
-        FAILED("Failed");
+        FAILED("Failed"),
+        CANCELLED("Cancelled");
         
         private final String displayName;
         
@@ -40,6 +50,29 @@ public class UpiPayment implements Serializable {
         }
     }
     
+    /**
+     * A status the payment moved to, and when
+     */
+    public static class StatusChange implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        private final PaymentStatus status;
+        private final LocalDateTime timestamp;
+        
+        public StatusChange(PaymentStatus status, LocalDateTime timestamp) {
+            this.status = status;
+            this.timestamp = timestamp;
+        }
+        
+        public PaymentStatus getStatus() {
+            return status;
+        }
+        
+        public LocalDateTime getTimestamp() {
+            return timestamp;
+        }
+    }
+    
     public UpiPayment() {
         this.id = System.currentTimeMillis();
         this.timestamp = LocalDateTime.now();
@@ -56,15 +89,20 @@ public class UpiPayment implements Serializable {
     
     // Generate UPI deep link
     public String generateUpiLink() {
-        StringBuilder upiLink = new StringBuilder("upi://pay?");
-        upiLink.append("pa=").append(payeeUpiId);
-        upiLink.append("&pn=").append(payeeName.replace(" ", "%20"));
-        upiLink.append("&am=").append(String.format("%.2f", amount));
-        upiLink.append("&cu=INR");
-        if (note != null && !note.isEmpty()) {
-            upiLink.append("&tn=").append(note.replace(" ", "%20"));
-        }
-        return upiLink.toString();
+        return writeUpiLink(LINK_BUILDERS.get()).toString();
+    }
+    
+    /**
+     * Write the deep link into a builder, replacing what it held
+     */
+    public UpiLinkBuilder writeUpiLink(UpiLinkBuilder link) {
+        return link.reset()
+            .payee(payeeUpiId)
+            .name(payeeName)
+            .amount(amount)
+            .currency("INR")
+            .note(note)
+            .transactionRef(transactionRef);
     }
     
     // Getters and Setters
@@ -124,6 +162,50 @@ public class UpiPayment implements Serializable {
         this.status = status;
     }
     
+    /**
+     * Change status and record the transition
+     */
+    public void updateStatus(PaymentStatus status) {
+        if (statusHistory == null) {
+            statusHistory = new ArrayList<>();
+            statusHistory.add(new StatusChange(this.status, timestamp));
+        }
+        this.status = status;
+        statusHistory.add(new StatusChange(status, LocalDateTime.now()));
+    }
+    
+    public List<StatusChange> getStatusHistory() {
+        if (statusHistory == null) {
+            return Collections.singletonList(new StatusChange(status, timestamp));
+        }
+        return Collections.unmodifiableList(statusHistory);
+    }
+    
+    public String getTransactionRef() {
+        return transactionRef;
+    }
+    
+    public void setTransactionRef(String transactionRef) {
+        this.transactionRef = transactionRef;
+    }
+    
+    public String getUpiReference() {
+        return upiReference;
+    }
+    
+    public void setUpiReference(String upiReference) {
+        this.upiReference = upiReference;
+    }
+    
+    /** Id of the expense the payment was matched to, 0 if none */
+    public long getExpenseId() {
+        return expenseId;
+    }
+    
+    public void setExpenseId(long expenseId) {
+        this.expenseId = expenseId;
+    }
+    
     public String getFormattedAmount() {
         return String.format("₹%.2f", amount);
     }
@@ -1,13 +1,21 @@
-
 package com.expenso.model;
 
+/**
+ * A profile on this machine; its data lives in a folder of its own
+ */
 public class User {
     private long id;
     private String username;
+    private String passwordHash;
 
     public User(long id, String username) {
+        this(id, username, null);
+    }
+
+    public User(long id, String username, String passwordHash) {
         this.id = id;
         this.username = username;
+        this.passwordHash = passwordHash;
     }
 
     public long getId() {
@@ -17,4 +25,18 @@ public class User {
     public String getUsername() {
         return username;
     }
+
+    /** BCrypt hash of the password, null if not loaded */
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    public void setPasswordHash(String passwordHash) {
+        this.passwordHash = passwordHash;
+    }
+
+    @Override
+    public String toString() {
+        return username;
+    }
 }
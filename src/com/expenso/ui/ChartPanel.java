@@ -138,7 +138,7 @@ public class ChartPanel extends JPanel {
         
         // Calculate category totals
         Map<Expense.Category, Double> categoryTotals = new HashMap<>();
-        for (Expense expense : dataManager.getExpenses()) {
+        for (Expense expense : dataManager.getExpensesSnapshot()) {
             categoryTotals.merge(expense.getCategory(), expense.getAmount(), Double::sum);
         }
         
@@ -184,7 +184,7 @@ public class ChartPanel extends JPanel {
             dailyTotals.put(dateStr, 0.0);
         }
         
-        for (Expense expense : dataManager.getExpenses()) {
+        for (Expense expense : dataManager.getExpensesSnapshot()) {
             if (expense.getDate().isAfter(today.minusDays(7)) && !expense.getDate().isAfter(today)) {
                 String dateStr = expense.getDate().format(java.time.format.DateTimeFormatter.ofPattern("MMM dd"));
                 dailyTotals.merge(dateStr, expense.getAmount(), Double::sum);
@@ -200,7 +200,7 @@ public class ChartPanel extends JPanel {
         Map<Expense.Category, Double> categoryTotals = new HashMap<>();
         double total = 0.0;
         
-        for (Expense expense : dataManager.getExpenses()) {
+        for (Expense expense : dataManager.getExpensesSnapshot()) {
             categoryTotals.merge(expense.getCategory(), expense.getAmount(), Double::sum);
             total += expense.getAmount();
         }
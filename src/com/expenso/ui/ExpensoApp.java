@@ -1,7 +1,16 @@
 package com.expenso.ui;
 
 import com.expenso.data.DataManager;
+import com.expenso.data.UserStore;
 import com.expenso.model.Expense;
+import com.expenso.model.Transaction;
+import com.expenso.model.User;
+import com.expenso.util.ApiServer;
+import com.expenso.util.AuthService;
+import com.expenso.util.ImportJob;
+import com.expenso.util.LiveImportRegistry;
+import com.expenso.util.StartupMetrics;
+import com.expenso.util.WatchedFolderImporter;
 import javax.swing.*;
 import javax.swing.border.AbstractBorder;
 import javax.swing.table.DefaultTableModel;
@@ -136,7 +145,51 @@ public class ExpensoApp extends JFrame {
         }
     }
     
+    /**
+     * Grey outline of the form, table and charts, shown while the data loads
+     */
+    private static class SkeletonPanel extends JPanel {
+        public SkeletonPanel() {
+            setBackground(BG_DARK);
+        }
+        
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            int gap = 20;
+            int column = (getWidth() - gap) / 2;
+            int tableHeight = Math.min(getHeight() / 2, 400);
+            
+            // Left: expense form and budget; right: table above the charts
+            paintCard(g, 0, 0, column, getHeight(), 9);
+            paintCard(g, column + gap, 0, column, tableHeight, 5);
+            paintCard(g, column + gap, tableHeight + gap, column, getHeight() - tableHeight - gap, 3);
+        }
+        
+        /**
+         * A card with a title bar and a few lines of text
+         */
+        static void paintCard(Graphics g, int x, int y, int width, int height, int lines) {
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setColor(BG_CARD);
+            g2.fill(new RoundRectangle2D.Float(x, y, width, height, 15, 15));
+            
+            g2.setColor(BG_SECONDARY);
+            g2.fill(new RoundRectangle2D.Float(x + 25, y + 25, width / 3, 20, 8, 8));
+            int lineY = y + 75;
+            for (int i = 0; i < lines && lineY + 16 <= y + height - 25; i++) {
+                int lineWidth = (width - 50) * (i % 3 == 2 ? 2 : 3) / 3;
+                g2.fill(new RoundRectangle2D.Float(x + 25, lineY, lineWidth, 16, 8, 8));
+                lineY += 40;
+            }
+            g2.dispose();
+        }
+    }
+    
     private DataManager dataManager;
+    private final AuthService auth;
+    private final User user;
     
     // UI Components
     private JLabel totalBalanceLabel;
@@ -153,22 +206,44 @@ public class ExpensoApp extends JFrame {
     private JTable expenseTable;
     private JComboBox<String> filterCombo;
     private ChartPanel chartPanel;
+    private JButton watchButton;
+    private WatchedFolderImporter folderWatcher;
+    private ApiServer apiServer;
+    private Timer apiRefreshTimer;
+    private long shownVersion;
+    private JPanel centerWrapper;
+    private JPanel skeletonPanel;
+    // Header buttons that need the data, enabled once it has loaded
+    private final List<JButton> dataButtons = new java.util.ArrayList<>();
     
     public ExpensoApp() {
-        dataManager = new DataManager();
+        this(new AuthService(new UserStore()), null);
+    }
+    
+    /**
+     * Builds the window shell only; the data loads in the background behind a
+     * skeleton view and the panels showing it are built once it is there
+     * @param user Signed-in profile whose folder is active, or null before profiles are used
+     */
+    public ExpensoApp(AuthService auth, User user) {
+        this.auth = auth;
+        this.user = user;
         initializeUI();
-        updateUI();
+        loadData();
     }
     
     private void initializeUI() {
-        setTitle("💰 Expenso - Finance Management");
+        setTitle("💰 Expenso - Finance Management" + (user != null ? " · " + user.getUsername() : ""));
         setSize(1400, 900);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
         
-        // Set look and feel
+        // Set look and feel, unless Main already has; setting it again rebuilds every UI delegate
         try {
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+            String systemLookAndFeel = UIManager.getSystemLookAndFeelClassName();
+            if (!UIManager.getLookAndFeel().getClass().getName().equals(systemLookAndFeel)) {
+                UIManager.setLookAndFeel(systemLookAndFeel);
+            }
             
             // Set global ComboBox styling for black backgrounds
             UIManager.put("ComboBox.background", BG_SECONDARY);
@@ -188,8 +263,14 @@ public class ExpensoApp extends JFrame {
             e.printStackTrace();
         }
         
-        // Main panel with dark background
-        JPanel mainPanel = new JPanel(new BorderLayout(20, 20));
+        // Main panel with dark background; its first paint is the window's
+        JPanel mainPanel = new JPanel(new BorderLayout(20, 20)) {
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                StartupMetrics.firstPaint();
+            }
+        };
         mainPanel.setBackground(BG_DARK);
         mainPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
         
@@ -202,8 +283,50 @@ public class ExpensoApp extends JFrame {
         alertPanel.setBackground(BG_DARK);
         mainPanel.add(alertPanel, BorderLayout.CENTER);
         
-        // Content Panel
-        JPanel contentPanel = new JPanel(new GridLayout(1, 2, 20, 0));
+        // Skeleton in the content's place until the data has loaded (see showData)
+        skeletonPanel = new SkeletonPanel();
+        centerWrapper = new JPanel(new BorderLayout());
+        centerWrapper.setBackground(BG_DARK);
+        centerWrapper.add(alertPanel, BorderLayout.NORTH);
+        centerWrapper.add(skeletonPanel, BorderLayout.CENTER);
+        mainPanel.add(centerWrapper, BorderLayout.CENTER);
+        
+        setContentPane(mainPanel);
+    }
+    
+    /**
+     * Read the data files on a background thread while the skeleton shows
+     */
+    private void loadData() {
+        Thread loader = new Thread(() -> {
+            DataManager loaded;
+            try {
+                loaded = new DataManager();
+            } catch (RuntimeException e) {
+                System.err.println("Error loading data: " + e.getMessage());
+                SwingUtilities.invokeLater(() -> showError("Could not load your expenses:\n" + e.getMessage()));
+                return;
+            }
+            SwingUtilities.invokeLater(() -> showData(loaded));
+        }, "expenso-load");
+        loader.setDaemon(true);
+        loader.start();
+    }
+    
+    /**
+     * Put the panels showing the data in place of the skeleton and start what works on the data
+     */
+    private void showData(DataManager loaded) {
+        dataManager = loaded;
+        
+        // Content Panel; its first paint is when the expenses become visible
+        JPanel contentPanel = new JPanel(new GridLayout(1, 2, 20, 0)) {
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                StartupMetrics.dataShown(tableModel.getRowCount());
+            }
+        };
         contentPanel.setBackground(BG_DARK);
         
         // Left Panel - Add Expense and Budget
@@ -212,14 +335,18 @@ public class ExpensoApp extends JFrame {
         // Right Panel - Expenses List and Charts
         contentPanel.add(createRightPanel());
         
-        // Add content panel to center
-        JPanel centerWrapper = new JPanel(new BorderLayout());
-        centerWrapper.setBackground(BG_DARK);
-        centerWrapper.add(alertPanel, BorderLayout.NORTH);
+        centerWrapper.remove(skeletonPanel);
+        skeletonPanel = null;
         centerWrapper.add(contentPanel, BorderLayout.CENTER);
-        mainPanel.add(centerWrapper, BorderLayout.CENTER);
+        centerWrapper.revalidate();
+        centerWrapper.repaint();
         
-        setContentPane(mainPanel);
+        for (JButton button : dataButtons) {
+            button.setEnabled(true);
+        }
+        updateUI();
+        resumeFolderWatch();
+        startApiServer();
     }
     
     private JPanel createHeader() {
@@ -255,8 +382,51 @@ public class ExpensoApp extends JFrame {
         });
         leftPanel.add(importButton);
         
+        // Watched Folder Button
+        watchButton = new JButton("📂 Watch Folder");
+        watchButton.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        watchButton.setForeground(Color.WHITE);
+        watchButton.setBackground(BG_SECONDARY);
+        watchButton.setFocusPainted(false);
+        watchButton.setBorderPainted(false);
+        watchButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        watchButton.setPreferredSize(new Dimension(200, 40));
+        watchButton.addActionListener(e -> toggleFolderWatch());
+        leftPanel.add(watchButton);
+        
+        // UPI Pay Button
+        JButton upiButton = new JButton("💳 UPI Pay");
+        upiButton.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        upiButton.setForeground(Color.WHITE);
+        upiButton.setBackground(SECONDARY);
+        upiButton.setFocusPainted(false);
+        upiButton.setBorderPainted(false);
+        upiButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        upiButton.setPreferredSize(new Dimension(150, 40));
+        upiButton.addActionListener(e -> new UpiPaymentDialog(this, dataManager.getUpiPayments()).setVisible(true));
+        leftPanel.add(upiButton);
+        
+        // Profile Button
+        JButton profileButton = new JButton(user != null ? "👤 " + user.getUsername() : "👤 Profiles");
+        profileButton.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        profileButton.setForeground(Color.WHITE);
+        profileButton.setBackground(BG_SECONDARY);
+        profileButton.setFocusPainted(false);
+        profileButton.setBorderPainted(false);
+        profileButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        profileButton.setPreferredSize(new Dimension(150, 40));
+        profileButton.setToolTipText("Switch or create a profile");
+        profileButton.addActionListener(e -> switchProfile());
+        leftPanel.add(profileButton);
+        
         header.add(leftPanel, BorderLayout.WEST);
         
+        // Off until the data has loaded
+        for (JButton button : new JButton[]{importButton, watchButton, upiButton, profileButton}) {
+            button.setEnabled(false);
+            dataButtons.add(button);
+        }
+        
         // Stats Panel
         JPanel statsPanel = new JPanel(new GridLayout(1, 2, 20, 0));
         statsPanel.setBackground(BG_CARD);
@@ -469,13 +639,47 @@ public class ExpensoApp extends JFrame {
         
         rightPanel.add(expensesPanel, BorderLayout.NORTH);
         
-        // Charts Panel
-        chartPanel = new ChartPanel(dataManager);
-        rightPanel.add(chartPanel, BorderLayout.CENTER);
+        // Charts Panel, built the first time its space is painted so the table shows first
+        rightPanel.add(createChartPlaceholder(), BorderLayout.CENTER);
         
         return rightPanel;
     }
     
+    /**
+     * Stand-in for the ChartPanel that builds it on first paint
+     */
+    private JPanel createChartPlaceholder() {
+        JPanel holder = new JPanel(new BorderLayout()) {
+            private boolean requested;
+            
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                if (chartPanel == null) {
+                    SkeletonPanel.paintCard(g, 0, 0, getWidth(), getHeight(), 3);
+                }
+                if (!requested) {
+                    requested = true;
+                    SwingUtilities.invokeLater(() -> showCharts(this));
+                }
+            }
+        };
+        holder.setBackground(BG_DARK);
+        return holder;
+    }
+    
+    private void showCharts(JPanel holder) {
+        chartPanel = new ChartPanel(dataManager);
+        holder.add(chartPanel, BorderLayout.CENTER);
+        holder.revalidate();
+        holder.repaint();
+        
+        // Training run for the AppCDS archive (see compile.bat): quit once everything has been shown
+        if (Boolean.getBoolean("expenso.startup.exit")) {
+            SwingUtilities.invokeLater(() -> System.exit(0));
+        }
+    }
+    
     private JPanel createStyledPanel(String title) {
         RoundedPanel panel = createRoundedPanel(15, BG_CARD);
         panel.setLayout(new BorderLayout(0, 15));
@@ -687,7 +891,7 @@ public class ExpensoApp extends JFrame {
     }
     
     private void deleteExpense(int row) {
-        List<Expense> expenses = dataManager.getExpenses();
+        List<Expense> expenses = dataManager.getExpensesSnapshot();
         if (row >= 0 && row < expenses.size()) {
             long id = expenses.get(row).getId();
             dataManager.deleteExpense(id);
@@ -733,7 +937,9 @@ public class ExpensoApp extends JFrame {
         updateExpenseTable("All Categories");
         updateBudgetInfo();
         updateAlerts();
-        chartPanel.updateCharts();
+        if (chartPanel != null) {
+            chartPanel.updateCharts();
+        }
     }
     
     private void updateStats() {
@@ -753,7 +959,7 @@ public class ExpensoApp extends JFrame {
     private void updateExpenseTable(String filter) {
         tableModel.setRowCount(0);
         
-        List<Expense> expenses = dataManager.getExpenses();
+        List<Expense> expenses = dataManager.getExpensesSnapshot();
         if (!filter.equals("All Categories")) {
             expenses = expenses.stream()
                 .filter(e -> e.getCategory().getDisplayName().contains(filter))
@@ -864,18 +1070,197 @@ public class ExpensoApp extends JFrame {
     }
     
     private void openImportDialog() {
-        ImportTransactionsDialog dialog = new ImportTransactionsDialog(this);
+        ImportTransactionsDialog dialog = new ImportTransactionsDialog(this, dataManager.getDuplicateDetector(),
+            this::importLiveTransactions);
         dialog.setVisible(true);
         
         // Get imported expenses
         java.util.List<Expense> importedExpenses = dialog.getImportedExpenses();
         if (!importedExpenses.isEmpty()) {
-            // Add all imported expenses
-            for (Expense expense : importedExpenses) {
-                dataManager.addExpense(expense);
-            }
+            // One batch: records the duplicate index, matches UPI payments and saves once
+            int pending = dataManager.getUpiPayments().getPendingCount();
+            int added = dataManager.importTransactions(dialog.getImportedTransactions(), importedExpenses);
+            int completed = pending - dataManager.getUpiPayments().getPendingCount();
+            dialog.importSaved();
             updateUI();
-            showSuccess(String.format("Successfully imported %d transactions!", importedExpenses.size()));
+            String message = String.format("Successfully imported %d transactions!", added);
+            if (completed > 0) {
+                message += String.format("\n%d pending UPI payments were matched and marked completed.", completed);
+            }
+            showSuccess(message);
+        }
+    }
+    
+    /**
+     * Store transactions pushed by Gmail live import, called from its thread
+     * Applied on the EDT like folder imports; throws if they could not be stored
+     * so live import fetches them again.
+     */
+    private void importLiveTransactions(List<Transaction> transactions) {
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                if (dataManager.importTransactions(transactions) > 0) {
+                    updateUI();
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Live import interrupted", e);
+        } catch (java.lang.reflect.InvocationTargetException e) {
+            throw new IllegalStateException("Error storing live import: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+    
+    /**
+     * Sign in to another profile and reopen the window on its data
+     * The current profile's data is saved and released first, so only one
+     * profile is ever loaded.
+     */
+    private void switchProfile() {
+        AuthService.Session session = ProfileDialog.signIn(this, auth, user);
+        if (session == null || (user != null && session.getUser().getId() == user.getId())) {
+            return;
+        }
+        User chosen = session.getUser();
+        UserStore users = auth.getUsers();
+        
+        if (folderWatcher != null) {
+            folderWatcher.stop();
+            folderWatcher = null;
+        }
+        LiveImportRegistry.stop();
+        stopApiServer();
+        dataManager.close();
+        if (user == null) {
+            // First profile: take over the data kept before profiles existed
+            users.adoptLegacyData(chosen);
+        }
+        DataManager.setActiveDirectory(users.getDirectory(chosen));
+        dispose();
+        new ExpensoApp(auth, chosen).setVisible(true);
+    }
+    
+    /**
+     * Serve this window's data over HTTP when started with -Dexpenso.api.port=8765
+     * Changes made through the API show up here within a second.
+     */
+    private void startApiServer() {
+        int port = Integer.getInteger("expenso.api.port", 0);
+        if (port <= 0) {
+            return;
+        }
+        try {
+            apiServer = new ApiServer(port, auth, dataManager);
+            apiServer.start();
+        } catch (java.io.IOException e) {
+            System.err.println("Error starting API server: " + e.getMessage());
+            apiServer = null;
+            return;
+        }
+        shownVersion = dataManager.getVersion();
+        apiRefreshTimer = new Timer(1000, e -> {
+            long version = dataManager.getVersion();
+            if (version != shownVersion) {
+                shownVersion = version;
+                updateUI();
+            }
+        });
+        apiRefreshTimer.start();
+    }
+    
+    private void stopApiServer() {
+        if (apiRefreshTimer != null) {
+            apiRefreshTimer.stop();
+            apiRefreshTimer = null;
+        }
+        if (apiServer != null) {
+            apiServer.stop();
+            apiServer = null;
+        }
+    }
+    
+    private void toggleFolderWatch() {
+        if (folderWatcher != null) {
+            int confirm = JOptionPane.showConfirmDialog(this,
+                "Stop importing statements from " + folderWatcher.getFolder() + "?",
+                "Watched Folder", JOptionPane.YES_NO_OPTION);
+            if (confirm == JOptionPane.YES_OPTION) {
+                folderWatcher.saveFolder(false);
+                folderWatcher.stop();
+                folderWatcher = null;
+                watchButton.setText("📂 Watch Folder");
+                watchButton.setToolTipText(null);
+            }
+            return;
+        }
+        
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        chooser.setDialogTitle("Folder to import bank statements from");
+        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            startFolderWatch(chooser.getSelectedFile(), true);
+        }
+    }
+    
+    private void resumeFolderWatch() {
+        java.io.File folder = WatchedFolderImporter.getSavedFolder();
+        if (folder != null && folder.isDirectory()) {
+            startFolderWatch(folder, false);
+        }
+    }
+    
+    private void startFolderWatch(java.io.File folder, boolean remember) {
+        // Batches are applied on the EDT so the table never sees a half-updated list
+        ImportJob.Committer committer = new ImportJob.Committer() {
+            private boolean changed;
+            
+            public void commit(List<ImportJob.Entry> entries) throws Exception {
+                List<Transaction> transactions = new java.util.ArrayList<>(entries.size());
+                for (ImportJob.Entry entry : entries) {
+                    transactions.add(entry.getTransaction());
+                }
+                SwingUtilities.invokeAndWait(() -> changed |= dataManager.addTransactions(transactions) > 0);
+            }
+            
+            public void complete() throws Exception {
+                boolean save = changed;
+                changed = false;
+                SwingUtilities.invokeAndWait(() -> {
+                    dataManager.saveImports(save);
+                    if (save) updateUI();
+                });
+            }
+        };
+        
+        WatchedFolderImporter watcher = new WatchedFolderImporter(folder, committer, dataManager.getDuplicateDetector());
+        watcher.setListener(new WatchedFolderImporter.Listener() {
+            public void onImported(java.io.File file, ImportJob.Progress progress, List<String> warnings) {
+                String summary = String.format("Last import: %s (%d transactions, %d duplicates skipped)",
+                    file.getName(), progress.getCommitted(), progress.getDuplicates());
+                if (!warnings.isEmpty()) {
+                    summary += " · " + warnings.size() + " warnings: " + warnings.get(0);
+                }
+                String tooltip = summary;
+                SwingUtilities.invokeLater(() -> watchButton.setToolTipText(tooltip));
+            }
+            
+            public void onError(java.io.File file, Throwable error) {
+                SwingUtilities.invokeLater(() -> watchButton.setToolTipText(
+                    "Error importing " + file.getName() + ": " + error.getMessage()));
+            }
+        });
+        
+        try {
+            watcher.start();
+        } catch (java.io.IOException e) {
+            showError("Cannot watch folder:\n" + e.getMessage());
+            return;
+        }
+        if (remember) {
+            watcher.saveFolder(true);
         }
+        folderWatcher = watcher;
+        watchButton.setText("⏹ Stop Watching");
+        watchButton.setToolTipText("Importing statements from " + folder);
     }
 }
@@ -1,16 +1,20 @@
 package com.expenso.ui;
 
+import com.expenso.data.ImapSyncState;
 import com.expenso.util.GmailConnector;
+import com.expenso.util.GmailLiveImportService;
+import com.expenso.util.LiveImportRegistry;
 import com.expenso.model.Transaction;
 import javax.swing.*;
 import java.awt.*;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.prefs.Preferences;
 
 /**
  * Dialog for Gmail setup and automatic email fetching
  */
-public class GmailSetupDialog extends JDialog {
+public class GmailSetupDialog extends JDialog implements MailImportDialog {
     private static final Color PRIMARY = new Color(20, 184, 166);
     private static final Color SECONDARY = new Color(249, 115, 22);
     private static final Color SUCCESS = new Color(34, 197, 94);
@@ -25,13 +29,25 @@ public class GmailSetupDialog extends JDialog {
     private JPasswordField passwordField;
     private JLabel statusLabel;
     private JSpinner daysSpinner;
-    private Preferences prefs;
+    private ImapSyncState syncState;
     private List<Transaction> fetchedTransactions;
+    private GmailConnector.SyncResult pendingSync;
     private GmailConnector connector;
+    private Consumer<List<Transaction>> liveImportSink;
+    private JButton liveButton;
     
     public GmailSetupDialog(Frame parent) {
+        this(parent, null);
+    }
+    
+    /**
+     * @param liveImportSink Receives transactions pushed by live import, or null to hide live import
+     */
+    public GmailSetupDialog(Frame parent, Consumer<List<Transaction>> liveImportSink) {
         super(parent, "📧 Gmail Auto-Import Setup", true);
-        prefs = Preferences.userNodeForPackage(GmailSetupDialog.class);
+        this.liveImportSink = liveImportSink;
+        // The address is kept in the profile's folder, next to its sync position
+        syncState = new ImapSyncState();
         initializeUI();
         loadSavedCredentials();
     }
@@ -78,7 +94,6 @@ public class GmailSetupDialog extends JDialog {
         // Email field
         contentPanel.add(createLabel("Gmail Address:"));
         emailField = createTextField();
-        emailField.setText(prefs.get("gmail_email", ""));
         contentPanel.add(emailField);
         contentPanel.add(Box.createVerticalStrut(15));
         
@@ -128,10 +143,11 @@ public class GmailSetupDialog extends JDialog {
         contentPanel.add(Box.createVerticalStrut(20));
         
         // Buttons
-        JPanel buttonPanel = new JPanel(new GridLayout(2, 2, 10, 10));
+        int buttonRows = 3;
+        JPanel buttonPanel = new JPanel(new GridLayout(buttonRows, 2, 10, 10));
         buttonPanel.setBackground(BG_CARD);
         buttonPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
-        buttonPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 100));
+        buttonPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, 50 * buttonRows));
         
         JButton testButton = createStyledButton("🔍 Test Connection", SECONDARY);
         testButton.addActionListener(e -> testConnection());
@@ -141,6 +157,11 @@ public class GmailSetupDialog extends JDialog {
         fetchButton.addActionListener(e -> fetchEmails());
         buttonPanel.add(fetchButton);
         
+        JButton resyncButton = createStyledButton("🔄 Full Resync", SECONDARY);
+        resyncButton.setToolTipText("Fetch the whole window again, including emails fetched before");
+        resyncButton.addActionListener(e -> fullResync());
+        buttonPanel.add(resyncButton);
+        
         JButton saveButton = createStyledButton("💾 Save Settings", SUCCESS);
         saveButton.addActionListener(e -> saveSettings());
         buttonPanel.add(saveButton);
@@ -149,6 +170,13 @@ public class GmailSetupDialog extends JDialog {
         cancelButton.addActionListener(e -> dispose());
         buttonPanel.add(cancelButton);
         
+        if (liveImportSink != null) {
+            boolean live = LiveImportRegistry.get() != null;
+            liveButton = createStyledButton(live ? "⏹ Stop Live Import" : "⚡ Start Live Import", SECONDARY);
+            liveButton.addActionListener(e -> toggleLiveImport());
+            buttonPanel.add(liveButton);
+        }
+        
         contentPanel.add(buttonPanel);
         contentPanel.add(Box.createVerticalStrut(15));
         
@@ -301,8 +329,8 @@ public class GmailSetupDialog extends JDialog {
         
         // Test in background thread
         new Thread(() -> {
-            connector = new GmailConnector(email, password);
-            boolean connected = connector.testConnection();
+            connector = GmailConnector.shared(email, password);
+            boolean connected = connector.ensureConnected();
             
             SwingUtilities.invokeLater(() -> {
                 if (connected) {
@@ -333,9 +361,15 @@ public class GmailSetupDialog extends JDialog {
         // Fetch in background thread
         new Thread(() -> {
             try {
-                connector = new GmailConnector(email, password);
-                fetchedTransactions = connector.fetchTransactionEmails(days);
-                connector.disconnect();
+                // Shared session stays open for later fetches and live import
+                connector = GmailConnector.shared(email, password);
+                // The sync position is saved by commitFetch() once the transactions are imported
+                pendingSync = connector.fetchNewTransactions(days, (processed, total) ->
+                    SwingUtilities.invokeLater(() -> {
+                        statusLabel.setText(String.format("🔄 Processed %d of %d emails...", processed, total));
+                        statusLabel.setForeground(PRIMARY);
+                    }));
+                fetchedTransactions = pendingSync.getTransactions();
                 
                 SwingUtilities.invokeLater(() -> {
                     if (fetchedTransactions != null && !fetchedTransactions.isEmpty()) {
@@ -356,6 +390,54 @@ public class GmailSetupDialog extends JDialog {
         }).start();
     }
     
+    /**
+     * Forget the sync position and fetch the whole window again
+     * Emails imported before are dropped by the duplicate check in the preview.
+     */
+    private void fullResync() {
+        String email = emailField.getText().trim();
+        String password = new String(passwordField.getPassword());
+        
+        if (email.isEmpty() || password.isEmpty()) {
+            statusLabel.setText("❌ Please enter email and app password");
+            statusLabel.setForeground(DANGER);
+            return;
+        }
+        
+        GmailConnector.shared(email, password).resetSync();
+        fetchEmails();
+    }
+    
+    private void toggleLiveImport() {
+        if (LiveImportRegistry.get() != null) {
+            LiveImportRegistry.stop();
+            liveButton.setText("⚡ Start Live Import");
+            return;
+        }
+        
+        String email = emailField.getText().trim();
+        String password = new String(passwordField.getPassword());
+        if (email.isEmpty() || password.isEmpty()) {
+            statusLabel.setText("❌ Please enter email and app password");
+            statusLabel.setForeground(DANGER);
+            return;
+        }
+        
+        // Registered so it outlives the dialog and the window can stop it. It gets a
+        // connection of its own: the service drops it on errors while IDLE holds it open.
+        GmailLiveImportService liveImport = new GmailLiveImportService(new GmailConnector(email, password),
+            (Integer) daysSpinner.getValue(), liveImportSink);
+        liveImport.setStatusListener(status -> SwingUtilities.invokeLater(() -> {
+            if (isDisplayable()) {
+                statusLabel.setText("⚡ " + status);
+                statusLabel.setForeground(PRIMARY);
+            }
+        }));
+        LiveImportRegistry.set(liveImport);
+        liveImport.start();
+        liveButton.setText("⏹ Stop Live Import");
+    }
+    
     private void saveSettings() {
         String email = emailField.getText().trim();
         
@@ -365,7 +447,7 @@ public class GmailSetupDialog extends JDialog {
             return;
         }
         
-        prefs.put("gmail_email", email);
+        syncState.setAccount(email);
         // Note: We don't save password for security reasons
         
         statusLabel.setText("✅ Settings saved!");
@@ -373,7 +455,16 @@ public class GmailSetupDialog extends JDialog {
     }
     
     private void loadSavedCredentials() {
-        String savedEmail = prefs.get("gmail_email", "");
+        String savedEmail = syncState.getAccount();
+        if (savedEmail.isEmpty()) {
+            // Older versions kept it for all profiles; hand it to the first profile that opens Gmail
+            Preferences prefs = Preferences.userNodeForPackage(GmailSetupDialog.class);
+            savedEmail = prefs.get("gmail_email", "");
+            if (!savedEmail.isEmpty()) {
+                syncState.setAccount(savedEmail);
+                prefs.remove("gmail_email");
+            }
+        }
         if (!savedEmail.isEmpty()) {
             emailField.setText(savedEmail);
         }
@@ -393,7 +484,20 @@ public class GmailSetupDialog extends JDialog {
             "App Password Help", JOptionPane.INFORMATION_MESSAGE);
     }
     
+    @Override
     public List<Transaction> getFetchedTransactions() {
         return fetchedTransactions;
     }
+    
+    /**
+     * Save the sync position of the last fetch; call once its transactions are imported
+     * Until then the same emails are offered again by the next fetch.
+     */
+    @Override
+    public void commitFetch() {
+        if (connector != null && pendingSync != null) {
+            connector.commitSync(pendingSync);
+            pendingSync = null;
+        }
+    }
 }
@@ -1,15 +1,25 @@
 package com.expenso.ui;
 
+import com.expenso.data.DuplicateDetector;
+import com.expenso.data.StatementHistory;
 import com.expenso.model.Transaction;
 import com.expenso.model.Expense;
 import com.expenso.util.BankStatementParser;
 import com.expenso.util.EmailTransactionParser;
+import com.expenso.util.ImportJob;
+import com.expenso.util.ImportSources;
+import com.expenso.util.MboxImporter;
+import com.expenso.util.StatementReconciler;
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.io.File;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Dialog for importing transactions from various sources
@@ -25,15 +35,35 @@ public class ImportTransactionsDialog extends JDialog {
     private static final Color TEXT_SECONDARY = new Color(209, 213, 219);
     
     private JTabbedPane tabbedPane;
-    private DefaultTableModel previewTableModel;
+    private TransactionPreviewModel previewTableModel;
     private JTable previewTable;
-    private List<Transaction> parsedTransactions;
     private List<Expense> selectedExpenses;
+    private List<Transaction> importedTransactions = new ArrayList<>();
     private JLabel statusLabel;
+    private DuplicateDetector duplicateDetector;
+    private ImportJob activeJob;
+    private StatementReconciler activeReconciler;
+    private StatementReconciler.Result reconciledStatement;
+    private JButton jobButton;
+    private Consumer<List<Transaction>> liveImportSink;
+    private MailImportDialog mailFetch;
     
     public ImportTransactionsDialog(Frame parent) {
+        this(parent, null);
+    }
+    
+    public ImportTransactionsDialog(Frame parent, DuplicateDetector duplicateDetector) {
+        this(parent, duplicateDetector, null);
+    }
+    
+    /**
+     * @param liveImportSink Stores transactions pushed by Gmail live import, or null to hide live import
+     */
+    public ImportTransactionsDialog(Frame parent, DuplicateDetector duplicateDetector,
+                                    Consumer<List<Transaction>> liveImportSink) {
         super(parent, "📥 Import Transactions", true);
-        parsedTransactions = new ArrayList<>();
+        this.duplicateDetector = duplicateDetector;
+        this.liveImportSink = liveImportSink;
         selectedExpenses = new ArrayList<>();
         initializeUI();
     }
@@ -94,10 +124,20 @@ public class ImportTransactionsDialog extends JDialog {
         statusLabel.setForeground(TEXT_SECONDARY);
         statusPanel.add(statusLabel, BorderLayout.WEST);
         
+        JPanel statusButtons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
+        statusButtons.setBackground(BG_CARD);
+        
+        jobButton = createStyledButton("Cancel", SECONDARY);
+        jobButton.setPreferredSize(new Dimension(100, 35));
+        jobButton.setVisible(false);
+        jobButton.addActionListener(e -> toggleActiveJob());
+        statusButtons.add(jobButton);
+        
         JButton closeButton = createStyledButton("Close", BG_SECONDARY);
         closeButton.setPreferredSize(new Dimension(100, 35));
         closeButton.addActionListener(e -> dispose());
-        statusPanel.add(closeButton, BorderLayout.EAST);
+        statusButtons.add(closeButton);
+        statusPanel.add(statusButtons, BorderLayout.EAST);
         
         mainPanel.add(statusPanel, BorderLayout.SOUTH);
         
@@ -123,9 +163,9 @@ public class ImportTransactionsDialog extends JDialog {
         infoPanel.add(Box.createVerticalStrut(10));
         
         String[] instructions = {
-            "1. Download your bank statement as CSV from net banking",
+            "1. Download your bank statement as CSV, OFX, QIF or CAMT.053 XML",
             "2. Supported banks: SBI, HDFC, ICICI, Axis, Kotak, and more",
-            "3. Click 'Select File' below and choose your CSV file",
+            "3. Click 'Select File' below and choose your statement file",
             "4. Review transactions in the preview tab",
             "5. Click 'Import' to add to your expenses"
         };
@@ -145,7 +185,7 @@ public class ImportTransactionsDialog extends JDialog {
         JPanel filePanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 50));
         filePanel.setBackground(BG_CARD);
         
-        JButton selectFileButton = createStyledButton("📁 Select Bank Statement (CSV)", PRIMARY);
+        JButton selectFileButton = createStyledButton("📁 Select Bank Statement", PRIMARY);
         selectFileButton.setPreferredSize(new Dimension(300, 50));
         selectFileButton.setFont(new Font("Segoe UI", Font.BOLD, 14));
         selectFileButton.addActionListener(e -> selectBankStatement());
@@ -217,7 +257,7 @@ public class ImportTransactionsDialog extends JDialog {
         scrollPane.setPreferredSize(new Dimension(0, 250));
         inputPanel.add(scrollPane, BorderLayout.CENTER);
         
-        JPanel emailButtonPanel = new JPanel(new GridLayout(1, 2, 10, 0));
+        JPanel emailButtonPanel = new JPanel(new GridLayout(1, 3, 10, 0));
         emailButtonPanel.setBackground(BG_CARD);
         
         JButton parseButton = createStyledButton("🔍 Parse Email", SECONDARY);
@@ -228,6 +268,10 @@ public class ImportTransactionsDialog extends JDialog {
         autoFetchButton.addActionListener(e -> autoFetchFromGmail());
         emailButtonPanel.add(autoFetchButton);
         
+        JButton mailboxButton = createStyledButton("📦 Import Mailbox (.mbox/.eml)", BG_SECONDARY);
+        mailboxButton.addActionListener(e -> selectMailboxExport());
+        emailButtonPanel.add(mailboxButton);
+        
         inputPanel.add(emailButtonPanel, BorderLayout.SOUTH);
         
         panel.add(inputPanel, BorderLayout.CENTER);
@@ -247,18 +291,7 @@ public class ImportTransactionsDialog extends JDialog {
         panel.add(headerLabel, BorderLayout.NORTH);
         
         // Table
-        String[] columns = {"Select", "Date", "Description", "Amount", "Type", "Category", "Source"};
-        previewTableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public Class<?> getColumnClass(int column) {
-                return column == 0 ? Boolean.class : String.class;
-            }
-            
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 0; // Only checkbox is editable
-            }
-        };
+        previewTableModel = new TransactionPreviewModel();
         
         previewTable = new JTable(previewTableModel);
         styleTable(previewTable);
@@ -296,7 +329,7 @@ public class ImportTransactionsDialog extends JDialog {
                 return f.isDirectory() || BankStatementParser.isSupportedFile(f);
             }
             public String getDescription() {
-                return "CSV Files (*.csv, *.txt)";
+                return "Bank Statements (*.csv, *.ofx, *.qif, *.xml, *.zip, *.gz)";
             }
         });
         
@@ -308,52 +341,224 @@ public class ImportTransactionsDialog extends JDialog {
     }
     
     private void parseBankStatement(File file) {
-        try {
-            statusLabel.setText("Parsing bank statement...");
-            statusLabel.setForeground(PRIMARY);
-            
-            parsedTransactions = BankStatementParser.parseCSV(file);
-            
-            if (parsedTransactions.isEmpty()) {
-                showError("No transactions found in the file.\nPlease check the file format.");
-                statusLabel.setText("No transactions found");
-                return;
+        // A new statement replaces the current preview
+        previewTableModel.clear();
+        reconciledStatement = null;
+        // Entries of an archive are separate statements with their own balances
+        StatementReconciler reconciler = BankStatementParser.isZip(file.getName()) ? null : new StatementReconciler();
+        runImportJob(ImportSources.bankStatement(file), reconciler);
+    }
+    
+    /**
+     * Run an import in the background, streaming results into the preview
+     */
+    private void runImportJob(ImportJob.Source<?> source) {
+        runImportJob(source, null);
+    }
+    
+    private void runImportJob(ImportJob.Source<?> source, StatementReconciler reconciler) {
+        if (activeJob != null && activeJob.getState() == ImportJob.State.RUNNING) {
+            showError("Another import is still running.\nCancel it or wait for it to finish.");
+            return;
+        }
+        
+        // Waiting for the EDT keeps a fast parser from flooding it with batches; the
+        // pipeline queues fill up and slow the reader instead
+        ImportJob job = new ImportJob(source, entries ->
+            SwingUtilities.invokeAndWait(() -> appendPreviewRows(entries)));
+        job.setDuplicateDetector(duplicateDetector);
+        job.setReconciler(reconciler);
+        job.setListener(new ImportJob.Listener() {
+            public void onProgress(ImportJob.Progress progress) {
+                SwingUtilities.invokeLater(() -> showJobProgress(job, progress));
             }
             
-            updatePreviewTable();
+            public void onFinished(ImportJob.State state, ImportJob.Progress progress, Throwable error) {
+                SwingUtilities.invokeLater(() -> showJobFinished(job, state, progress, error));
+            }
+        });
+        
+        activeJob = job;
+        activeReconciler = reconciler;
+        jobButton.setText("Cancel");
+        jobButton.setVisible(true);
+        statusLabel.setText("Importing " + source.getName() + "...");
+        statusLabel.setForeground(PRIMARY);
+        job.start();
+    }
+    
+    private void toggleActiveJob() {
+        if (activeJob == null) return;
+        if (activeJob.getState() == ImportJob.State.RUNNING) {
+            activeJob.cancel();
+        } else if (activeJob.canResume()) {
+            jobButton.setText("Cancel");
+            statusLabel.setText("Resuming " + activeJob.getName() + "...");
+            statusLabel.setForeground(PRIMARY);
+            activeJob.resume();
+        }
+    }
+    
+    private void showJobProgress(ImportJob job, ImportJob.Progress progress) {
+        if (job != activeJob || job.getState() != ImportJob.State.RUNNING) return;
+        String percent = progress.getFraction() >= 0
+            ? String.format("%.0f%% · ", progress.getFraction() * 100)
+            : "";
+        statusLabel.setText(String.format("Importing %s: %s%,d records · %,d transactions · %,.0f records/s",
+            job.getName(), percent, progress.getRecordsRead(), progress.getCommitted(),
+            progress.getRecordsPerSecond()));
+    }
+    
+    private void showJobFinished(ImportJob job, ImportJob.State state, ImportJob.Progress progress, Throwable error) {
+        if (job != activeJob) return;
+        String duplicates = progress.getDuplicates() > 0
+            ? String.format(", skipped %d duplicates", progress.getDuplicates())
+            : "";
+        
+        switch (state) {
+            case COMPLETED:
+                jobButton.setVisible(false);
+                if (progress.getCommitted() == 0) {
+                    statusLabel.setText("No new transactions found" + duplicates);
+                    statusLabel.setForeground(TEXT_SECONDARY);
+                    showError("No new transactions found in " + job.getName() + ".\nPlease check the file format.");
+                } else {
+                    statusLabel.setText(String.format("Loaded %d transactions from %s%s",
+                        progress.getCommitted(), job.getName(), duplicates));
+                    statusLabel.setForeground(SUCCESS);
+                }
+                if (activeReconciler != null) {
+                    showReconciliation(activeReconciler.getResult());
+                }
+                break;
+            case CANCELLED:
+                jobButton.setText("Resume");
+                statusLabel.setText(String.format("Import cancelled after %d transactions", progress.getCommitted()));
+                statusLabel.setForeground(TEXT_SECONDARY);
+                break;
+            default:
+                jobButton.setText("Resume");
+                showError("Error importing " + job.getName() + ":\n" + (error != null ? error.getMessage() : "unknown error"));
+                statusLabel.setText("Error importing file");
+                statusLabel.setForeground(Color.RED);
+                break;
+        }
+    }
+    
+    /**
+     * Warn about balance gaps within the statement and overlaps with earlier imports
+     */
+    private void showReconciliation(StatementReconciler.Result result) {
+        if (result.getRows() == 0) return;
+        reconciledStatement = result;
+        
+        List<String> warnings = new ArrayList<>();
+        for (StatementReconciler.Issue issue : result.getIssues()) {
+            warnings.add(issue.toString());
+        }
+        if (result.getMismatches() > result.getIssues().size()) {
+            warnings.add(String.format("... and %d more", result.getMismatches() - result.getIssues().size()));
+        }
+        warnings.addAll(new StatementHistory().check(result));
+        
+        if (result.hasBalances()) {
+            statusLabel.setText(statusLabel.getText() + (result.isConsistent()
+                ? " · balances reconcile"
+                : String.format(" · %d balance mismatches", result.getMismatches())));
+        }
+        if (warnings.isEmpty()) return;
+        
+        StringBuilder message = new StringBuilder("The statement may be incomplete or already imported:\n\n");
+        for (String warning : warnings) {
+            message.append("• ").append(warning).append('\n');
+        }
+        JTextArea text = new JTextArea(message.toString(), Math.min(warnings.size() + 3, 15), 70);
+        text.setEditable(false);
+        text.setLineWrap(true);
+        text.setWrapStyleWord(true);
+        JOptionPane.showMessageDialog(this, new JScrollPane(text), "Statement Reconciliation",
+            JOptionPane.WARNING_MESSAGE);
+    }
+    
+    /**
+     * Add committed entries to the preview; credits have no expense and are left out
+     */
+    private void appendPreviewRows(List<ImportJob.Entry> entries) {
+        List<Transaction> transactions = new ArrayList<>(entries.size());
+        List<Expense> expenses = new ArrayList<>(entries.size());
+        for (ImportJob.Entry entry : entries) {
+            transactions.add(entry.getTransaction());
+            expenses.add(entry.getExpense());
+        }
+        previewTableModel.addTransactions(transactions, expenses);
+        if (!tabbedPane.isEnabledAt(2) && previewTableModel.getRowCount() > 0) {
             tabbedPane.setEnabledAt(2, true);
             tabbedPane.setSelectedIndex(2);
-            
-            statusLabel.setText(String.format("Loaded %d transactions from %s", 
-                parsedTransactions.size(), file.getName()));
-            statusLabel.setForeground(SUCCESS);
-            
-        } catch (Exception e) {
-            showError("Error parsing bank statement:\n" + e.getMessage());
-            statusLabel.setText("Error parsing file");
-            statusLabel.setForeground(Color.RED);
         }
     }
     
+    @Override
+    public void dispose() {
+        if (activeJob != null) {
+            activeJob.cancel();
+        }
+        super.dispose();
+    }
+    
     private void autoFetchFromGmail() {
-        // TODO: Gmail functionality temporarily disabled due to missing dependencies
-        showError("Gmail auto-fetch is currently not available.\nPlease use manual import methods.");
-        /*
-        GmailSetupDialog gmailDialog = new GmailSetupDialog((Frame) getParent());
+        MailImportDialog gmailDialog = createGmailDialog();
+        if (gmailDialog == null) {
+            showError("Gmail auto-fetch is currently not available.\nPlease use manual import methods.");
+            return;
+        }
         gmailDialog.setVisible(true);
         
         // Get fetched transactions
         java.util.List<Transaction> transactions = gmailDialog.getFetchedTransactions();
         if (transactions != null && !transactions.isEmpty()) {
-            parsedTransactions.addAll(transactions);
-            updatePreviewTable();
+            mailFetch = gmailDialog;
+            previewTableModel.addTransactions(transactions);
             tabbedPane.setEnabledAt(2, true);
             tabbedPane.setSelectedIndex(2);
             
             statusLabel.setText(String.format("Auto-fetched %d transactions from Gmail!", transactions.size()));
             statusLabel.setForeground(SUCCESS);
         }
-        */
+    }
+    
+    /**
+     * The Gmail dialog, or null when it was built without JavaMail or JavaMail is missing
+     */
+    private MailImportDialog createGmailDialog() {
+        try {
+            return (MailImportDialog) Class.forName("com.expenso.ui.GmailSetupDialog")
+                .getConstructor(Frame.class, Consumer.class)
+                .newInstance(getParent(), liveImportSink);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println("Gmail import not available: " + e);
+            return null;
+        }
+    }
+    
+    private void selectMailboxExport() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileFilter() {
+            public boolean accept(File f) {
+                return f.isDirectory() || MboxImporter.isSupportedFile(f);
+            }
+            public String getDescription() {
+                return "Mailbox Exports (*.mbox, *.eml)";
+            }
+        });
+        
+        int result = fileChooser.showOpenDialog(this);
+        if (result == JFileChooser.APPROVE_OPTION) {
+            importMailbox(fileChooser.getSelectedFile());
+        }
+    }
+    
+    private void importMailbox(File file) {
+        runImportJob(ImportSources.mailbox(file));
     }
     
     private void parseEmail(String emailContent) {
@@ -379,8 +584,7 @@ public class ImportTransactionsDialog extends JDialog {
                 return;
             }
             
-            parsedTransactions.addAll(transactions);
-            updatePreviewTable();
+            previewTableModel.addTransactions(transactions);
             tabbedPane.setEnabledAt(2, true);
             tabbedPane.setSelectedIndex(2);
             
@@ -393,57 +597,67 @@ public class ImportTransactionsDialog extends JDialog {
         }
     }
     
-    private void updatePreviewTable() {
-        previewTableModel.setRowCount(0);
-        
-        for (Transaction txn : parsedTransactions) {
-            Expense expense = txn.toExpense();
-            if (expense != null) {
-                previewTableModel.addRow(new Object[]{
-                    true, // Selected by default
-                    txn.getFormattedDate(),
-                    txn.getDescription(),
-                    txn.getFormattedAmount(),
-                    txn.getType().getDisplayName(),
-                    expense.getCategory().getDisplayName(),
-                    txn.getSource()
-                });
-            }
-        }
-    }
-    
     private void selectAllTransactions(boolean select) {
-        for (int i = 0; i < previewTableModel.getRowCount(); i++) {
-            previewTableModel.setValueAt(select, i, 0);
-        }
+        previewTableModel.setAllSelected(select);
     }
     
     private void importSelectedTransactions() {
         selectedExpenses.clear();
         
-        for (int i = 0; i < previewTableModel.getRowCount(); i++) {
-            Boolean selected = (Boolean) previewTableModel.getValueAt(i, 0);
-            if (selected != null && selected) {
-                Transaction txn = parsedTransactions.get(i);
-                Expense expense = txn.toExpense();
-                if (expense != null) {
-                    selectedExpenses.add(expense);
-                }
-            }
+        BitSet selection = previewTableModel.getSelection();
+        List<Transaction> selectedTransactions = new ArrayList<>(selection.cardinality());
+        for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i + 1)) {
+            selectedTransactions.add(previewTableModel.getTransaction(i));
         }
         
-        if (selectedExpenses.isEmpty()) {
+        if (selectedTransactions.isEmpty()) {
             showError("Please select at least one transaction to import");
             return;
         }
         
+        // Drop transactions imported before or repeated within this batch
+        List<Transaction> newTransactions = duplicateDetector != null
+            ? duplicateDetector.filterNew(selectedTransactions)
+            : selectedTransactions;
+        int duplicates = selectedTransactions.size() - newTransactions.size();
+        
+        // Reuse the categories worked out for the preview
+        Set<Transaction> fresh = Collections.newSetFromMap(new IdentityHashMap<>());
+        fresh.addAll(newTransactions);
+        List<Expense> expenses = new ArrayList<>(newTransactions.size());
+        List<Transaction> transactions = new ArrayList<>(newTransactions.size());
+        for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i + 1)) {
+            if (fresh.contains(previewTableModel.getTransaction(i))) {
+                expenses.add(previewTableModel.getExpense(i));
+                transactions.add(previewTableModel.getTransaction(i));
+            }
+        }
+        
+        if (expenses.isEmpty()) {
+            showError(duplicates > 0
+                ? String.format("All %d selected transactions were already imported", duplicates)
+                : "Please select at least one transaction to import");
+            return;
+        }
+        
+        String prompt = String.format("Import %d selected transactions?", expenses.size());
+        if (duplicates > 0) {
+            prompt += String.format("\n%d duplicates will be skipped.", duplicates);
+        }
+        
         int confirm = JOptionPane.showConfirmDialog(this,
-            String.format("Import %d selected transactions?", selectedExpenses.size()),
+            prompt,
             "Confirm Import",
             JOptionPane.YES_NO_OPTION);
         
         if (confirm == JOptionPane.YES_OPTION) {
-            showSuccess(String.format("Successfully imported %d transactions!", selectedExpenses.size()));
+            // The app stores them and records them in the duplicate index
+            if (reconciledStatement != null) {
+                new StatementHistory().record(reconciledStatement);
+                reconciledStatement = null;
+            }
+            selectedExpenses.addAll(expenses);
+            importedTransactions = transactions;
             dispose();
         }
     }
@@ -482,10 +696,6 @@ public class ImportTransactionsDialog extends JDialog {
         return button;
     }
     
-    private void showSuccess(String message) {
-        JOptionPane.showMessageDialog(this, message, "Success", JOptionPane.INFORMATION_MESSAGE);
-    }
-    
     private void showError(String message) {
         JOptionPane.showMessageDialog(this, message, "Error", JOptionPane.ERROR_MESSAGE);
     }
@@ -493,4 +703,22 @@ public class ImportTransactionsDialog extends JDialog {
     public List<Expense> getImportedExpenses() {
         return selectedExpenses;
     }
+    
+    /**
+     * Call once the imported expenses are stored; only then is the Gmail
+     * sync position moved past the emails they came from
+     */
+    public void importSaved() {
+        if (mailFetch != null && !selectedExpenses.isEmpty()) {
+            mailFetch.commitFetch();
+            mailFetch = null;
+        }
+    }
+    
+    /**
+     * Transactions behind getImportedExpenses(), in the same order
+     */
+    public List<Transaction> getImportedTransactions() {
+        return importedTransactions;
+    }
 }
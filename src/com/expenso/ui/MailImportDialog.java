@@ -0,0 +1,27 @@
+package com.expenso.ui;
+
+import com.expenso.model.Transaction;
+import java.util.List;
+
+/**
+ * The Gmail dialog as the import dialog sees it
+ * GmailSetupDialog needs JavaMail, which compile.bat leaves out, so it is
+ * loaded by name and only used through this interface.
+ */
+interface MailImportDialog {
+
+    /**
+     * Show the dialog; blocks until it is closed
+     */
+    void setVisible(boolean visible);
+
+    /**
+     * Transactions of the last fetch, or null if nothing was fetched
+     */
+    List<Transaction> getFetchedTransactions();
+
+    /**
+     * Save the sync position of the last fetch once its transactions are stored
+     */
+    void commitFetch();
+}
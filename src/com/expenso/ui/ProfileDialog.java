@@ -0,0 +1,282 @@
+package com.expenso.ui;
+
+import com.expenso.model.User;
+import com.expenso.util.AuthService;
+import javax.swing.*;
+import java.awt.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Dialog for signing in to a profile or creating a new one
+ */
+public class ProfileDialog extends JDialog {
+    private static final Color PRIMARY = new Color(99, 102, 241);
+    private static final Color DANGER = new Color(239, 68, 68);
+    private static final Color BG_DARK = new Color(17, 24, 39);
+    private static final Color BG_CARD = new Color(31, 41, 55);
+    private static final Color BG_SECONDARY = new Color(55, 65, 81);
+    private static final Color TEXT_PRIMARY = new Color(249, 250, 251);
+    private static final Color TEXT_SECONDARY = new Color(156, 163, 175);
+    
+    private final AuthService auth;
+    private JComboBox<User> userCombo;
+    private JPasswordField passwordField;
+    private JTextField newNameField;
+    private JPasswordField newPasswordField;
+    private JPasswordField confirmField;
+    private JLabel statusLabel;
+    private AuthService.Session signedIn;
+    private boolean busy;
+    
+    /**
+     * @param current Profile in use, preselected; null when none is
+     */
+    public ProfileDialog(Frame parent, AuthService auth, User current) {
+        super(parent, "👤 Profiles", true);
+        this.auth = auth;
+        initializeUI(current);
+    }
+    
+    /**
+     * Show the dialog and wait
+     * @return session of the profile signed in to or created, or null if cancelled
+     */
+    public static AuthService.Session signIn(Frame parent, AuthService auth, User current) {
+        ProfileDialog dialog = new ProfileDialog(parent, auth, current);
+        dialog.setVisible(true);
+        return dialog.signedIn;
+    }
+    
+    private void initializeUI(User current) {
+        setSize(440, 620);
+        setLocationRelativeTo(getParent());
+        setResizable(false);
+        
+        JPanel mainPanel = new JPanel(new BorderLayout(0, 20));
+        mainPanel.setBackground(BG_DARK);
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(25, 30, 25, 30));
+        
+        // Header
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        headerPanel.setBackground(BG_DARK);
+        
+        JLabel titleLabel = new JLabel("👤 Profiles");
+        titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 24));
+        titleLabel.setForeground(TEXT_PRIMARY);
+        headerPanel.add(titleLabel, BorderLayout.NORTH);
+        
+        JLabel subtitleLabel = new JLabel("Everyone on this computer keeps their own expenses");
+        subtitleLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        subtitleLabel.setForeground(TEXT_SECONDARY);
+        headerPanel.add(subtitleLabel, BorderLayout.SOUTH);
+        
+        mainPanel.add(headerPanel, BorderLayout.NORTH);
+        
+        // Form Panel
+        JPanel formPanel = new JPanel();
+        formPanel.setLayout(new BoxLayout(formPanel, BoxLayout.Y_AXIS));
+        formPanel.setBackground(BG_CARD);
+        formPanel.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(BG_SECONDARY),
+            BorderFactory.createEmptyBorder(20, 20, 20, 20)
+        ));
+        
+        List<User> profiles = auth.getUsers().getUsers();
+        if (!profiles.isEmpty()) {
+            formPanel.add(createLabel("Profile"));
+            userCombo = new JComboBox<>(profiles.toArray(new User[0]));
+            userCombo.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+            userCombo.setMaximumSize(new Dimension(Integer.MAX_VALUE, 40));
+            userCombo.setAlignmentX(Component.LEFT_ALIGNMENT);
+            if (current != null) {
+                for (User user : profiles) {
+                    if (user.getId() == current.getId()) {
+                        userCombo.setSelectedItem(user);
+                    }
+                }
+            }
+            formPanel.add(userCombo);
+            formPanel.add(Box.createVerticalStrut(10));
+            
+            formPanel.add(createLabel("Password"));
+            passwordField = createPasswordField();
+            passwordField.addActionListener(e -> signIn());
+            formPanel.add(passwordField);
+            formPanel.add(Box.createVerticalStrut(10));
+            
+            JButton signInButton = createStyledButton("Sign In", PRIMARY);
+            signInButton.addActionListener(e -> signIn());
+            formPanel.add(signInButton);
+            formPanel.add(Box.createVerticalStrut(20));
+        }
+        
+        JLabel newLabel = new JLabel(profiles.isEmpty() ? "Create the first profile" : "New profile");
+        newLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        newLabel.setForeground(TEXT_PRIMARY);
+        newLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        formPanel.add(newLabel);
+        if (profiles.isEmpty()) {
+            JLabel moveLabel = new JLabel("Your existing expenses will move into it");
+            moveLabel.setFont(new Font("Segoe UI", Font.PLAIN, 11));
+            moveLabel.setForeground(TEXT_SECONDARY);
+            moveLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+            formPanel.add(moveLabel);
+        }
+        formPanel.add(Box.createVerticalStrut(10));
+        
+        formPanel.add(createLabel("Name"));
+        newNameField = createTextField();
+        formPanel.add(newNameField);
+        formPanel.add(Box.createVerticalStrut(10));
+        
+        formPanel.add(createLabel("Password"));
+        newPasswordField = createPasswordField();
+        formPanel.add(newPasswordField);
+        formPanel.add(Box.createVerticalStrut(10));
+        
+        formPanel.add(createLabel("Confirm Password"));
+        confirmField = createPasswordField();
+        confirmField.addActionListener(e -> createProfile());
+        formPanel.add(confirmField);
+        formPanel.add(Box.createVerticalStrut(10));
+        
+        JButton createButton = createStyledButton("Create Profile", BG_SECONDARY);
+        createButton.addActionListener(e -> createProfile());
+        formPanel.add(createButton);
+        
+        mainPanel.add(formPanel, BorderLayout.CENTER);
+        
+        // Status and Cancel
+        JPanel bottomPanel = new JPanel(new BorderLayout(10, 0));
+        bottomPanel.setBackground(BG_DARK);
+        
+        statusLabel = new JLabel(" ");
+        statusLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        statusLabel.setForeground(DANGER);
+        bottomPanel.add(statusLabel, BorderLayout.CENTER);
+        
+        JButton cancelButton = createStyledButton("Cancel", BG_SECONDARY);
+        cancelButton.addActionListener(e -> dispose());
+        bottomPanel.add(cancelButton, BorderLayout.EAST);
+        
+        mainPanel.add(bottomPanel, BorderLayout.SOUTH);
+        
+        setContentPane(mainPanel);
+    }
+    
+    private void signIn() {
+        if (busy) {
+            return;
+        }
+        User user = (User) userCombo.getSelectedItem();
+        char[] password = passwordField.getPassword();
+        if (user == null || password.length == 0) {
+            showStatus("Enter your password");
+            return;
+        }
+        // BCrypt takes a noticeable fraction of a second, so it runs on the auth pool
+        CompletableFuture<AuthService.Session> result = auth.signIn(user.getUsername(), new String(password));
+        Arrays.fill(password, '\0');
+        waitFor("Signing in...", result, "Wrong password");
+    }
+    
+    private void createProfile() {
+        if (busy) {
+            return;
+        }
+        String name = newNameField.getText().trim();
+        char[] password = newPasswordField.getPassword();
+        char[] confirm = confirmField.getPassword();
+        if (!Arrays.equals(password, confirm)) {
+            Arrays.fill(password, '\0');
+            Arrays.fill(confirm, '\0');
+            showStatus("Passwords do not match");
+            return;
+        }
+        Arrays.fill(confirm, '\0');
+        CompletableFuture<AuthService.Session> result = auth.createUser(name, new String(password));
+        Arrays.fill(password, '\0');
+        waitFor("Creating profile...", result, null);
+    }
+    
+    private void waitFor(String progress, CompletableFuture<AuthService.Session> result, String failure) {
+        statusLabel.setForeground(TEXT_SECONDARY);
+        statusLabel.setText(progress);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        busy = true;
+        result.whenComplete((session, error) -> SwingUtilities.invokeLater(() -> {
+            setCursor(Cursor.getDefaultCursor());
+            busy = false;
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+                showStatus(cause.getMessage());
+            } else if (session != null) {
+                signedIn = session;
+                dispose();
+            } else {
+                showStatus(failure);
+            }
+        }));
+    }
+    
+    private void showStatus(String message) {
+        statusLabel.setForeground(DANGER);
+        statusLabel.setText(message);
+    }
+    
+    private JLabel createLabel(String text) {
+        JLabel label = new JLabel(text);
+        label.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        label.setForeground(TEXT_SECONDARY);
+        label.setAlignmentX(Component.LEFT_ALIGNMENT);
+        return label;
+    }
+    
+    private JTextField createTextField() {
+        return styleField(new JTextField());
+    }
+    
+    private JPasswordField createPasswordField() {
+        return styleField(new JPasswordField());
+    }
+    
+    private <T extends JTextField> T styleField(T field) {
+        field.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        field.setBackground(BG_SECONDARY);
+        field.setForeground(TEXT_PRIMARY);
+        field.setCaretColor(TEXT_PRIMARY);
+        field.setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(BG_SECONDARY),
+            BorderFactory.createEmptyBorder(8, 12, 8, 12)
+        ));
+        field.setMaximumSize(new Dimension(Integer.MAX_VALUE, 40));
+        field.setAlignmentX(Component.LEFT_ALIGNMENT);
+        return field;
+    }
+    
+    private JButton createStyledButton(String text, Color color) {
+        JButton button = new JButton(text);
+        button.setFont(new Font("Segoe UI", Font.BOLD, 13));
+        button.setForeground(Color.WHITE);
+        button.setBackground(color);
+        button.setFocusPainted(false);
+        button.setBorderPainted(false);
+        button.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        button.setAlignmentX(Component.LEFT_ALIGNMENT);
+        
+        button.addMouseListener(new java.awt.event.MouseAdapter() {
+            public void mouseEntered(java.awt.event.MouseEvent evt) {
+                button.setBackground(color.darker());
+            }
+            public void mouseExited(java.awt.event.MouseEvent evt) {
+                button.setBackground(color);
+            }
+        });
+        
+        return button;
+    }
+}
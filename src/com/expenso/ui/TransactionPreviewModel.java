@@ -0,0 +1,167 @@
+package com.expenso.ui;
+
+import com.expenso.model.Expense;
+import com.expenso.model.Transaction;
+import com.expenso.model.Transaction.TransactionType;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Table model for the import preview
+ * Row i is always transaction i: credits are left out when rows are added
+ * rather than when they are rendered. Cells are computed only when the table
+ * asks for them, so only the rows scrolled into view are ever formatted, and
+ * each transaction is categorized at most once. Selection is kept in a BitSet.
+ */
+public class TransactionPreviewModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"Select", "Date", "Description", "Amount", "Type", "Category", "Source"};
+
+    private final List<Transaction> transactions = new ArrayList<>();
+    private final List<Expense> expenses = new ArrayList<>();
+    private final BitSet selected = new BitSet();
+
+    /**
+     * Append debit transactions, selected by default
+     */
+    public void addTransactions(List<Transaction> added) {
+        int first = transactions.size();
+        for (Transaction txn : added) {
+            if (isExpense(txn)) {
+                append(txn, null);
+            }
+        }
+        fireAppended(first);
+    }
+
+    /**
+     * Append transactions whose expense was already worked out; credits have none
+     */
+    public void addTransactions(List<Transaction> added, List<Expense> addedExpenses) {
+        int first = transactions.size();
+        for (int i = 0; i < added.size(); i++) {
+            Expense expense = addedExpenses.get(i);
+            if (expense != null) {
+                append(added.get(i), expense);
+            }
+        }
+        fireAppended(first);
+    }
+
+    private void append(Transaction txn, Expense expense) {
+        selected.set(transactions.size());
+        transactions.add(txn);
+        expenses.add(expense);
+    }
+
+    private void fireAppended(int first) {
+        if (transactions.size() > first) {
+            fireTableRowsInserted(first, transactions.size() - 1);
+        }
+    }
+
+    public void clear() {
+        transactions.clear();
+        expenses.clear();
+        selected.clear();
+        fireTableDataChanged();
+    }
+
+    public Transaction getTransaction(int row) {
+        return transactions.get(row);
+    }
+
+    /**
+     * Expense for a row, categorized on first use
+     */
+    public Expense getExpense(int row) {
+        Expense expense = expenses.get(row);
+        if (expense == null) {
+            expense = transactions.get(row).toExpense();
+            expenses.set(row, expense);
+        }
+        return expense;
+    }
+
+    public void setAllSelected(boolean select) {
+        if (select) {
+            selected.set(0, transactions.size());
+        } else {
+            selected.clear();
+        }
+        if (!transactions.isEmpty()) {
+            fireTableRowsUpdated(0, transactions.size() - 1);
+        }
+    }
+
+    public boolean isSelected(int row) {
+        return selected.get(row);
+    }
+
+    /**
+     * Row indexes of the selected transactions, in order
+     */
+    public BitSet getSelection() {
+        return (BitSet) selected.clone();
+    }
+
+    public int getSelectedCount() {
+        return selected.cardinality();
+    }
+
+    @Override
+    public int getRowCount() {
+        return transactions.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 0 ? Boolean.class : String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == 0; // Only checkbox is editable
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Transaction txn = transactions.get(row);
+        switch (column) {
+            case 0: return selected.get(row);
+            case 1: return txn.getFormattedDate();
+            case 2: return txn.getDescription();
+            case 3: return txn.getFormattedAmount();
+            case 4: return txn.getType().getDisplayName();
+            case 5: return getExpense(row).getCategory().getDisplayName();
+            case 6: return txn.getSource();
+            default: return null;
+        }
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        if (column == 0) {
+            selected.set(row, Boolean.TRUE.equals(value));
+            fireTableCellUpdated(row, column);
+        }
+    }
+
+    /**
+     * Same rule as Transaction.toExpense, without categorizing
+     */
+    private static boolean isExpense(Transaction txn) {
+        return txn.getType() != TransactionType.CREDIT && txn.getType() != TransactionType.UPI_RECEIVED;
+    }
+}
@@ -1,5 +1,6 @@
 package com.expenso.ui;
 
+import com.expenso.data.UpiPaymentStore;
 import com.expenso.model.UpiPayment;
 import com.expenso.util.QRCodeGenerator;
 import javax.swing.*;
@@ -25,16 +26,26 @@ public class UpiPaymentDialog extends JDialog {
     private JTextField nameField;
     private JTextField amountField;
     private JTextField noteField;
+    private JLabel subtitleLabel;
     private UpiPayment payment;
     private boolean paymentInitiated = false;
+    private final UpiPaymentStore paymentStore;
     
     public UpiPaymentDialog(Frame parent) {
+        this(parent, null);
+    }
+    
+    /**
+     * @param paymentStore Ledger to record payments in, may be null
+     */
+    public UpiPaymentDialog(Frame parent, UpiPaymentStore paymentStore) {
         super(parent, "💳 UPI Payment", true);
+        this.paymentStore = paymentStore;
         initializeUI();
     }
     
     private void initializeUI() {
-        setSize(500, 650);
+        setSize(500, paymentStore != null ? 705 : 650);
         setLocationRelativeTo(getParent());
         setResizable(false);
         
@@ -51,10 +62,11 @@ public class UpiPaymentDialog extends JDialog {
         titleLabel.setForeground(TEXT_PRIMARY);
         headerPanel.add(titleLabel, BorderLayout.WEST);
         
-        JLabel subtitleLabel = new JLabel("Send money via UPI");
+        subtitleLabel = new JLabel("Send money via UPI");
         subtitleLabel.setFont(new Font("Segoe UI", Font.PLAIN, 12));
         subtitleLabel.setForeground(TEXT_SECONDARY);
         headerPanel.add(subtitleLabel, BorderLayout.SOUTH);
+        updatePendingSummary();
         
         mainPanel.add(headerPanel, BorderLayout.NORTH);
         
@@ -114,7 +126,7 @@ public class UpiPaymentDialog extends JDialog {
         mainPanel.add(formPanel, BorderLayout.CENTER);
         
         // Button Panel
-        JPanel buttonPanel = new JPanel(new GridLayout(2, 2, 10, 10));
+        JPanel buttonPanel = new JPanel(new GridLayout(0, 2, 10, 10));
         buttonPanel.setBackground(BG_DARK);
         
         JButton generateButton = createStyledButton("Generate QR", PRIMARY);
@@ -132,6 +144,11 @@ public class UpiPaymentDialog extends JDialog {
         buttonPanel.add(generateButton);
         buttonPanel.add(payButton);
         buttonPanel.add(copyButton);
+        if (paymentStore != null) {
+            JButton pendingButton = createStyledButton("Pending Payments", BG_SECONDARY);
+            pendingButton.addActionListener(e -> managePendingPayments());
+            buttonPanel.add(pendingButton);
+        }
         buttonPanel.add(cancelButton);
         
         mainPanel.add(buttonPanel, BorderLayout.SOUTH);
@@ -224,10 +241,94 @@ public class UpiPaymentDialog extends JDialog {
         );
     }
     
+    /**
+     * Payment for the current fields; reused until a field changes or it is closed
+     * Only Pay Now adds it to the ledger, so showing a QR code or copying a link
+     * while the fields are still being filled in records nothing.
+     */
+    private UpiPayment preparePayment() {
+        UpiPayment candidate = createPayment();
+        if (payment != null
+                && (payment.getStatus() == UpiPayment.PaymentStatus.INITIATED
+                    || payment.getStatus() == UpiPayment.PaymentStatus.PENDING)
+                && payment.getPayeeUpiId().equals(candidate.getPayeeUpiId())
+                && payment.getPayeeName().equals(candidate.getPayeeName())
+                && payment.getAmount() == candidate.getAmount()
+                && payment.getNote().equals(candidate.getNote())) {
+            return payment;
+        }
+        return candidate;
+    }
+    
+    /**
+     * Add the payment to the ledger unless it already is, giving it the
+     * transaction reference its link carries
+     */
+    private void recordPayment() {
+        if (paymentStore != null && paymentStore.get(payment.getId()) != payment) {
+            paymentStore.add(payment);
+            updatePendingSummary();
+        }
+    }
+    
+    /**
+     * Show the number of open payments under the title, with the list as tooltip
+     */
+    private void updatePendingSummary() {
+        if (paymentStore == null || paymentStore.getPendingCount() == 0) {
+            subtitleLabel.setText("Send money via UPI");
+            subtitleLabel.setToolTipText(null);
+            return;
+        }
+        subtitleLabel.setText("Send money via UPI · " + paymentStore.getPendingCount() + " pending payments");
+        StringBuilder pending = new StringBuilder("<html>");
+        for (UpiPayment p : paymentStore.getPending()) {
+            pending.append(describe(p)).append("<br>");
+        }
+        subtitleLabel.setToolTipText(pending.append("</html>").toString());
+    }
+    
+    private static String describe(UpiPayment p) {
+        return p.getFormattedTimestamp() + " · " + p.getFormattedAmount() + " to " + p.getPayeeName()
+            + " (" + p.getStatus() + ")";
+    }
+    
+    /**
+     * Close a payment that will not go through, so no imported transaction completes it
+     */
+    private void managePendingPayments() {
+        java.util.List<UpiPayment> pending = paymentStore.getPending();
+        if (pending.isEmpty()) {
+            showInfo("There are no pending payments.");
+            return;
+        }
+        
+        JComboBox<String> choice = new JComboBox<>();
+        for (UpiPayment p : pending) {
+            choice.addItem(describe(p));
+        }
+        Object[] options = {"Mark Failed", "Mark Cancelled", "Close"};
+        int action = JOptionPane.showOptionDialog(this,
+            new Object[]{"Payment:", choice},
+            "Pending Payments",
+            JOptionPane.DEFAULT_OPTION,
+            JOptionPane.QUESTION_MESSAGE,
+            null,
+            options,
+            options[2]);
+        
+        if (action == 0 || action == 1) {
+            UpiPayment selected = pending.get(choice.getSelectedIndex());
+            paymentStore.updateStatus(selected,
+                action == 0 ? UpiPayment.PaymentStatus.FAILED : UpiPayment.PaymentStatus.CANCELLED);
+            updatePendingSummary();
+        }
+    }
+    
     private void generateQRCode() {
         if (!validateInput()) return;
         
-        payment = createPayment();
+        payment = preparePayment();
         String upiLink = payment.generateUpiLink();
         
         // Create QR Code dialog
@@ -284,8 +385,7 @@ public class UpiPaymentDialog extends JDialog {
     private void initiatePayment() {
         if (!validateInput()) return;
         
-        payment = createPayment();
-        String upiLink = payment.generateUpiLink();
+        payment = preparePayment();
         
         // Try to open UPI link
         try {
@@ -308,11 +408,21 @@ public class UpiPaymentDialog extends JDialog {
                     options,
                     options[0]);
                 
+                if (choice < 0 || choice == 3) {
+                    return;
+                }
+                // Paying with any of the options starts the payment
+                recordPayment();
+                String upiLink = payment.generateUpiLink();
+                
                 if (choice == 0) {
                     // Try to open UPI link
                     try {
                         desktop.browse(new URI("https://pay.google.com/pay?link=" + java.net.URLEncoder.encode(upiLink, "UTF-8")));
                         paymentInitiated = true;
+                        if (paymentStore != null) {
+                            paymentStore.updateStatus(payment, UpiPayment.PaymentStatus.PENDING);
+                        }
                         showSuccess("Opening payment in browser...\nComplete the payment in your UPI app.");
                         dispose();
                     } catch (Exception ex) {
@@ -335,7 +445,7 @@ public class UpiPaymentDialog extends JDialog {
     private void copyUpiLink() {
         if (!validateInput()) return;
         
-        payment = createPayment();
+        payment = preparePayment();
         String upiLink = payment.generateUpiLink();
         
         copyToClipboard(upiLink);
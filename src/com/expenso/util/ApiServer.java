@@ -0,0 +1,729 @@
+package com.expenso.util;
+
+import com.expenso.data.DataManager;
+import com.expenso.data.UserStore;
+import com.expenso.model.Expense;
+import com.expenso.model.Transaction;
+import com.expenso.model.User;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.SecureRandom;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Embedded HTTP server exposing expenses, the budget, summaries and statement imports as JSON
+ * Listens on the loopback interface only and works on the same DataManager as the
+ * window, so both see each other's changes. Each request runs on its own thread
+ * from TaskExecutors (virtual threads on JDK 21+). Expense lists are streamed as
+ * they are written; the summary is cached per data version and carries an ETag,
+ * so polling clients get 304 Not Modified until something changes.
+ *
+ * Once profiles exist, clients sign in with POST /api/session and send the token
+ * as "Authorization: Bearer ..."; before that the API opens the shared data.
+ * The web front end (index.html, app.js) is served from the expenso.web.dir
+ * folder, the working directory by default.
+ */
+public class ApiServer {
+    public static final int DEFAULT_PORT = 8765;
+    private static final int MAX_JSON_BODY = 64 * 1024;
+    private static final int IMPORT_BATCH = 1000;
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final Map<String, String> STATIC_TYPES = Map.of(
+        "/index.html", "text/html; charset=utf-8",
+        "/app.js", "text/javascript; charset=utf-8",
+        "/style.css", "text/css; charset=utf-8");
+    private static final Map<ExpenseExporter.Format, String> EXPORT_TYPES = Map.of(
+        ExpenseExporter.Format.CSV, "text/csv; charset=utf-8",
+        ExpenseExporter.Format.JSON, JSON,
+        ExpenseExporter.Format.NDJSON, "application/x-ndjson; charset=utf-8",
+        ExpenseExporter.Format.COLUMNAR, "application/octet-stream");
+
+    static {
+        // Small responses go out in several writes; without this each can wait for a delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AuthService auth;
+    private final File webDir;
+    private DataManager sharedData;
+    // Data of each signed-in profile, opened on first use
+    private final Map<Long, DataManager> profileData = new ConcurrentHashMap<>();
+    private final Map<DataManager, Summary> summaries = new ConcurrentHashMap<>();
+    // Differs on each start, so ETags from an earlier run never match
+    private final String epoch = Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, 36);
+
+    /**
+     * Rendered summary for one data version
+     */
+    private static final class Summary {
+        final long version;
+        final String etag;
+        final byte[] body;
+
+        Summary(long version, String etag, byte[] body) {
+            this.version = version;
+            this.etag = etag;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Request that cannot be served, answered with its status and message
+     */
+    private static class ApiException extends Exception {
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * @param auth Profiles and sessions; null to always serve dataManager
+     * @param dataManager Data the window has open, shared rather than loaded twice;
+     *     null to open data as requests need it
+     */
+    public ApiServer(int port, AuthService auth, DataManager dataManager) throws IOException {
+        this.auth = auth;
+        this.sharedData = dataManager;
+        this.webDir = new File(System.getProperty("expenso.web.dir", "."));
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 128);
+        this.executor = TaskExecutors.newPerTaskExecutor("api");
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stop serving and save the data of profiles opened by the server
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+        for (DataManager data : profileData.values()) {
+            if (data != sharedData) {
+                data.close();
+            }
+        }
+        profileData.clear();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        try {
+            checkHost(exchange);
+            if (path.equals("/api/session")) {
+                session(exchange);
+            } else if (path.equals("/api/expenses") || path.startsWith("/api/expenses/")) {
+                expenses(exchange, path.substring("/api/expenses".length()));
+            } else if (path.equals("/api/budget")) {
+                budget(exchange);
+            } else if (path.equals("/api/summary")) {
+                summary(exchange);
+            } else if (path.equals("/api/export")) {
+                export(exchange);
+            } else if (path.equals("/api/import")) {
+                importStatement(exchange);
+            } else if (!path.startsWith("/api/")) {
+                staticFile(exchange, path);
+            } else {
+                throw new ApiException(404, "No such endpoint");
+            }
+        } catch (ApiException e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (IOException e) {
+            // Usually the client went away; nothing left to answer
+        } catch (Exception e) {
+            System.err.println("Error handling " + exchange.getRequestMethod() + " " + path + ": " + e.getMessage());
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Only answer requests addressed to this machine, so a web page cannot reach
+     * the API through a DNS name rebound to 127.0.0.1
+     */
+    private void checkHost(HttpExchange exchange) throws ApiException {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (host == null) {
+            return;
+        }
+        int colon = host.lastIndexOf(':');
+        String name = colon > host.lastIndexOf(']') ? host.substring(0, colon) : host;
+        if (!name.equalsIgnoreCase("localhost") && !name.equals("127.0.0.1") && !name.equals("[::1]")) {
+            throw new ApiException(403, "Unknown host " + host);
+        }
+    }
+
+    private void session(HttpExchange exchange) throws Exception {
+        if (auth == null) {
+            throw new ApiException(404, "Profiles are not enabled");
+        }
+        switch (exchange.getRequestMethod()) {
+            case "POST": {
+                Map<String, Object> body = readJson(exchange);
+                AuthService.Session session;
+                try {
+                    session = auth.signIn(string(body, "username"), string(body, "password")).get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof AuthService.RateLimitedException) {
+                        long seconds = (((AuthService.RateLimitedException) cause).getRetryAfterMillis() + 999) / 1000;
+                        exchange.getResponseHeaders().set("Retry-After", String.valueOf(seconds));
+                        throw new ApiException(429, cause.getMessage());
+                    }
+                    if (cause instanceof RejectedExecutionException) {
+                        throw new ApiException(503, cause.getMessage());
+                    }
+                    throw e;
+                }
+                if (session == null) {
+                    throw new ApiException(401, "Wrong profile name or password");
+                }
+                try (Json.Writer json = openJson(exchange, 200)) {
+                    json.beginObject()
+                        .field("token", session.getToken())
+                        .field("user", session.getUser().getUsername())
+                        .field("expiresAt", session.getExpiresAt())
+                        .endObject();
+                }
+                break;
+            }
+            case "DELETE":
+                auth.signOut(bearerToken(exchange));
+                sendEmpty(exchange, 204);
+                break;
+            default:
+                throw methodNotAllowed(exchange, "POST, DELETE");
+        }
+    }
+
+    /**
+     * Data the request may use: the signed-in profile's, or the shared data before profiles exist
+     */
+    private DataManager authorize(HttpExchange exchange) throws ApiException {
+        if (auth == null || !auth.getUsers().hasUsers()) {
+            return getSharedData();
+        }
+        User user = auth.validate(bearerToken(exchange));
+        if (user == null) {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+            throw new ApiException(401, "Sign in first");
+        }
+        return profileData.computeIfAbsent(user.getId(), id -> {
+            UserStore users = auth.getUsers();
+            File dir = users.getDirectory(user);
+            DataManager shared = sharedData;
+            return shared != null && dir.equals(shared.getDirectory()) ? shared : new DataManager(dir);
+        });
+    }
+
+    private synchronized DataManager getSharedData() {
+        if (sharedData == null) {
+            sharedData = new DataManager();
+        }
+        return sharedData;
+    }
+
+    private static String bearerToken(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header != null && header.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return header.substring(7).trim();
+        }
+        return null;
+    }
+
+    private void expenses(HttpExchange exchange, String rest) throws Exception {
+        DataManager data = authorize(exchange);
+        String method = exchange.getRequestMethod();
+        if (rest.isEmpty() || rest.equals("/")) {
+            switch (method) {
+                case "GET":
+                    listExpenses(exchange, data);
+                    return;
+                case "POST":
+                    addExpense(exchange, data);
+                    return;
+                case "DELETE":
+                    data.clearAllExpenses();
+                    sendEmpty(exchange, 204);
+                    return;
+                default:
+                    throw methodNotAllowed(exchange, "GET, POST, DELETE");
+            }
+        }
+
+        long id;
+        try {
+            id = Long.parseLong(rest.substring(1));
+        } catch (NumberFormatException e) {
+            throw new ApiException(404, "No such expense");
+        }
+        switch (method) {
+            case "GET":
+                for (Expense expense : data.getExpensesSnapshot()) {
+                    if (expense.getId() == id) {
+                        try (Json.Writer json = openJson(exchange, 200)) {
+                            writeExpense(json, expense);
+                        }
+                        return;
+                    }
+                }
+                throw new ApiException(404, "No such expense");
+            case "DELETE":
+                if (!data.deleteExpense(id)) {
+                    throw new ApiException(404, "No such expense");
+                }
+                sendEmpty(exchange, 204);
+                return;
+            default:
+                throw methodNotAllowed(exchange, "GET, DELETE");
+        }
+    }
+
+    /**
+     * Newest first, optionally filtered by category, date range and text, with offset and limit
+     */
+    private void listExpenses(HttpExchange exchange, DataManager data) throws Exception {
+        Map<String, String> query = parseQuery(exchange);
+        ExpenseFilter filter = parseFilter(query);
+        int offset = parseCount(query.get("offset"), 0);
+        int limit = parseCount(query.get("limit"), Integer.MAX_VALUE);
+
+        List<Expense> expenses = data.getExpensesSnapshot();
+        try (Json.Writer json = openJson(exchange, 200)) {
+            json.beginArray();
+            int skipped = 0;
+            int written = 0;
+            for (Expense expense : expenses) {
+                if (written >= limit) {
+                    break;
+                }
+                if (!filter.test(expense)) {
+                    continue;
+                }
+                if (skipped < offset) {
+                    skipped++;
+                    continue;
+                }
+                writeExpense(json, expense);
+                written++;
+            }
+            json.endArray();
+        }
+    }
+
+    /**
+     * All matching expenses as a download in the format parameter (csv, json, ndjson or expc)
+     */
+    private void export(HttpExchange exchange) throws Exception {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            throw methodNotAllowed(exchange, "GET");
+        }
+        DataManager data = authorize(exchange);
+        Map<String, String> query = parseQuery(exchange);
+        ExpenseExporter.Format format = ExpenseExporter.Format.of(query.getOrDefault("format", "csv"));
+        if (format == null) {
+            throw new ApiException(400, "Unknown format: " + query.get("format"));
+        }
+        ExpenseFilter filter = parseFilter(query);
+
+        // Export a copy so a slow download does not hold up changes
+        List<Expense> expenses = data.getExpensesSnapshot();
+        exchange.getResponseHeaders().set("Content-Disposition",
+            "attachment; filename=\"expenses." + format.getExtension() + "\"");
+        OutputStream out = openStream(exchange, 200, EXPORT_TYPES.get(format), format != ExpenseExporter.Format.COLUMNAR);
+        try (ExpenseExporter exporter = new ExpenseExporter(out, format, filter)) {
+            exporter.writeAll(expenses);
+        }
+    }
+
+    private void addExpense(HttpExchange exchange, DataManager data) throws Exception {
+        Map<String, Object> body = readJson(exchange);
+        String name = string(body, "name").trim();
+        if (name.isEmpty()) {
+            throw new ApiException(400, "Enter a description");
+        }
+        Object amountValue = body.get("amount");
+        if (!(amountValue instanceof Double) || !((Double) amountValue > 0) || ((Double) amountValue).isInfinite()) {
+            throw new ApiException(400, "Amount must be a positive number");
+        }
+        double amount = Math.round((Double) amountValue * 100) / 100.0;
+        Expense.Category category = parseCategory(string(body, "category"));
+        LocalDate date = body.get("date") != null ? parseDate(string(body, "date")) : LocalDate.now();
+
+        Expense expense = new Expense(name, amount, category, date);
+        // Gets a unique id here, shown in the Location header
+        data.addExpense(expense);
+
+        exchange.getResponseHeaders().set("Location", "/api/expenses/" + expense.getId());
+        try (Json.Writer json = openJson(exchange, 201)) {
+            writeExpense(json, expense);
+        }
+    }
+
+    private static void writeExpense(Json.Writer json, Expense expense) throws IOException {
+        json.beginObject()
+            .field("id", expense.getId())
+            .field("name", expense.getName())
+            .name("amount").amount(ExpenseSummary.toPaise(expense.getAmount()))
+            .field("category", expense.getCategory() != null ? expense.getCategory().getLabel() : null)
+            .field("date", expense.getDate() != null ? expense.getDate().toString() : null)
+            .endObject();
+    }
+
+    private void budget(HttpExchange exchange) throws Exception {
+        DataManager data = authorize(exchange);
+        switch (exchange.getRequestMethod()) {
+            case "GET":
+                break;
+            case "PUT": {
+                Object value = readJson(exchange).get("budget");
+                if (!(value instanceof Double) || !((Double) value >= 0) || ((Double) value).isInfinite()) {
+                    throw new ApiException(400, "Budget must be a number of at least 0");
+                }
+                data.setBudget((Double) value);
+                break;
+            }
+            default:
+                throw methodNotAllowed(exchange, "GET, PUT");
+        }
+        double budget = data.getBudget();
+        double month = data.getCurrentMonthExpenses();
+        try (Json.Writer json = openJson(exchange, 200)) {
+            json.beginObject()
+                .name("budget").amount(ExpenseSummary.toPaise(budget))
+                .name("currentMonth").amount(ExpenseSummary.toPaise(month))
+                .name("remaining").amount(ExpenseSummary.toPaise(budget) - ExpenseSummary.toPaise(month))
+                .endObject();
+        }
+    }
+
+    /**
+     * Totals by category and by month, rendered once per data version
+     */
+    private void summary(HttpExchange exchange) throws Exception {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            throw methodNotAllowed(exchange, "GET");
+        }
+        DataManager data = authorize(exchange);
+        Summary summary = summaries.get(data);
+        long version = data.getVersion();
+        if (summary == null || summary.version != version) {
+            summary = renderSummary(data, version);
+            summaries.put(data, summary);
+        }
+
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", summary.etag);
+        headers.set("Cache-Control", "no-cache");
+        if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), summary.etag)) {
+            sendEmpty(exchange, 304);
+            return;
+        }
+        headers.set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, summary.body.length);
+        exchange.getResponseBody().write(summary.body);
+    }
+
+    /**
+     * @param version Read before the snapshot is taken, so a change made meanwhile
+     *     shows up as a newer version on the next request
+     */
+    private Summary renderSummary(DataManager data, long version) throws IOException {
+        ExpenseSummary summary = ExpenseSummary.of(data.getExpensesSnapshot(), data.getBudget(), YearMonth.now());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (Json.Writer json = new Json.Writer(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+            summary.writeJson(json);
+        }
+        String etag = "\"" + epoch + "-" + Integer.toHexString(System.identityHashCode(data)) + "-" + version + "\"";
+        return new Summary(version, etag, bytes.toByteArray());
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Import a statement sent as the request body, named by the name parameter
+     * (e.g. statement.csv.gz) so its format can be told; parsed as it arrives
+     */
+    private void importStatement(HttpExchange exchange) throws Exception {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            throw methodNotAllowed(exchange, "POST");
+        }
+        // Not a type a plain form can send, so other sites cannot post statements without asking
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (type == null || !type.toLowerCase().startsWith("application/octet-stream")) {
+            throw new ApiException(415, "Send the statement as application/octet-stream");
+        }
+        DataManager data = authorize(exchange);
+        String name = parseQuery(exchange).getOrDefault("name", "statement.csv");
+
+        long parsed = 0;
+        int added = 0;
+        if (BankStatementParser.isZip(name)) {
+            // Zip entries are read through the central directory, which needs a file
+            File temp = File.createTempFile("expenso-import", ".zip");
+            try {
+                Files.copy(exchange.getRequestBody(), temp.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+                List<Transaction> transactions = BankStatementParser.parseFile(temp);
+                parsed = transactions.size();
+                for (int i = 0; i < transactions.size(); i += IMPORT_BATCH) {
+                    added += data.addTransactions(transactions.subList(i, Math.min(transactions.size(), i + IMPORT_BATCH)));
+                }
+            } finally {
+                temp.delete();
+            }
+        } else {
+            List<Transaction> batch = new ArrayList<>(IMPORT_BATCH);
+            long[] count = new long[1];
+            int[] addedCount = new int[1];
+            try (InputStream in = BankStatementParser.decompress(exchange.getRequestBody(), name)) {
+                BankStatementParser.parse(in, BankStatementParser.Format.of(name), txn -> {
+                    count[0]++;
+                    batch.add(txn);
+                    if (batch.size() == IMPORT_BATCH) {
+                        addedCount[0] += data.addTransactions(batch);
+                        batch.clear();
+                    }
+                });
+            } catch (Exception e) {
+                // Keep what was added before the bad part
+                data.saveImports(addedCount[0] > 0);
+                throw new ApiException(400, "Could not read the statement: " + e.getMessage());
+            }
+            if (!batch.isEmpty()) {
+                addedCount[0] += data.addTransactions(batch);
+            }
+            parsed = count[0];
+            added = addedCount[0];
+        }
+        data.saveImports(added > 0);
+
+        try (Json.Writer json = openJson(exchange, 200)) {
+            json.beginObject()
+                .field("parsed", parsed)
+                .field("added", added)
+                .field("skipped", parsed - added)
+                .endObject();
+        }
+    }
+
+    private void staticFile(HttpExchange exchange, String path) throws Exception {
+        if (path.equals("/")) {
+            path = "/index.html";
+        }
+        String type = STATIC_TYPES.get(path);
+        File file = new File(webDir, path.substring(1));
+        if (type == null || !file.isFile()) {
+            throw new ApiException(404, "Not found");
+        }
+        if (!exchange.getRequestMethod().equals("GET")) {
+            throw methodNotAllowed(exchange, "GET");
+        }
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(200, file.length());
+        Files.copy(file.toPath(), exchange.getResponseBody());
+    }
+
+    /**
+     * Start a chunked JSON response, gzipped when the client accepts it
+     */
+    private static Json.Writer openJson(HttpExchange exchange, int status) throws IOException {
+        OutputStream out = openStream(exchange, status, JSON, true);
+        return new Json.Writer(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 8192));
+    }
+
+    /**
+     * Start a chunked response, gzipped if compress is set and the client accepts it
+     */
+    private static OutputStream openStream(HttpExchange exchange, int status, String type, boolean compress) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", type);
+        OutputStream out;
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (compress && accept != null && accept.contains("gzip")) {
+            headers.set("Content-Encoding", "gzip");
+            headers.set("Vary", "Accept-Encoding");
+            exchange.sendResponseHeaders(status, 0);
+            out = new GZIPOutputStream(exchange.getResponseBody(), 8192);
+        } else {
+            exchange.sendResponseHeaders(status, 0);
+            out = exchange.getResponseBody();
+        }
+        return out;
+    }
+
+    /**
+     * Answer without a body, e.g. 204 or 304
+     */
+    private static void sendEmpty(HttpExchange exchange, int status) throws IOException {
+        // The exchange ends as the headers go out; an unread request body would make the server drop the connection
+        exchange.getRequestBody().close();
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        try {
+            byte[] body;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (Json.Writer json = new Json.Writer(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+                json.beginObject().field("error", message).endObject();
+            }
+            body = bytes.toByteArray();
+            exchange.getResponseHeaders().set("Content-Type", JSON);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (IOException e) {
+            // Headers already sent or client gone
+        }
+    }
+
+    private static ApiException methodNotAllowed(HttpExchange exchange, String allowed) {
+        exchange.getResponseHeaders().set("Allow", allowed);
+        return new ApiException(405, "Use " + allowed);
+    }
+
+    private static Map<String, Object> readJson(HttpExchange exchange) throws IOException, ApiException {
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (type == null || !type.toLowerCase().startsWith("application/json")) {
+            throw new ApiException(415, "Send the body as application/json");
+        }
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_JSON_BODY + 1);
+        if (body.length > MAX_JSON_BODY) {
+            throw new ApiException(413, "Request body too large");
+        }
+        try {
+            return Json.parseObject(new String(body, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Invalid JSON: " + e.getMessage());
+        }
+    }
+
+    private static String string(Map<String, Object> body, String key) throws ApiException {
+        Object value = body.get(key);
+        if (!(value instanceof String)) {
+            throw new ApiException(400, "Missing " + key);
+        }
+        return (String) value;
+    }
+
+    private static Map<String, String> parseQuery(HttpExchange exchange) {
+        Map<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null || raw.isEmpty()) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq >= 0 ? pair.substring(0, eq) : pair;
+            String value = eq >= 0 ? pair.substring(eq + 1) : "";
+            try {
+                query.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                // Skip malformed escapes
+            }
+        }
+        return query;
+    }
+
+    private static LocalDate parseDate(String value) throws ApiException {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ApiException(400, "Dates are yyyy-mm-dd: " + value);
+        }
+    }
+
+    private static int parseCount(String value, int fallback) throws ApiException {
+        if (value == null || value.isEmpty()) {
+            return fallback;
+        }
+        try {
+            int count = Integer.parseInt(value);
+            if (count >= 0) {
+                return count;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new ApiException(400, "Not a count: " + value);
+    }
+
+    private static ExpenseFilter parseFilter(Map<String, String> query) throws ApiException {
+        Expense.Category category = query.containsKey("category") ? parseCategory(query.get("category")) : null;
+        return new ExpenseFilter(category, parseDate(query.get("from")), parseDate(query.get("to")), query.get("q"));
+    }
+
+    private static Expense.Category parseCategory(String value) throws ApiException {
+        Expense.Category category = Expense.Category.parse(value);
+        if (category == null) {
+            throw new ApiException(400, "Unknown category: " + value);
+        }
+        return category;
+    }
+
+    /**
+     * Run the API without the window: java -cp Expenso.jar com.expenso.util.ApiServer [port]
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        AuthService auth = new AuthService(new UserStore());
+        ApiServer api = new ApiServer(port, auth, null);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            api.stop();
+            auth.shutdown();
+        }));
+        api.start();
+        System.out.println("Expenso API on http://localhost:" + api.getPort() + "/api/"
+            + (TaskExecutors.virtualThreadsAvailable() ? " (virtual threads)" : ""));
+    }
+}
@@ -0,0 +1,333 @@
+package com.expenso.util;
+
+import com.expenso.data.UserStore;
+import com.expenso.model.User;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Password checks off the caller's thread, with rate limiting and sessions
+ * BCrypt checks run on a small pool capped at a configurable parallelism, with a
+ * bounded queue so a burst of attempts is refused rather than piling up. Each
+ * profile name gets a few attempts that refill over time. A successful check
+ * issues a session token; signing in again to a profile whose session is still
+ * live is verified against an in-memory HMAC of the password instead of hashing.
+ */
+public class AuthService {
+    private static final long DEFAULT_SESSION_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final int QUEUE_PER_THREAD = 8;
+    // Attempts per profile name: a burst of 5, then one every 30 seconds
+    private static final int ATTEMPT_BURST = 5;
+    private static final long ATTEMPT_REFILL_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final int MAX_TRACKED_NAMES = 1024;
+
+    /**
+     * A verified sign-in, valid until it expires or is signed out
+     */
+    public static final class Session {
+        private final String token;
+        private final User user;
+        private final byte[] proof;
+        private volatile long expiresAt;
+
+        Session(String token, User user, byte[] proof, long expiresAt) {
+            this.token = token;
+            this.user = user;
+            this.proof = proof;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public User getUser() {
+            return user;
+        }
+
+        /** Expiry in epoch milliseconds */
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    /**
+     * Thrown (as the cause of a failed future) when a profile has used up its attempts
+     */
+    public static class RateLimitedException extends RuntimeException {
+        private final long retryAfterMillis;
+
+        RateLimitedException(long retryAfterMillis) {
+            super("Too many attempts, try again in " + Math.max(1, (retryAfterMillis + 999) / 1000) + " s");
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public long getRetryAfterMillis() {
+            return retryAfterMillis;
+        }
+    }
+
+    private final UserStore users;
+    private final ThreadPoolExecutor pool;
+    private final long sessionMillis;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // Latest session per profile id, for verifying repeat sign-ins without BCrypt
+    private final Map<Long, Session> latestByUser = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> attempts = new HashMap<>();
+    private final byte[] proofKey = new byte[32];
+
+    /**
+     * Parallelism from the expenso.auth.parallelism property, default half the cores
+     */
+    public AuthService(UserStore users) {
+        this(users, Integer.getInteger("expenso.auth.parallelism",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2)), DEFAULT_SESSION_MILLIS);
+    }
+
+    /**
+     * @param parallelism Most password hashes computed at once
+     * @param sessionMillis How long a session stays valid after its last use
+     */
+    public AuthService(UserStore users, int parallelism, long sessionMillis) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.users = users;
+        this.sessionMillis = sessionMillis;
+        this.pool = new ThreadPoolExecutor(parallelism, parallelism, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(parallelism * QUEUE_PER_THREAD), TaskExecutors.daemonFactory("auth"));
+        pool.allowCoreThreadTimeOut(true);
+        random.nextBytes(proofKey);
+    }
+
+    public UserStore getUsers() {
+        return users;
+    }
+
+    /**
+     * Check a password on the pool
+     * @return future of the new session, or of null if the name or password is wrong;
+     *     fails with RateLimitedException or RejectedExecutionException when busy
+     */
+    public CompletableFuture<Session> signIn(String username, String password) {
+        String name = username != null ? username.trim().toLowerCase() : "";
+        long wait = tryAttempt(name);
+        if (wait > 0) {
+            return failed(new RateLimitedException(wait));
+        }
+
+        // Profile with a live session and the same password: no need to hash again
+        User known = users.getUser(name);
+        if (known != null && password != null) {
+            Session live = latestByUser.get(known.getId());
+            long now = System.currentTimeMillis();
+            if (live != null && !live.isExpired(now) && sessions.containsKey(live.token)
+                    && MessageDigest.isEqual(live.proof, proof(known, password))) {
+                live.expiresAt = now + sessionMillis;
+                resetAttempts(name);
+                return CompletableFuture.completedFuture(live);
+            }
+        }
+
+        return submit(() -> {
+            User user = users.authenticate(name, password);
+            if (user == null) {
+                return null;
+            }
+            resetAttempts(name);
+            return issue(user, password);
+        });
+    }
+
+    /**
+     * Create a profile on the pool and sign in to it
+     * @return future of the new session; fails with IllegalArgumentException for a bad name or password
+     */
+    public CompletableFuture<Session> createUser(String username, String password) {
+        return submit(() -> issue(users.createUser(username, password), password));
+    }
+
+    /**
+     * Profile a token belongs to, or null if unknown or expired; never hashes
+     * Each use keeps the session alive for another period.
+     */
+    public User validate(String token) {
+        Session session = token != null ? sessions.get(token) : null;
+        if (session == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (session.isExpired(now)) {
+            remove(session);
+            return null;
+        }
+        session.expiresAt = now + sessionMillis;
+        return session.user;
+    }
+
+    public void signOut(String token) {
+        Session session = token != null ? sessions.get(token) : null;
+        if (session != null) {
+            remove(session);
+        }
+    }
+
+    /**
+     * End every session of a profile, e.g. after its password changed
+     */
+    public void signOutAll(User user) {
+        sessions.values().removeIf(session -> session.user.getId() == user.getId());
+        latestByUser.remove(user.getId());
+    }
+
+    /**
+     * Change a password on the pool and end the profile's other sessions
+     * @return future of whether the current password was right
+     */
+    public CompletableFuture<Boolean> changePassword(User user, String currentPassword, String newPassword) {
+        return submit(() -> {
+            boolean changed = users.changePassword(user, currentPassword, newPassword);
+            if (changed) {
+                signOutAll(user);
+            }
+            return changed;
+        });
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+        sessions.clear();
+        latestByUser.clear();
+    }
+
+    private Session issue(User user, String password) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        Session session = new Session(token, user, proof(user, password), System.currentTimeMillis() + sessionMillis);
+        purgeExpired();
+        sessions.put(token, session);
+        latestByUser.put(user.getId(), session);
+        return session;
+    }
+
+    private void remove(Session session) {
+        sessions.remove(session.token);
+        latestByUser.remove(session.user.getId(), session);
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Session> it = sessions.values().iterator(); it.hasNext(); ) {
+            Session session = it.next();
+            if (session.isExpired(now)) {
+                it.remove();
+                latestByUser.remove(session.user.getId(), session);
+            }
+        }
+    }
+
+    /**
+     * HMAC of the password under a key that never leaves this process
+     */
+    private byte[] proof(User user, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(proofKey, "HmacSHA256"));
+            mac.update((user.getId() + ":").getBytes(StandardCharsets.UTF_8));
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            pool.execute(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new RejectedExecutionException("Too many sign-ins in progress, try again"));
+        }
+        return future;
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    /**
+     * Take an attempt for a name
+     * @return 0 if allowed, else milliseconds until the next attempt is
+     */
+    private synchronized long tryAttempt(String name) {
+        long now = System.nanoTime();
+        Bucket bucket = attempts.get(name);
+        if (bucket == null) {
+            if (attempts.size() >= MAX_TRACKED_NAMES) {
+                // Drop names that have refilled completely
+                attempts.values().removeIf(b -> b.available(now) >= ATTEMPT_BURST);
+            }
+            bucket = new Bucket(now);
+            attempts.put(name, bucket);
+        }
+        return bucket.take(now);
+    }
+
+    private synchronized void resetAttempts(String name) {
+        attempts.remove(name);
+    }
+
+    /**
+     * Token bucket of attempts for one name
+     */
+    private static final class Bucket {
+        private double tokens = ATTEMPT_BURST;
+        private long updated;
+
+        Bucket(long now) {
+            this.updated = now;
+        }
+
+        double available(long now) {
+            return Math.min(ATTEMPT_BURST, tokens + (double) (now - updated) / ATTEMPT_REFILL_NANOS);
+        }
+
+        long take(long now) {
+            tokens = available(now);
+            updated = now;
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return TimeUnit.NANOSECONDS.toMillis((long) ((1 - tokens) * ATTEMPT_REFILL_NANOS));
+        }
+    }
+}
@@ -6,6 +6,13 @@ import java.io.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * Parser for bank statement files (CSV, Excel-exported CSV)
@@ -23,105 +30,279 @@ public class BankStatementParser {
         DateTimeFormatter.ofPattern("yyyy/MM/dd")
     };
     
+    /**
+     * Receives transactions as a statement is streamed
+     */
+    public interface TransactionHandler {
+        void handle(Transaction txn) throws Exception;
+    }
+    
+    /**
+     * Statement file formats, detected from the file extension
+     */
+    public enum Format {
+        CSV, OFX, QIF, CAMT;
+        
+        public static Format of(File file) {
+            return of(file.getName());
+        }
+        
+        /**
+         * Format of a file or archive entry name; a .gz suffix is looked through
+         */
+        public static Format of(String fileName) {
+            String name = stripGzip(fileName.toLowerCase());
+            if (name.endsWith(".ofx") || name.endsWith(".qfx")) return OFX;
+            if (name.endsWith(".qif")) return QIF;
+            if (name.endsWith(".xml") || name.endsWith(".053")) return CAMT;
+            return CSV;
+        }
+    }
+    
+    /**
+     * Parse a statement in any supported format, including .gz and .zip
+     * Zip entries are parsed in parallel; results keep entry order.
+     */
+    public static List<Transaction> parseFile(File file) throws Exception {
+        if (isZip(file.getName())) {
+            return parseZip(file);
+        }
+        List<Transaction> transactions = new ArrayList<>();
+        try (InputStream in = open(file)) {
+            parse(in, Format.of(file), transactions::add);
+        }
+        return transactions;
+    }
+    
+    /**
+     * Open a statement file, decompressing gzip on the fly
+     */
+    public static InputStream open(File file) throws IOException {
+        return decompress(new FileInputStream(file), file.getName());
+    }
+    
+    /**
+     * Wrap a stream in a gzip decoder when the name says it is compressed
+     */
+    public static InputStream decompress(InputStream in, String name) throws IOException {
+        InputStream buffered = new BufferedInputStream(in, 64 * 1024);
+        return isGzip(name) ? new GZIPInputStream(buffered, 64 * 1024) : buffered;
+    }
+    
+    /**
+     * Statement entries of a zip archive, in archive order
+     */
+    public static List<ZipEntry> statementEntries(ZipFile zip) {
+        List<ZipEntry> entries = new ArrayList<>();
+        Enumeration<? extends ZipEntry> all = zip.entries();
+        while (all.hasMoreElements()) {
+            ZipEntry entry = all.nextElement();
+            String name = entry.getName();
+            String base = name.substring(name.lastIndexOf('/') + 1);
+            // Skip folders, macOS resource forks and nested archives
+            if (!entry.isDirectory() && !name.startsWith("__MACOSX/") && !base.startsWith(".")
+                    && !isZip(base) && isSupportedName(base)) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+    
+    /**
+     * Parse one zip entry straight from the archive
+     */
+    public static List<Transaction> parseEntry(ZipFile zip, ZipEntry entry) throws Exception {
+        List<Transaction> transactions = new ArrayList<>();
+        try (InputStream in = decompress(zip.getInputStream(entry), entry.getName())) {
+            parse(in, Format.of(entry.getName()), transactions::add);
+        }
+        return transactions;
+    }
+    
+    private static List<Transaction> parseZip(File file) throws Exception {
+        try (ZipFile zip = new ZipFile(file)) {
+            List<ZipEntry> entries = statementEntries(zip);
+            int threads = Math.max(1, Math.min(entries.size(), Runtime.getRuntime().availableProcessors()));
+            ExecutorService pool = Executors.newFixedThreadPool(threads, TaskExecutors.daemonFactory("zip-parse"));
+            try {
+                List<Future<List<Transaction>>> results = new ArrayList<>();
+                for (ZipEntry entry : entries) {
+                    results.add(pool.submit(() -> parseEntry(zip, entry)));
+                }
+                List<Transaction> transactions = new ArrayList<>();
+                for (int i = 0; i < results.size(); i++) {
+                    try {
+                        transactions.addAll(results.get(i).get());
+                    } catch (ExecutionException e) {
+                        System.err.println("Error parsing " + entries.get(i).getName() + ": " + e.getCause().getMessage());
+                    }
+                }
+                return transactions;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+    
+    /**
+     * Stream a statement, handing each transaction over as soon as it is complete
+     */
+    public static void parse(InputStream in, Format format, TransactionHandler handler) throws Exception {
+        switch (format) {
+            case OFX:
+                OfxStatementParser.parse(in, handler);
+                break;
+            case QIF:
+                QifStatementParser.parse(in, handler);
+                break;
+            case CAMT:
+                CamtStatementParser.parse(in, handler);
+                break;
+            default:
+                LineParser parser = new LineParser();
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Transaction txn = parser.parseLine(line);
+                    if (txn != null) {
+                        handler.handle(txn);
+                    }
+                }
+                break;
+        }
+    }
+    
     /**
      * Parse CSV file from bank statement
      */
     public static List<Transaction> parseCSV(File file) throws Exception {
         List<Transaction> transactions = new ArrayList<>();
+        LineParser parser = new LineParser();
         
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
             String line;
-            boolean isFirstLine = true;
-            int dateCol = -1, descCol = -1, debitCol = -1, creditCol = -1, balanceCol = -1;
-            
             while ((line = reader.readLine()) != null) {
-                // Skip empty lines
-                if (line.trim().isEmpty()) continue;
-                
-                String[] columns = parseCSVLine(line);
-                
-                // First line - detect column indices
-                if (isFirstLine) {
-                    isFirstLine = false;
-                    for (int i = 0; i < columns.length; i++) {
-                        String col = columns[i].toLowerCase().trim();
-                        
-                        if (col.contains("date") || col.contains("txn date") || col.contains("transaction date")) {
-                            dateCol = i;
-                        } else if (col.contains("description") || col.contains("narration") || 
-                                   col.contains("particulars") || col.contains("remarks")) {
-                            descCol = i;
-                        } else if (col.contains("debit") || col.contains("withdrawal") || 
-                                   col.contains("paid") || col.contains("amount debited")) {
-                            debitCol = i;
-                        } else if (col.contains("credit") || col.contains("deposit") || 
-                                   col.contains("received") || col.contains("amount credited")) {
-                            creditCol = i;
-                        } else if (col.contains("balance") || col.contains("closing")) {
-                            balanceCol = i;
-                        }
-                    }
-                    continue;
+                Transaction txn = parser.parseLine(line);
+                if (txn != null) {
+                    transactions.add(txn);
                 }
-                
-                // Parse transaction data
-                try {
-                    if (dateCol >= 0 && descCol >= 0 && columns.length > Math.max(dateCol, descCol)) {
-                        LocalDate date = parseDate(columns[dateCol]);
-                        String description = columns[descCol].trim();
-                        
-                        // Skip if description is empty or balance row
-                        if (description.isEmpty() || description.toLowerCase().contains("opening balance") ||
-                            description.toLowerCase().contains("closing balance")) {
-                            continue;
-                        }
-                        
-                        double debitAmount = 0.0;
-                        double creditAmount = 0.0;
-                        
-                        // Parse debit amount
-                        if (debitCol >= 0 && debitCol < columns.length) {
-                            debitAmount = parseAmount(columns[debitCol]);
-                        }
-                        
-                        // Parse credit amount
-                        if (creditCol >= 0 && creditCol < columns.length) {
-                            creditAmount = parseAmount(columns[creditCol]);
-                        }
-                        
-                        // Create transaction
-                        if (debitAmount > 0) {
-                            Transaction txn = new Transaction();
-                            txn.setDate(date);
-                            txn.setDescription(description);
-                            txn.setAmount(debitAmount);
-                            txn.setType(detectTransactionType(description, true));
-                            txn.setSource("Bank Statement");
-                            transactions.add(txn);
-                        } else if (creditAmount > 0) {
-                            Transaction txn = new Transaction();
-                            txn.setDate(date);
-                            txn.setDescription(description);
-                            txn.setAmount(creditAmount);
-                            txn.setType(TransactionType.CREDIT);
-                            txn.setSource("Bank Statement");
-                            transactions.add(txn);
-                        }
+            }
+        }
+        
+        return transactions;
+    }
+    
+    /**
+     * Incremental statement parser fed one CSV line at a time
+     * The first non-empty line is taken as the header; once it has been seen,
+     * data lines can be parsed from any thread.
+     */
+    public static class LineParser {
+        private boolean headerSeen;
+        private int dateCol = -1, descCol = -1, debitCol = -1, creditCol = -1, balanceCol = -1;
+        
+        /**
+         * Parse the next line, returns null for header, blank, balance and malformed lines
+         */
+        public Transaction parseLine(String line) {
+            // Skip empty lines
+            if (line.trim().isEmpty()) return null;
+            
+            String[] columns = parseCSVLine(line);
+            
+            // First line - detect column indices
+            if (!headerSeen) {
+                headerSeen = true;
+                detectColumns(columns);
+                return null;
+            }
+            
+            // Parse transaction data
+            try {
+                if (dateCol >= 0 && descCol >= 0 && columns.length > Math.max(dateCol, descCol)) {
+                    LocalDate date = parseDate(columns[dateCol]);
+                    String description = columns[descCol].trim();
+                    
+                    // Skip if description is empty or balance row
+                    if (description.isEmpty() || description.toLowerCase().contains("opening balance") ||
+                        description.toLowerCase().contains("closing balance")) {
+                        return null;
+                    }
+                    
+                    double debitAmount = 0.0;
+                    double creditAmount = 0.0;
+                    
+                    // Parse debit amount
+                    if (debitCol >= 0 && debitCol < columns.length) {
+                        debitAmount = parseAmount(columns[debitCol]);
+                    }
+                    
+                    // Parse credit amount
+                    if (creditCol >= 0 && creditCol < columns.length) {
+                        creditAmount = parseAmount(columns[creditCol]);
+                    }
+                    
+                    Double balance = balanceCol >= 0 && balanceCol < columns.length
+                        ? parseBalance(columns[balanceCol]) : null;
+                    
+                    // Create transaction
+                    if (debitAmount > 0) {
+                        Transaction txn = new Transaction();
+                        txn.setDate(date);
+                        txn.setDescription(description);
+                        txn.setAmount(debitAmount);
+                        txn.setType(detectTransactionType(description, true));
+                        txn.setBalance(balance);
+                        txn.setSource("Bank Statement");
+                        return txn;
+                    } else if (creditAmount > 0) {
+                        Transaction txn = new Transaction();
+                        txn.setDate(date);
+                        txn.setDescription(description);
+                        txn.setAmount(creditAmount);
+                        txn.setType(TransactionType.CREDIT);
+                        txn.setBalance(balance);
+                        txn.setSource("Bank Statement");
+                        return txn;
                     }
-                } catch (Exception e) {
-                    // Skip malformed lines
-                    System.err.println("Skipping line due to parse error: " + line);
                 }
+            } catch (Exception e) {
+                // Skip malformed lines
+                System.err.println("Skipping line due to parse error: " + line);
             }
+            return null;
         }
         
-        return transactions;
+        public boolean isHeaderSeen() {
+            return headerSeen;
+        }
+        
+        private void detectColumns(String[] columns) {
+            for (int i = 0; i < columns.length; i++) {
+                String col = columns[i].toLowerCase().trim();
+                
+                if (col.contains("date") || col.contains("txn date") || col.contains("transaction date")) {
+                    dateCol = i;
+                } else if (col.contains("description") || col.contains("narration") || 
+                           col.contains("particulars") || col.contains("remarks")) {
+                    descCol = i;
+                } else if (col.contains("debit") || col.contains("withdrawal") || 
+                           col.contains("paid") || col.contains("amount debited")) {
+                    debitCol = i;
+                } else if (col.contains("credit") || col.contains("deposit") || 
+                           col.contains("received") || col.contains("amount credited")) {
+                    creditCol = i;
+                } else if (col.contains("balance") || col.contains("closing")) {
+                    balanceCol = i;
+                }
+            }
+        }
     }
     
     /**
      * Parse single CSV line handling quoted fields
      */
-    private static String[] parseCSVLine(String line) {
+    static String[] parseCSVLine(String line) {
         List<String> result = new ArrayList<>();
         StringBuilder current = new StringBuilder();
         boolean inQuotes = false;
@@ -162,7 +343,7 @@ public class BankStatementParser {
     /**
      * Parse amount from string
      */
-    private static double parseAmount(String amountStr) {
+    static double parseAmount(String amountStr) {
         if (amountStr == null || amountStr.trim().isEmpty()) {
             return 0.0;
         }
@@ -182,10 +363,33 @@ public class BankStatementParser {
         }
     }
     
+    /**
+     * Parse a balance such as "12,345.00", "-50" or "1,200.00 Dr"; null when absent
+     */
+    private static Double parseBalance(String balanceStr) {
+        String value = balanceStr.replaceAll("[₹$,\\s]", "").toLowerCase();
+        boolean overdrawn = false;
+        if (value.endsWith("dr")) {
+            overdrawn = true;
+            value = value.substring(0, value.length() - 2);
+        } else if (value.endsWith("cr")) {
+            value = value.substring(0, value.length() - 2);
+        }
+        if (value.isEmpty()) {
+            return null;
+        }
+        try {
+            double balance = Double.parseDouble(value);
+            return overdrawn ? -balance : balance;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
     /**
      * Detect transaction type from description
      */
-    private static TransactionType detectTransactionType(String description, boolean isDebit) {
+    static TransactionType detectTransactionType(String description, boolean isDebit) {
         String desc = description.toLowerCase();
         
         if (desc.contains("upi") || desc.contains("paytm") || desc.contains("phonepe") || 
@@ -213,14 +417,18 @@ public class BankStatementParser {
      * Get supported file extensions
      */
     public static String[] getSupportedExtensions() {
-        return new String[]{"csv", "txt"};
+        return new String[]{"csv", "txt", "ofx", "qfx", "qif", "xml", "053"};
     }
     
     /**
-     * Check if file is supported
+     * Check if file is supported, either directly, gzipped or as a zip of statements
      */
     public static boolean isSupportedFile(File file) {
-        String name = file.getName().toLowerCase();
+        return isZip(file.getName()) || isSupportedName(file.getName());
+    }
+    
+    private static boolean isSupportedName(String fileName) {
+        String name = stripGzip(fileName.toLowerCase());
         for (String ext : getSupportedExtensions()) {
             if (name.endsWith("." + ext)) {
                 return true;
@@ -228,4 +436,19 @@ public class BankStatementParser {
         }
         return false;
     }
+    
+    public static boolean isZip(String fileName) {
+        return fileName.toLowerCase().endsWith(".zip");
+    }
+    
+    private static boolean isGzip(String fileName) {
+        String name = fileName.toLowerCase();
+        return name.endsWith(".gz") || name.endsWith(".gzip");
+    }
+    
+    private static String stripGzip(String name) {
+        if (name.endsWith(".gz")) return name.substring(0, name.length() - 3);
+        if (name.endsWith(".gzip")) return name.substring(0, name.length() - 5);
+        return name;
+    }
 }
@@ -0,0 +1,90 @@
+package com.expenso.util;
+
+import java.io.*;
+
+/**
+ * Bloom filter over 64-bit fingerprints
+ * Gives a fast "definitely not seen" answer before hitting the exact index
+ */
+public class BloomFilter {
+
+    /** Starts every serialized filter; files wrapping one can reuse it as their own tag */
+    public static final int MAGIC = 0x45424C4D; // "EBLM"
+
+    private final long[] bits;
+    private final long numBits;
+    private final int numHashes;
+
+    /**
+     * Create a filter sized for the expected number of entries and false positive rate
+     */
+    public BloomFilter(long expectedEntries, double falsePositiveRate) {
+        long n = Math.max(1, expectedEntries);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        m = Math.max(64, (m + 63) & ~63L);
+        this.numBits = m;
+        this.numHashes = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+        this.bits = new long[(int) (m >>> 6)];
+    }
+
+    private BloomFilter(long[] bits, int numHashes) {
+        this.bits = bits;
+        this.numBits = (long) bits.length << 6;
+        this.numHashes = numHashes;
+    }
+
+    /**
+     * Add a fingerprint to the filter
+     */
+    public void add(long fingerprint) {
+        long h1 = fingerprint;
+        long h2 = Long.rotateLeft(fingerprint, 32) * 0x9E3779B97F4A7C15L | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, numBits);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Check whether a fingerprint might have been added
+     * A false result is exact, a true result must be confirmed elsewhere
+     */
+    public boolean mightContain(long fingerprint) {
+        long h1 = fingerprint;
+        long h2 = Long.rotateLeft(fingerprint, 32) * 0x9E3779B97F4A7C15L | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, numBits);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write filter to stream
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(numHashes);
+        out.writeInt(bits.length);
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Read filter previously written with writeTo
+     */
+    public static BloomFilter readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a bloom filter file");
+        }
+        int numHashes = in.readInt();
+        long[] bits = new long[in.readInt()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = in.readLong();
+        }
+        return new BloomFilter(bits, numHashes);
+    }
+}
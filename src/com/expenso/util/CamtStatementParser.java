@@ -0,0 +1,240 @@
+package com.expenso.util;
+
+import com.expenso.model.Transaction;
+import com.expenso.model.Transaction.TransactionType;
+import java.io.InputStream;
+import java.time.LocalDate;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming parser for ISO 20022 CAMT.053 bank-to-customer statements
+ * Pulls events with StAX and keeps only the element path and the entry (Ntry)
+ * being read, so memory stays flat however large the file is. Pending
+ * entries are skipped; all camt.053 versions share the elements used here.
+ */
+public final class CamtStatementParser {
+
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        // Statements come from outside, never resolve DTDs or external entities
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+    }
+
+    private static final int MAX_DEPTH = 64;
+
+    private CamtStatementParser() {
+    }
+
+    /**
+     * Fields of the entry being read
+     */
+    private static final class Entry {
+        String amount;
+        boolean credit;
+        String status;
+        String bookingDate;
+        String valueDate;
+        String reference;
+        String endToEndId;
+        String creditor;
+        String debtor;
+        String remittance;
+        String additionalInfo;
+    }
+
+    public static void parse(InputStream in, BankStatementParser.TransactionHandler handler) throws Exception {
+        XMLStreamReader reader;
+        synchronized (FACTORY) {
+            reader = FACTORY.createXMLStreamReader(in);
+        }
+        try {
+            String[] path = new String[MAX_DEPTH];
+            int depth = 0;
+            String account = null;
+            Entry entry = null;
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = localName(reader.getLocalName());
+                    String parent = depth > 0 ? path[depth - 1] : "";
+
+                    if (name.equals("Ntry")) {
+                        entry = new Entry();
+                    } else if (entry != null && isLeaf(name, parent)) {
+                        // Reads up to the matching end tag, so the element is not pushed
+                        assign(entry, name, parent, depth > 1 ? path[depth - 2] : "",
+                            reader.getElementText().trim());
+                        continue;
+                    } else if (entry == null && name.equals("IBAN") && parent.equals("Id")
+                            && depth > 1 && path[depth - 2].equals("Acct")) {
+                        account = reader.getElementText().trim();
+                        continue;
+                    }
+
+                    if (depth == MAX_DEPTH) {
+                        throw new XMLStreamException("Statement nested too deeply");
+                    }
+                    path[depth++] = name;
+                } else if (event == XMLStreamConstants.CHARACTERS && entry != null && depth > 1
+                        && path[depth - 1].equals("Sts") && path[depth - 2].equals("Ntry")) {
+                    // <Sts>BOOK</Sts> up to version 7, <Sts><Cd>BOOK</Cd></Sts> after
+                    String text = reader.getText().trim();
+                    if (!text.isEmpty()) {
+                        entry.status = text;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                    if (entry != null && path[depth].equals("Ntry")) {
+                        Transaction txn = toTransaction(entry, account);
+                        if (txn != null) {
+                            handler.handle(txn);
+                        }
+                        entry = null;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Strip a namespace prefix such as "camt:Ntry"
+     */
+    private static String localName(String name) {
+        int colon = name.indexOf(':');
+        return colon >= 0 ? name.substring(colon + 1) : name;
+    }
+
+    /**
+     * Text-only elements worth reading inside an entry
+     */
+    private static boolean isLeaf(String name, String parent) {
+        switch (name) {
+            case "Amt":
+            case "CdtDbtInd":
+            case "AcctSvcrRef":
+            case "AddtlNtryInf":
+                return parent.equals("Ntry");
+            case "Cd":
+                return parent.equals("Sts");
+            case "Dt":
+            case "DtTm":
+                return parent.equals("BookgDt") || parent.equals("ValDt");
+            case "EndToEndId":
+                return parent.equals("Refs");
+            case "Ustrd":
+                return parent.equals("RmtInf");
+            case "Nm":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void assign(Entry entry, String name, String parent, String grandParent, String value) {
+        switch (name) {
+            case "Amt":
+                entry.amount = value;
+                break;
+            case "CdtDbtInd":
+                entry.credit = value.equals("CRDT");
+                break;
+            case "Cd":
+                entry.status = value;
+                break;
+            case "Dt":
+            case "DtTm":
+                if (parent.equals("BookgDt")) {
+                    entry.bookingDate = value;
+                } else {
+                    entry.valueDate = value;
+                }
+                break;
+            case "AcctSvcrRef":
+                entry.reference = value;
+                break;
+            case "EndToEndId":
+                if (entry.endToEndId == null && !value.equals("NOTPROVIDED")) {
+                    entry.endToEndId = value;
+                }
+                break;
+            case "Ustrd":
+                if (entry.remittance == null) {
+                    entry.remittance = value;
+                }
+                break;
+            case "AddtlNtryInf":
+                entry.additionalInfo = value;
+                break;
+            case "Nm":
+                // RltdPties/Cdtr/Nm (camt.053.001.02) or RltdPties/Cdtr/Pty/Nm (later versions)
+                String party = parent.equals("Pty") ? grandParent : parent;
+                if (party.equals("Cdtr") && entry.creditor == null) {
+                    entry.creditor = value;
+                } else if (party.equals("Dbtr") && entry.debtor == null) {
+                    entry.debtor = value;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static Transaction toTransaction(Entry e, String account) {
+        if (e.amount == null || "PDNG".equals(e.status)) {
+            return null;
+        }
+        double amount;
+        try {
+            amount = Double.parseDouble(e.amount);
+        } catch (NumberFormatException ex) {
+            System.err.println("Skipping CAMT entry with bad amount: " + e.amount);
+            return null;
+        }
+
+        // The counterparty is the creditor for money going out, the debtor for money coming in
+        String counterparty = e.credit ? e.debtor : e.creditor;
+        String description = firstNonEmpty(counterparty, e.remittance, e.additionalInfo, "Bank transaction");
+        if (description.length() > 140) {
+            description = description.substring(0, 140);
+        }
+
+        Transaction txn = new Transaction();
+        txn.setDate(parseDate(e.bookingDate != null ? e.bookingDate : e.valueDate));
+        txn.setDescription(description);
+        txn.setAmount(Math.abs(amount));
+        txn.setType(e.credit ? TransactionType.CREDIT : BankStatementParser.detectTransactionType(description, true));
+        txn.setReferenceNumber(e.reference != null ? e.reference : e.endToEndId);
+        txn.setAccount(account);
+        txn.setSource("Bank Statement");
+        return txn;
+    }
+
+    private static String firstNonEmpty(String... values) {
+        for (String value : values) {
+            if (value != null && !value.isEmpty()) {
+                return value;
+            }
+        }
+        return "";
+    }
+
+    /**
+     * ISO dates, optionally with a time part (DtTm)
+     */
+    private static LocalDate parseDate(String value) {
+        try {
+            return LocalDate.parse(value.length() > 10 ? value.substring(0, 10) : value);
+        } catch (RuntimeException e) {
+            return LocalDate.now();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.expenso.util;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Single-pass extractor for transaction fields in email text
+ * Field patterns are compiled once. The text is walked left to right a single
+ * time and a field's pattern is only tried (anchored) at offsets whose first
+ * character can start it, until that field has been found. This yields the
+ * same leftmost match per field as running each pattern's find() separately.
+ * Thread-safe: the shared Patterns are immutable and every call uses its own Matcher.
+ */
+public final class EmailFieldExtractor {
+
+    private static final int AMOUNT = 0;
+    private static final int DATE = 1;
+    private static final int UPI_REF = 2;
+    private static final int REF = 3;
+    // Description fields, in priority order
+    private static final int DESC_TO = 4;
+    private static final int DESC_FROM = 5;
+    private static final int DESC_AT = 6;
+    private static final int DESC_SENT_TO = 7;
+    private static final int DESC_RECEIVED_FROM = 8;
+    private static final int FIELD_COUNT = 9;
+
+    // Common patterns for Indian banks and UPI apps, indexed by field
+    private static final Pattern[] PATTERNS = {
+        Pattern.compile("(?:Rs\\.?|INR|₹)\\s*([\\d,]+(?:\\.\\d{2})?)"),
+        Pattern.compile("(\\d{1,2}[/-]\\d{1,2}[/-]\\d{2,4})"),
+        Pattern.compile("UPI Ref No\\s*:?\\s*(\\d+)"),
+        Pattern.compile("Ref(?:erence)?\\s*(?:No\\.?|#)?\\s*:?\\s*([A-Z0-9]+)", Pattern.CASE_INSENSITIVE),
+        Pattern.compile("to\\s+([\\w\\s]+?)(?:on|for|UPI)", Pattern.CASE_INSENSITIVE),
+        Pattern.compile("from\\s+([\\w\\s]+?)(?:on|for|UPI)", Pattern.CASE_INSENSITIVE),
+        Pattern.compile("at\\s+([\\w\\s]+?)(?:on|for|UPI)", Pattern.CASE_INSENSITIVE),
+        Pattern.compile("sent to\\s+([\\w\\s]+)", Pattern.CASE_INSENSITIVE),
+        Pattern.compile("received from\\s+([\\w\\s]+)", Pattern.CASE_INSENSITIVE)
+    };
+
+    // Once these are found and the top description is usable, later text cannot change the result
+    private static final int DECISIVE = (1 << AMOUNT) | (1 << DATE) | (1 << UPI_REF);
+    private static final int ALL = (1 << FIELD_COUNT) - 1;
+
+    private EmailFieldExtractor() {
+    }
+
+    /**
+     * Fields found in one email
+     * Each value is the first occurrence in the text, or null if absent
+     */
+    public static final class Fields {
+        private final String[] values = new String[FIELD_COUNT];
+
+        public String getAmount() {
+            return values[AMOUNT];
+        }
+
+        public String getDate() {
+            return values[DATE];
+        }
+
+        /**
+         * UPI reference if present, otherwise the first generic reference
+         */
+        public String getReferenceNumber() {
+            return values[UPI_REF] != null ? values[UPI_REF] : values[REF];
+        }
+
+        /**
+         * Highest priority merchant/payee description that passes the length check
+         */
+        public String getDescription() {
+            for (int i = DESC_TO; i < FIELD_COUNT; i++) {
+                if (isUsableDescription(values[i])) {
+                    return values[i].trim();
+                }
+            }
+            return null;
+        }
+    }
+
+    private static boolean isUsableDescription(String desc) {
+        if (desc == null) return false;
+        desc = desc.trim();
+        return !desc.isEmpty() && desc.length() < 50;
+    }
+
+    /**
+     * Extract all fields from the text in one scan
+     */
+    public static Fields extract(String content) {
+        Fields fields = new Fields();
+        if (content == null || content.isEmpty()) {
+            return fields;
+        }
+
+        Matcher m = PATTERNS[0].matcher(content);
+        int length = content.length();
+        int found = 0;
+
+        for (int i = 0; i < length; i++) {
+            int candidates = candidatesFor(content.charAt(i)) & ~found;
+            while (candidates != 0) {
+                int field = Integer.numberOfTrailingZeros(candidates);
+                candidates &= candidates - 1;
+
+                m.usePattern(PATTERNS[field]);
+                m.region(i, length);
+                if (m.lookingAt()) {
+                    fields.values[field] = m.group(1);
+                    found |= 1 << field;
+                }
+            }
+            if (found == ALL || ((found & DECISIVE) == DECISIVE
+                    && isUsableDescription(fields.values[DESC_TO]))) {
+                break;
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Bitmask of fields whose pattern can start with the given character
+     */
+    private static int candidatesFor(char c) {
+        switch (c) {
+            case 'R':
+                return (1 << AMOUNT) | (1 << REF) | (1 << DESC_RECEIVED_FROM);
+            case 'r':
+                return (1 << REF) | (1 << DESC_RECEIVED_FROM);
+            case 'I':
+            case '₹':
+                return 1 << AMOUNT;
+            case 'U':
+                return 1 << UPI_REF;
+            case 't':
+            case 'T':
+                return 1 << DESC_TO;
+            case 'f':
+            case 'F':
+                return 1 << DESC_FROM;
+            case 'a':
+            case 'A':
+                return 1 << DESC_AT;
+            case 's':
+            case 'S':
+                return 1 << DESC_SENT_TO;
+            default:
+                return c >= '0' && c <= '9' ? 1 << DATE : 0;
+        }
+    }
+}
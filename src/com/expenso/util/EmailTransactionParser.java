@@ -5,7 +5,6 @@ import com.expenso.model.Transaction.TransactionType;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.regex.*;
 
 /**
  * Parser for transaction emails from banks and UPI apps
@@ -13,10 +12,12 @@ import java.util.regex.*;
  */
 public class EmailTransactionParser {
     
-    // Common patterns for Indian banks and UPI apps
-    private static final Pattern AMOUNT_PATTERN = Pattern.compile("(?:Rs\\.?|INR|₹)\\s*([\\d,]+(?:\\.\\d{2})?)");
-    private static final Pattern UPI_REF_PATTERN = Pattern.compile("UPI Ref No\\s*:?\\s*(\\d+)");
-    private static final Pattern DATE_PATTERN = Pattern.compile("(\\d{1,2}[/-]\\d{1,2}[/-]\\d{2,4})");
+    private static final DateTimeFormatter[] DATE_FORMATS = {
+        DateTimeFormatter.ofPattern("dd/MM/yyyy"),
+        DateTimeFormatter.ofPattern("dd-MM-yyyy"),
+        DateTimeFormatter.ofPattern("dd/MM/yy"),
+        DateTimeFormatter.ofPattern("dd-MM-yy")
+    };
     
     /**
      * Parse email content for transactions
@@ -25,38 +26,47 @@ public class EmailTransactionParser {
         List<Transaction> transactions = new ArrayList<>();
         
         try {
+            // Lowercase once for all keyword checks
+            String combined = (subject + " " + emailContent).toLowerCase();
+            
             // Check if it's a transaction notification
-            if (!isTransactionEmail(subject, emailContent)) {
+            if (!isTransactionEmail(combined)) {
                 return transactions;
             }
             
+            // Pull every field in a single scan of the body
+            EmailFieldExtractor.Fields fields = EmailFieldExtractor.extract(emailContent);
+            
             Transaction txn = new Transaction();
             
             // Extract amount
-            double amount = extractAmount(emailContent);
+            double amount = parseAmount(fields.getAmount());
             if (amount == 0) return transactions;
             txn.setAmount(amount);
             
             // Extract date
-            LocalDate date = extractDate(emailContent);
+            LocalDate date = parseDate(fields.getDate());
             txn.setDate(date);
             
             // Determine transaction type
-            TransactionType type = determineTypeFromEmail(subject, emailContent);
+            TransactionType type = determineTypeFromEmail(combined);
             txn.setType(type);
             
-            // Extract description
-            String description = extractDescription(emailContent, subject);
+            // Extract description, falling back to subject line
+            String description = fields.getDescription();
+            if (description == null) {
+                description = subject.length() > 50 ? subject.substring(0, 50) : subject;
+            }
             txn.setDescription(description);
             
             // Extract reference number
-            String refNo = extractReferenceNumber(emailContent);
+            String refNo = fields.getReferenceNumber();
             if (refNo != null) {
                 txn.setReferenceNumber(refNo);
             }
             
             // Set source
-            txn.setSource(detectSource(emailContent, subject));
+            txn.setSource(detectSource(combined));
             
             transactions.add(txn);
             
@@ -70,9 +80,7 @@ public class EmailTransactionParser {
     /**
      * Check if email is a transaction notification
      */
-    private static boolean isTransactionEmail(String subject, String content) {
-        String combined = (subject + " " + content).toLowerCase();
-        
+    private static boolean isTransactionEmail(String combined) {
         return combined.contains("debited") || combined.contains("credited") ||
                combined.contains("transaction") || combined.contains("payment") ||
                combined.contains("upi") || combined.contains("transferred") ||
@@ -81,41 +89,26 @@ public class EmailTransactionParser {
     }
     
     /**
-     * Extract amount from email content
+     * Parse extracted amount
      */
-    private static double extractAmount(String content) {
-        Matcher matcher = AMOUNT_PATTERN.matcher(content);
-        
-        if (matcher.find()) {
-            String amountStr = matcher.group(1).replaceAll(",", "");
-            try {
-                return Double.parseDouble(amountStr);
-            } catch (NumberFormatException e) {
-                return 0.0;
-            }
+    private static double parseAmount(String amountStr) {
+        if (amountStr == null) {
+            return 0.0;
+        }
+        try {
+            return Double.parseDouble(amountStr.replace(",", ""));
+        } catch (NumberFormatException e) {
+            return 0.0;
         }
-        
-        return 0.0;
     }
     
     /**
-     * Extract date from email content
+     * Parse extracted date
      */
-    private static LocalDate extractDate(String content) {
-        Matcher matcher = DATE_PATTERN.matcher(content);
-        
-        if (matcher.find()) {
-            String dateStr = matcher.group(1);
-            
+    private static LocalDate parseDate(String dateStr) {
+        if (dateStr != null) {
             // Try different date formats
-            DateTimeFormatter[] formats = {
-                DateTimeFormatter.ofPattern("dd/MM/yyyy"),
-                DateTimeFormatter.ofPattern("dd-MM-yyyy"),
-                DateTimeFormatter.ofPattern("dd/MM/yy"),
-                DateTimeFormatter.ofPattern("dd-MM-yy")
-            };
-            
-            for (DateTimeFormatter formatter : formats) {
+            for (DateTimeFormatter formatter : DATE_FORMATS) {
                 try {
                     return LocalDate.parse(dateStr, formatter);
                 } catch (Exception e) {
@@ -131,9 +124,7 @@ public class EmailTransactionParser {
     /**
      * Determine transaction type from email
      */
-    private static TransactionType determineTypeFromEmail(String subject, String content) {
-        String combined = (subject + " " + content).toLowerCase();
-        
+    private static TransactionType determineTypeFromEmail(String combined) {
         if (combined.contains("debited") || combined.contains("sent") || 
             combined.contains("paid") || combined.contains("payment successful")) {
             
@@ -159,59 +150,10 @@ public class EmailTransactionParser {
         return TransactionType.OTHER;
     }
     
-    /**
-     * Extract transaction description
-     */
-    private static String extractDescription(String content, String subject) {
-        // Try to find merchant name or description
-        String[] descPatterns = {
-            "to\\s+([\\w\\s]+?)(?:on|for|UPI)",
-            "from\\s+([\\w\\s]+?)(?:on|for|UPI)",
-            "at\\s+([\\w\\s]+?)(?:on|for|UPI)",
-            "sent to\\s+([\\w\\s]+)",
-            "received from\\s+([\\w\\s]+)"
-        };
-        
-        for (String patternStr : descPatterns) {
-            Pattern pattern = Pattern.compile(patternStr, Pattern.CASE_INSENSITIVE);
-            Matcher matcher = pattern.matcher(content);
-            if (matcher.find()) {
-                String desc = matcher.group(1).trim();
-                if (!desc.isEmpty() && desc.length() < 50) {
-                    return desc;
-                }
-            }
-        }
-        
-        // Fallback to subject line
-        return subject.length() > 50 ? subject.substring(0, 50) : subject;
-    }
-    
-    /**
-     * Extract reference number
-     */
-    private static String extractReferenceNumber(String content) {
-        Matcher matcher = UPI_REF_PATTERN.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        
-        // Try generic reference pattern
-        Pattern refPattern = Pattern.compile("Ref(?:erence)?\\s*(?:No\\.?|#)?\\s*:?\\s*([A-Z0-9]+)", Pattern.CASE_INSENSITIVE);
-        matcher = refPattern.matcher(content);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        
-        return null;
-    }
-    
     /**
      * Detect source (bank/app) from email
      */
-    private static String detectSource(String content, String subject) {
-        String combined = (subject + " " + content).toLowerCase();
-        
+    private static String detectSource(String combined) {
         if (combined.contains("google pay") || combined.contains("googlepay") || combined.contains("gpay")) {
             return "Google Pay";
         } else if (combined.contains("phonepe")) {
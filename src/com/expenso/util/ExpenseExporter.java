@@ -0,0 +1,761 @@
+package com.expenso.util;
+
+import com.expenso.model.Expense;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Writes expenses as CSV, JSON, NDJSON or a compact columnar binary file
+ * Rows are encoded by hand into one fixed 64 KB buffer that goes to the stream
+ * whenever it fills, so the text formats allocate nothing per row and use the
+ * same memory for ten rows or ten million. The columnar format holds one row
+ * group of up to 65,536 rows at a time.
+ *
+ * Columnar layout (".expc"), all integers as LEB128 varints, signed ones zigzagged:
+ * "EXPC", version byte, then row groups of [row count, then per column its byte
+ * length and data]: ids and epoch days as deltas from the previous row, amounts
+ * in paise, categories run-length encoded as (run, ordinal + 1) pairs, names as
+ * a dictionary of UTF-8 strings followed by one index per row (0 = no name).
+ * A row count of 0 ends the groups, followed by the total row count and "EXPC".
+ */
+public final class ExpenseExporter implements Closeable {
+
+    public enum Format {
+        CSV("csv"), JSON("json"), NDJSON("ndjson"), COLUMNAR("expc");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Format by name or file extension, ignoring case; null if unknown
+         */
+        public static Format of(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name) || format.extension.equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int ROW_GROUP = 64 * 1024;
+    private static final byte[] MAGIC = ascii("EXPC");
+    private static final int VERSION = 1;
+
+    private static final byte[] CSV_HEADER = ascii("id,date,name,category,amount\n");
+    private static final byte[] JSON_ID = ascii("{\"id\":");
+    private static final byte[] JSON_DATE = ascii(",\"date\":");
+    private static final byte[] JSON_NAME = ascii(",\"name\":");
+    private static final byte[] JSON_CATEGORY = ascii(",\"category\":");
+    private static final byte[] JSON_AMOUNT = ascii(",\"amount\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+    // Labels such as "Food" by ordinal, written as they are
+    private static final byte[][] LABELS = new byte[Expense.Category.values().length][];
+
+    static {
+        for (Expense.Category category : Expense.Category.values()) {
+            LABELS[category.ordinal()] = category.getLabel().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private final OutputStream out;
+    private final Format format;
+    private final ExpenseFilter filter;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int pos;
+    private long rows;
+    private boolean started;
+    private boolean finished;
+    private RowGroup group;
+
+    public ExpenseExporter(OutputStream out, Format format) {
+        this(out, format, ExpenseFilter.ALL);
+    }
+
+    public ExpenseExporter(OutputStream out, Format format, ExpenseFilter filter) {
+        this.out = out;
+        this.format = format;
+        this.filter = filter != null ? filter : ExpenseFilter.ALL;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /** Rows written so far */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Write an expense if the filter lets it through
+     * @return whether it was written
+     */
+    public boolean write(Expense expense) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Export already finished");
+        }
+        if (!filter.test(expense)) {
+            return false;
+        }
+        if (!started) {
+            begin();
+        }
+        switch (format) {
+            case CSV:
+                writeCsv(expense);
+                break;
+            case JSON:
+                if (rows > 0) {
+                    put((byte) ',');
+                }
+                writeJson(expense);
+                break;
+            case NDJSON:
+                writeJson(expense);
+                put((byte) '\n');
+                break;
+            default:
+                group.add(expense);
+                if (group.size == ROW_GROUP) {
+                    group.writeTo();
+                }
+                break;
+        }
+        rows++;
+        return true;
+    }
+
+    /**
+     * @return number of expenses written
+     */
+    public long writeAll(Iterable<Expense> expenses) throws IOException {
+        long before = rows;
+        for (Expense expense : expenses) {
+            write(expense);
+        }
+        return rows - before;
+    }
+
+    /**
+     * Write what closes the document and flush, leaving the stream open
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (!started) {
+            begin();
+        }
+        finished = true;
+        switch (format) {
+            case JSON:
+                put((byte) ']');
+                put((byte) '\n');
+                break;
+            case COLUMNAR:
+                group.writeTo();
+                putVarint(0);
+                putVarint(rows);
+                put(MAGIC, 0, MAGIC.length);
+                break;
+            default:
+                break;
+        }
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Finish and close the stream
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void begin() throws IOException {
+        started = true;
+        switch (format) {
+            case CSV:
+                put(CSV_HEADER, 0, CSV_HEADER.length);
+                break;
+            case JSON:
+                put((byte) '[');
+                break;
+            case COLUMNAR:
+                put(MAGIC, 0, MAGIC.length);
+                put((byte) VERSION);
+                group = new RowGroup();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void writeCsv(Expense expense) throws IOException {
+        putLong(expense.getId());
+        put((byte) ',');
+        putDate(expense.getDate());
+        put((byte) ',');
+        putCsvText(expense.getName());
+        put((byte) ',');
+        if (expense.getCategory() != null) {
+            byte[] label = LABELS[expense.getCategory().ordinal()];
+            put(label, 0, label.length);
+        }
+        put((byte) ',');
+        putAmount(ExpenseSummary.toPaise(expense.getAmount()));
+        put((byte) '\n');
+    }
+
+    private void writeJson(Expense expense) throws IOException {
+        put(JSON_ID, 0, JSON_ID.length);
+        putLong(expense.getId());
+        put(JSON_DATE, 0, JSON_DATE.length);
+        if (expense.getDate() != null) {
+            put((byte) '"');
+            putDate(expense.getDate());
+            put((byte) '"');
+        } else {
+            put(NULL, 0, NULL.length);
+        }
+        put(JSON_NAME, 0, JSON_NAME.length);
+        putJsonText(expense.getName());
+        put(JSON_CATEGORY, 0, JSON_CATEGORY.length);
+        if (expense.getCategory() != null) {
+            byte[] label = LABELS[expense.getCategory().ordinal()];
+            put((byte) '"');
+            put(label, 0, label.length);
+            put((byte) '"');
+        } else {
+            put(NULL, 0, NULL.length);
+        }
+        put(JSON_AMOUNT, 0, JSON_AMOUNT.length);
+        putAmount(ExpenseSummary.toPaise(expense.getAmount()));
+        put((byte) '}');
+    }
+
+    private void putCsvText(String text) throws IOException {
+        if (text == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            putUtf8(text);
+            return;
+        }
+        put((byte) '"');
+        int start = 0;
+        for (int i = text.indexOf('"'); i >= 0; i = text.indexOf('"', start)) {
+            putUtf8(text.substring(start, i + 1));
+            put((byte) '"');
+            start = i + 1;
+        }
+        putUtf8(start == 0 ? text : text.substring(start));
+        put((byte) '"');
+    }
+
+    private void putJsonText(String text) throws IOException {
+        if (text == null) {
+            put(NULL, 0, NULL.length);
+            return;
+        }
+        put((byte) '"');
+        for (int i = 0; i < text.length(); i++) {
+            if (pos + 6 > BUFFER_SIZE) {
+                flushBuffer();
+            }
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                buffer[pos++] = '\\';
+                buffer[pos++] = (byte) c;
+            } else if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                buffer[pos++] = '\\';
+                buffer[pos++] = 'u';
+                buffer[pos++] = HEX[c >> 12 & 0xF];
+                buffer[pos++] = HEX[c >> 8 & 0xF];
+                buffer[pos++] = HEX[c >> 4 & 0xF];
+                buffer[pos++] = HEX[c & 0xF];
+            } else {
+                i = encodeChar(text, i);
+            }
+        }
+        put((byte) '"');
+    }
+
+    private void putUtf8(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            if (pos + 4 > BUFFER_SIZE) {
+                flushBuffer();
+            }
+            i = encodeChar(text, i);
+        }
+    }
+
+    /**
+     * Encode the character at i as UTF-8 into the buffer, which has room for 4 bytes
+     * @return index of the last char used, i + 1 for a surrogate pair
+     */
+    private int encodeChar(String text, int i) {
+        char c = text.charAt(i);
+        if (c < 0x80) {
+            buffer[pos++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[pos++] = (byte) (0xC0 | c >> 6);
+            buffer[pos++] = (byte) (0x80 | c & 0x3F);
+        } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, text.charAt(++i));
+            buffer[pos++] = (byte) (0xF0 | cp >> 18);
+            buffer[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+            buffer[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            buffer[pos++] = (byte) (0x80 | cp & 0x3F);
+        } else {
+            // A lone surrogate is not valid UTF-16, write U+FFFD in its place
+            int cp = Character.isSurrogate(c) ? 0xFFFD : c;
+            buffer[pos++] = (byte) (0xE0 | cp >> 12);
+            buffer[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            buffer[pos++] = (byte) (0x80 | cp & 0x3F);
+        }
+        return i;
+    }
+
+    /** yyyy-mm-dd, the ISO form LocalDate.parse reads back */
+    private void putDate(LocalDate date) throws IOException {
+        if (date == null) {
+            return;
+        }
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            putUtf8(date.toString());
+            return;
+        }
+        if (pos + 10 > BUFFER_SIZE) {
+            flushBuffer();
+        }
+        put4(year);
+        buffer[pos++] = '-';
+        put2(date.getMonthValue());
+        buffer[pos++] = '-';
+        put2(date.getDayOfMonth());
+    }
+
+    private void put4(int value) {
+        buffer[pos++] = (byte) ('0' + value / 1000);
+        buffer[pos++] = (byte) ('0' + value / 100 % 10);
+        buffer[pos++] = (byte) ('0' + value / 10 % 10);
+        buffer[pos++] = (byte) ('0' + value % 10);
+    }
+
+    private void put2(int value) {
+        buffer[pos++] = (byte) ('0' + value / 10);
+        buffer[pos++] = (byte) ('0' + value % 10);
+    }
+
+    /** Rupees with two decimals from paise */
+    private void putAmount(long paise) throws IOException {
+        if (paise < 0) {
+            put((byte) '-');
+            paise = -paise;
+        }
+        putLong(paise / 100);
+        if (pos + 3 > BUFFER_SIZE) {
+            flushBuffer();
+        }
+        int fraction = (int) (paise % 100);
+        buffer[pos++] = '.';
+        buffer[pos++] = (byte) ('0' + fraction / 10);
+        buffer[pos++] = (byte) ('0' + fraction % 10);
+    }
+
+    private void putLong(long value) throws IOException {
+        if (pos + 20 > BUFFER_SIZE) {
+            flushBuffer();
+        }
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                putUtf8(Long.toString(value));
+                return;
+            }
+            buffer[pos++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        pos += digits;
+    }
+
+    private void putVarint(long value) throws IOException {
+        if (pos + 10 > BUFFER_SIZE) {
+            flushBuffer();
+        }
+        while ((value & ~0x7FL) != 0) {
+            buffer[pos++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buffer[pos++] = (byte) value;
+    }
+
+    private void put(byte b) throws IOException {
+        if (pos == BUFFER_SIZE) {
+            flushBuffer();
+        }
+        buffer[pos++] = b;
+    }
+
+    private void put(byte[] bytes, int offset, int length) throws IOException {
+        if (length > BUFFER_SIZE - pos) {
+            flushBuffer();
+            if (length > BUFFER_SIZE) {
+                out.write(bytes, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(bytes, offset, buffer, pos, length);
+        pos += length;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pos > 0) {
+            out.write(buffer, 0, pos);
+            pos = 0;
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static long zigzag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    private static long unzigzag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    /**
+     * Columns of the rows not yet written, reused from group to group
+     */
+    private final class RowGroup {
+        final long[] ids = new long[ROW_GROUP];
+        final long[] days = new long[ROW_GROUP];
+        final long[] paise = new long[ROW_GROUP];
+        final byte[] categories = new byte[ROW_GROUP];
+        final int[] names = new int[ROW_GROUP];
+        final Map<String, Integer> dictionary = new HashMap<>();
+        final List<String> entries = new ArrayList<>();
+        final Column column = new Column();
+        int size;
+
+        void add(Expense expense) {
+            ids[size] = expense.getId();
+            days[size] = expense.getDate() != null ? expense.getDate().toEpochDay() : Long.MIN_VALUE;
+            paise[size] = ExpenseSummary.toPaise(expense.getAmount());
+            categories[size] = (byte) (expense.getCategory() != null ? expense.getCategory().ordinal() + 1 : 0);
+            String name = expense.getName();
+            if (name == null) {
+                names[size] = 0;
+            } else {
+                Integer index = dictionary.get(name);
+                if (index == null) {
+                    entries.add(name);
+                    index = entries.size();
+                    dictionary.put(name, index);
+                }
+                names[size] = index;
+            }
+            size++;
+        }
+
+        void writeTo() throws IOException {
+            if (size == 0) {
+                return;
+            }
+            putVarint(size);
+
+            column.reset();
+            long previous = 0;
+            for (int i = 0; i < size; i++) {
+                column.varint(zigzag(ids[i] - previous));
+                previous = ids[i];
+            }
+            column.writeTo();
+
+            column.reset();
+            previous = 0;
+            for (int i = 0; i < size; i++) {
+                column.varint(zigzag(days[i] - previous));
+                previous = days[i];
+            }
+            column.writeTo();
+
+            column.reset();
+            for (int i = 0; i < size; i++) {
+                column.varint(zigzag(paise[i]));
+            }
+            column.writeTo();
+
+            column.reset();
+            for (int i = 0; i < size; ) {
+                int run = 1;
+                while (i + run < size && categories[i + run] == categories[i]) {
+                    run++;
+                }
+                column.varint(run);
+                column.varint(categories[i]);
+                i += run;
+            }
+            column.writeTo();
+
+            column.reset();
+            column.varint(entries.size());
+            for (String entry : entries) {
+                byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+                column.varint(bytes.length);
+                column.bytes(bytes);
+            }
+            for (int i = 0; i < size; i++) {
+                column.varint(names[i]);
+            }
+            column.writeTo();
+
+            size = 0;
+            dictionary.clear();
+            entries.clear();
+        }
+    }
+
+    /**
+     * One encoded column, written with its length in front
+     */
+    private final class Column {
+        byte[] data = new byte[BUFFER_SIZE];
+        int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        void varint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                data[size++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        void bytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, data, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void ensure(int extra) {
+            if (size + extra > data.length) {
+                data = java.util.Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+
+        void writeTo() throws IOException {
+            putVarint(size);
+            put(data, 0, size);
+        }
+    }
+
+    /**
+     * Read a columnar export back, handing over each expense in file order
+     * @return number of expenses read
+     * @throws IOException if the file is not a complete columnar export
+     */
+    public static long readColumnar(InputStream in, Consumer<Expense> consumer) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if (!java.util.Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a columnar expense export");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported columnar export version " + version);
+        }
+
+        Expense.Category[] categories = Expense.Category.values();
+        long[] ids = new long[0];
+        long[] days = new long[0];
+        long[] paise = new long[0];
+        byte[] codes = new byte[0];
+        String[] names = new String[0];
+        byte[] column = new byte[BUFFER_SIZE];
+        long total = 0;
+        while (true) {
+            int size = (int) readVarint(data);
+            if (size == 0) {
+                break;
+            }
+            if (size < 0 || size > ROW_GROUP) {
+                throw new IOException("Corrupt row group of " + size + " rows");
+            }
+            if (ids.length < size) {
+                ids = new long[size];
+                days = new long[size];
+                paise = new long[size];
+                codes = new byte[size];
+                names = new String[size];
+            }
+
+            Cursor cursor = new Cursor(column = readColumn(data, column));
+            long previous = 0;
+            for (int i = 0; i < size; i++) {
+                previous += unzigzag(cursor.varint());
+                ids[i] = previous;
+            }
+            cursor = new Cursor(column = readColumn(data, column));
+            previous = 0;
+            for (int i = 0; i < size; i++) {
+                previous += unzigzag(cursor.varint());
+                days[i] = previous;
+            }
+            cursor = new Cursor(column = readColumn(data, column));
+            for (int i = 0; i < size; i++) {
+                paise[i] = unzigzag(cursor.varint());
+            }
+            cursor = new Cursor(column = readColumn(data, column));
+            for (int i = 0; i < size; ) {
+                int run = (int) cursor.varint();
+                byte code = (byte) cursor.varint();
+                if (run <= 0 || i + run > size || code < 0 || code > categories.length) {
+                    throw new IOException("Corrupt category column");
+                }
+                java.util.Arrays.fill(codes, i, i + run, code);
+                i += run;
+            }
+            cursor = new Cursor(column = readColumn(data, column));
+            int entryCount = (int) cursor.varint();
+            if (entryCount < 0 || entryCount > size) {
+                throw new IOException("Corrupt name dictionary");
+            }
+            String[] dictionary = new String[entryCount + 1];
+            for (int i = 1; i <= entryCount; i++) {
+                dictionary[i] = cursor.string();
+            }
+            for (int i = 0; i < size; i++) {
+                long index = cursor.varint();
+                if (index < 0 || index > entryCount) {
+                    throw new IOException("Corrupt name column");
+                }
+                names[i] = dictionary[(int) index];
+            }
+
+            for (int i = 0; i < size; i++) {
+                Expense.Category category = codes[i] > 0 ? categories[codes[i] - 1] : null;
+                LocalDate date = days[i] != Long.MIN_VALUE ? LocalDate.ofEpochDay(days[i]) : null;
+                Expense expense = new Expense(names[i], paise[i] / 100.0, category, date);
+                expense.setId(ids[i]);
+                consumer.accept(expense);
+            }
+            total += size;
+        }
+
+        long expected = readVarint(data);
+        data.readFully(magic);
+        if (expected != total || !java.util.Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Columnar export is truncated or corrupt");
+        }
+        return total;
+    }
+
+    /**
+     * Read a length-prefixed column into the array, growing it if needed
+     * @return the array holding the column, starting at 0
+     */
+    private static byte[] readColumn(DataInputStream in, byte[] into) throws IOException {
+        long length = readVarint(in);
+        if (length < 0 || length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Corrupt column length " + length);
+        }
+        byte[] target = into.length >= length ? into : new byte[(int) length];
+        in.readFully(target, 0, (int) length);
+        return target;
+    }
+
+    private static long readVarint(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt varint");
+    }
+
+    /**
+     * Reads varints and strings from a column in memory
+     */
+    private static final class Cursor {
+        private final byte[] data;
+        private int pos;
+
+        Cursor(byte[] data) {
+            this.data = data;
+        }
+
+        long varint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= data.length) {
+                    throw new IOException("Column ends early");
+                }
+                byte b = data[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt varint");
+        }
+
+        String string() throws IOException {
+            int length = (int) varint();
+            if (length < 0 || pos + length > data.length) {
+                throw new IOException("Corrupt string");
+            }
+            String value = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.expenso.util;
+
+import com.expenso.model.Expense;
+import java.time.LocalDate;
+import java.util.function.Predicate;
+
+/**
+ * Selects expenses by category, date range and description text
+ * Unset criteria match everything; the date range includes both ends.
+ */
+public final class ExpenseFilter implements Predicate<Expense> {
+    public static final ExpenseFilter ALL = new ExpenseFilter(null, null, null, null);
+
+    private final Expense.Category category;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final String text;
+
+    /**
+     * @param text Matched case-insensitively anywhere in the description
+     */
+    public ExpenseFilter(Expense.Category category, LocalDate from, LocalDate to, String text) {
+        this.category = category;
+        this.from = from;
+        this.to = to;
+        this.text = text != null && !text.isEmpty() ? text.toLowerCase() : null;
+    }
+
+    @Override
+    public boolean test(Expense expense) {
+        if (category != null && expense.getCategory() != category) {
+            return false;
+        }
+        LocalDate date = expense.getDate();
+        if ((from != null && date.isBefore(from)) || (to != null && date.isAfter(to))) {
+            return false;
+        }
+        return text == null || (expense.getName() != null && expense.getName().toLowerCase().contains(text));
+    }
+
+    public boolean isAll() {
+        return category == null && from == null && to == null && text == null;
+    }
+}
@@ -0,0 +1,138 @@
+package com.expenso.util;
+
+import com.expenso.model.Expense;
+import java.io.IOException;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Totals over a list of expenses: overall, one month against the budget, by category and by month
+ * Amounts are summed in paise so long lists do not pick up rounding drift.
+ */
+public final class ExpenseSummary {
+    private final int count;
+    private final long total;
+    private final long budget;
+    private final YearMonth month;
+    private final long monthTotal;
+    // Category -> {paise, count}
+    private final Map<Expense.Category, long[]> byCategory;
+    private final Map<YearMonth, Long> byMonth;
+
+    private ExpenseSummary(int count, long total, long budget, YearMonth month, long monthTotal,
+                           Map<Expense.Category, long[]> byCategory, Map<YearMonth, Long> byMonth) {
+        this.count = count;
+        this.total = total;
+        this.budget = budget;
+        this.month = month;
+        this.monthTotal = monthTotal;
+        this.byCategory = byCategory;
+        this.byMonth = byMonth;
+    }
+
+    /**
+     * @param budget Monthly budget in rupees
+     * @param month Month compared with the budget, usually the current one
+     */
+    public static ExpenseSummary of(List<Expense> expenses, double budget, YearMonth month) {
+        long total = 0;
+        long monthTotal = 0;
+        Map<Expense.Category, long[]> byCategory = new EnumMap<>(Expense.Category.class);
+        Map<YearMonth, Long> byMonth = new TreeMap<>();
+        for (Expense expense : expenses) {
+            long paise = toPaise(expense.getAmount());
+            total += paise;
+            long[] category = byCategory.computeIfAbsent(expense.getCategory(), c -> new long[2]);
+            category[0] += paise;
+            category[1]++;
+            YearMonth ym = YearMonth.from(expense.getDate());
+            byMonth.merge(ym, paise, Long::sum);
+            if (ym.equals(month)) {
+                monthTotal += paise;
+            }
+        }
+        return new ExpenseSummary(expenses.size(), total, toPaise(budget), month, monthTotal, byCategory, byMonth);
+    }
+
+    public static long toPaise(double rupees) {
+        return Math.round(rupees * 100);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /** Total of all expenses in paise */
+    public long getTotal() {
+        return total;
+    }
+
+    /** Budget in paise */
+    public long getBudget() {
+        return budget;
+    }
+
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    /** Spent in the summary month, in paise */
+    public long getMonthTotal() {
+        return monthTotal;
+    }
+
+    /** Budget left in the summary month, in paise; negative when over */
+    public long getRemaining() {
+        return budget - monthTotal;
+    }
+
+    /** Categories that have expenses, in declaration order, each with {paise, count} */
+    public Map<Expense.Category, long[]> getByCategory() {
+        return Collections.unmodifiableMap(byCategory);
+    }
+
+    /** Paise spent per month, oldest first */
+    public Map<YearMonth, Long> getByMonth() {
+        return Collections.unmodifiableMap(byMonth);
+    }
+
+    public void writeJson(Json.Writer json) throws IOException {
+        json.beginObject()
+            .field("count", count)
+            .name("total").amount(total)
+            .name("budget").amount(budget)
+            .field("month", month.toString())
+            .name("monthTotal").amount(monthTotal)
+            .name("remaining").amount(getRemaining());
+        json.name("byCategory").beginArray();
+        for (Map.Entry<Expense.Category, long[]> entry : byCategory.entrySet()) {
+            json.beginObject()
+                .field("category", entry.getKey().getLabel())
+                .name("total").amount(entry.getValue()[0])
+                .field("count", entry.getValue()[1])
+                .endObject();
+        }
+        json.endArray();
+        json.name("byMonth").beginArray();
+        for (Map.Entry<YearMonth, Long> entry : byMonth.entrySet()) {
+            json.beginObject()
+                .field("month", entry.getKey().toString())
+                .name("total").amount(entry.getValue())
+                .endObject();
+        }
+        json.endArray();
+        json.endObject();
+    }
+
+    /**
+     * Rupees with two decimals, e.g. ₹1234.50, as the window shows amounts
+     */
+    public static String format(long paise) {
+        long abs = Math.abs(paise);
+        return String.format("%s₹%d.%02d", paise < 0 ? "-" : "", abs / 100, abs % 100);
+    }
+}
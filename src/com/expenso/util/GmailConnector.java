@@ -1,11 +1,20 @@
 package com.expenso.util;
 
+import com.expenso.data.DataManager;
+import com.expenso.data.ImapSyncState;
 import com.expenso.model.Transaction;
+import com.sun.mail.imap.IMAPFolder;
 import javax.mail.*;
 import javax.mail.internet.*;
 import javax.mail.search.*;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.time.LocalDate;
 
 /**
@@ -14,10 +23,79 @@ import java.time.LocalDate;
  */
 public class GmailConnector {
     
+    // Messages fetched, decoded and parsed at the same time
+    private static final int DEFAULT_MAX_CONCURRENCY = 16;
+    
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int DEFAULT_READ_TIMEOUT_MS = 10_000;
+    
+    // Message bodies downloaded per FETCH round-trip
+    private static final int BODY_BATCH_SIZE = 50;
+    
+    // Bank alerts are small; anything bigger is a newsletter or statement attachment
+    private static final int MAX_ALERT_SIZE = 512 * 1024;
+    
+    // Common bank/UPI email senders
+    private static final String[] SENDERS = {
+        "@sbi.co.in", "@hdfcbank.com", "@icicibank.com", "@axisbank.com",
+        "@kotak.com", "@pnb.co.in", "@yesbank.in", "@indusind.com",
+        "paytm.com", "phonepe.com", "google.com", "amazon.com",
+        "alerts", "notification", "noreply"
+    };
+    
+    // Keywords in subject
+    private static final String[] SUBJECT_KEYWORDS = {
+        "debited", "credited", "transaction", "payment", "UPI",
+        "spent", "received", "withdrawn", "transferred"
+    };
+    
+    // Subject hints of marketing mail from the same senders
+    private static final String[] PROMOTIONAL_HINTS = {
+        "offer", "% off", "sale", "newsletter", "webinar", "survey"
+    };
+    
+    /**
+     * Receives fetch progress, called from worker threads
+     */
+    public interface ProgressListener {
+        void onProgress(int processed, int total);
+    }
+    
+    /**
+     * Transactions found by a sync and the folder position to save once they are stored
+     */
+    public static class SyncResult {
+        private final List<Transaction> transactions;
+        private final String folder;
+        private final ImapSyncState.FolderState position;
+        
+        SyncResult(List<Transaction> transactions, String folder, ImapSyncState.FolderState position) {
+            this.transactions = transactions;
+            this.folder = folder;
+            this.position = position;
+        }
+        
+        public List<Transaction> getTransactions() {
+            return transactions;
+        }
+        
+        /**
+         * Position after this sync, or null if the fetch failed
+         */
+        public ImapSyncState.FolderState getPosition() {
+            return position;
+        }
+    }
+    
+    private static final Map<String, GmailConnector> SHARED = new HashMap<>();
+    
     private String email;
     private String appPassword;
     private Session session;
     private Store store;
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+    private int readTimeout = DEFAULT_READ_TIMEOUT_MS;
+    private ImapSyncState syncState;
     
     /**
      * Configure Gmail connection
@@ -29,19 +107,50 @@ public class GmailConnector {
         this.appPassword = appPassword;
     }
     
+    /**
+     * Shared connector for an account, kept connected between uses
+     * Replaces (and disconnects) a cached connector whose password no longer matches.
+     * Each profile gets its own, so sync positions stay in that profile's folder.
+     */
+    public static GmailConnector shared(String email, String appPassword) {
+        String key = DataManager.getDataDirectory() + "|" + email.toLowerCase();
+        synchronized (SHARED) {
+            GmailConnector existing = SHARED.get(key);
+            if (existing != null && existing.appPassword.equals(appPassword)) {
+                return existing;
+            }
+            if (existing != null) {
+                existing.disconnect();
+            }
+            GmailConnector connector = new GmailConnector(email, appPassword);
+            SHARED.put(key, connector);
+            return connector;
+        }
+    }
+    
+    /**
+     * Connect unless the session is still open
+     */
+    public synchronized boolean ensureConnected() {
+        if (store != null && store.isConnected()) {
+            return true;
+        }
+        return connect();
+    }
+    
     /**
      * Connect to Gmail
      */
-    public boolean connect() {
+    public synchronized boolean connect() {
         try {
             Properties props = new Properties();
+            // The imaps provider only reads mail.imaps.* properties
             props.put("mail.store.protocol", "imaps");
-            props.put("mail.imap.host", "imap.gmail.com");
-            props.put("mail.imap.port", "993");
-            props.put("mail.imap.ssl.enable", "true");
-            props.put("mail.imap.ssl.trust", "imap.gmail.com");
-            props.put("mail.imap.timeout", "10000");
-            props.put("mail.imap.connectiontimeout", "10000");
+            props.put("mail.imaps.host", "imap.gmail.com");
+            props.put("mail.imaps.port", "993");
+            props.put("mail.imaps.ssl.trust", "imap.gmail.com");
+            props.put("mail.imaps.timeout", String.valueOf(readTimeout));
+            props.put("mail.imaps.connectiontimeout", String.valueOf(CONNECT_TIMEOUT_MS));
             
             session = Session.getInstance(props);
             store = session.getStore("imaps");
@@ -54,50 +163,315 @@ public class GmailConnector {
         }
     }
     
+    /**
+     * Socket read timeout for later connections
+     * A session waiting in IDLE needs one longer than its IDLE refresh period.
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+    
+    /**
+     * Limit how many messages are processed concurrently
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+    }
+    
     /**
      * Fetch transaction emails from last N days
      */
     public List<Transaction> fetchTransactionEmails(int daysBack) {
-        List<Transaction> transactions = new ArrayList<>();
+        return fetchTransactionEmails(daysBack, null);
+    }
+    
+    /**
+     * Fetch transaction emails from last N days without moving the sync position
+     */
+    public List<Transaction> fetchTransactionEmails(int daysBack, ProgressListener listener) {
+        return fetchNewTransactions(daysBack, listener).getTransactions();
+    }
+    
+    /**
+     * Use a specific sync state store instead of the default one under ~/.expenso
+     */
+    public void setSyncState(ImapSyncState syncState) {
+        this.syncState = syncState;
+    }
+    
+    /**
+     * Forget the inbox sync position so the next fetch rescans the whole window
+     */
+    public void resetSync() {
+        getSyncState().clear(email, "INBOX");
+    }
+    
+    private ImapSyncState getSyncState() {
+        if (syncState == null) {
+            syncState = new ImapSyncState();
+        }
+        return syncState;
+    }
+    
+    /**
+     * Fetch transaction emails from last N days, reporting progress as messages complete
+     * Only messages with a UID above the last synced one are fetched, unless the
+     * folder's UIDVALIDITY changed or the window now reaches further back. Pass
+     * the result to commitSync() once its transactions have been imported.
+     */
+    public SyncResult fetchNewTransactions(int daysBack, ProgressListener listener) {
+        try {
+            if (!ensureConnected()) {
+                return new SyncResult(new ArrayList<>(), "INBOX", null);
+            }
+            
+            Folder inbox = openInbox();
+            try {
+                return syncFolder(inbox, daysBack, listener);
+            } finally {
+                inbox.close(false);
+            }
+            
+        } catch (Exception e) {
+            System.err.println("Error fetching emails: " + e.getMessage());
+            e.printStackTrace();
+        }
         
+        return new SyncResult(new ArrayList<>(), "INBOX", null);
+    }
+    
+    /**
+     * Save the position of a sync once its transactions are stored, so emails of
+     * an import that was cancelled or failed are fetched again next time
+     * A position older than the saved one (e.g. from a fetch that sat in the
+     * preview while live import moved on) is ignored.
+     */
+    public void commitSync(SyncResult result) {
+        if (result == null || result.position == null) {
+            return;
+        }
+        ImapSyncState state = getSyncState();
+        synchronized (state) {
+            ImapSyncState.FolderState saved = state.get(email, result.folder);
+            ImapSyncState.FolderState next = result.position;
+            if (saved != null && saved.getUidValidity() == next.getUidValidity()
+                    && saved.getLastUid() >= next.getLastUid() && !saved.getSince().isAfter(next.getSince())) {
+                return;
+            }
+            state.put(email, result.folder, next);
+        }
+    }
+    
+    /**
+     * Open the inbox read-only
+     */
+    Folder openInbox() throws MessagingException {
+        Folder inbox = store.getFolder("INBOX");
+        inbox.open(Folder.READ_ONLY);
+        return inbox;
+    }
+    
+    /**
+     * Fetch and parse transaction emails from an open folder
+     * The new sync position is returned with them rather than saved.
+     */
+    SyncResult syncFolder(Folder inbox, int daysBack, ProgressListener listener) throws Exception {
+        UIDFolder uidFolder = (UIDFolder) inbox;
+        long uidValidity = uidFolder.getUIDValidity();
+        LocalDate since = LocalDate.now().minusDays(daysBack);
+        ImapSyncState.FolderState state = getSyncState().get(email, inbox.getFullName());
+        
+        // Search for transaction emails
+        SearchTerm searchTerm = createTransactionSearchTerm(daysBack);
+        Message[] messages;
+        long highestUid;
+        
+        if (state != null && state.getUidValidity() == uidValidity && !since.isBefore(state.getSince())) {
+            // Incremental: only look at UIDs we have not seen yet
+            Message[] newer = newerMessages(uidFolder, state.getLastUid());
+            highestUid = Math.max(state.getLastUid(), highestUid(uidFolder, newer));
+            messages = newer.length == 0 ? newer : inbox.search(searchTerm, newer);
+            since = state.getSince();
+            System.out.println("Incremental sync: " + newer.length + " new emails");
+        } else {
+            highestUid = highestUid(uidFolder, inbox);
+            messages = inbox.search(searchTerm);
+        }
+        
+        System.out.println("Found " + messages.length + " transaction emails");
+        
+        messages = prefetchAndFilter(inbox, messages);
+        List<Transaction> transactions = processMessages(inbox, messages, listener);
+        
+        return new SyncResult(transactions, inbox.getFullName(),
+            new ImapSyncState.FolderState(uidValidity, highestUid, since));
+    }
+    
+    /**
+     * Messages with a UID greater than lastUid
+     */
+    private Message[] newerMessages(UIDFolder folder, long lastUid) throws MessagingException {
+        Message[] range = folder.getMessagesByUID(lastUid + 1, UIDFolder.LASTUID);
+        
+        // "n:*" always returns the newest message, even when its UID is below n
+        List<Message> newer = new ArrayList<>(range.length);
+        for (Message message : range) {
+            if (message != null && folder.getUID(message) > lastUid) {
+                newer.add(message);
+            }
+        }
+        return newer.toArray(new Message[0]);
+    }
+    
+    private long highestUid(UIDFolder folder, Message[] messages) throws MessagingException {
+        long highest = 0;
+        for (Message message : messages) {
+            highest = Math.max(highest, folder.getUID(message));
+        }
+        return highest;
+    }
+    
+    /**
+     * Highest UID currently in the folder
+     */
+    private long highestUid(UIDFolder uidFolder, Folder folder) throws MessagingException {
+        long uidNext = uidFolder.getUIDNext();
+        if (uidNext > 0) {
+            return uidNext - 1;
+        }
+        int count = folder.getMessageCount();
+        return count > 0 ? uidFolder.getUID(folder.getMessage(count)) : 0;
+    }
+    
+    /**
+     * Stage one: fetch envelopes for all hits in one round-trip and keep only
+     * messages whose headers look like a transaction alert
+     */
+    private Message[] prefetchAndFilter(Folder folder, Message[] messages) throws MessagingException {
+        if (messages.length == 0) {
+            return messages;
+        }
+        
+        FetchProfile headers = new FetchProfile();
+        headers.add(FetchProfile.Item.ENVELOPE);
+        headers.add(FetchProfile.Item.CONTENT_INFO);
+        headers.add(FetchProfile.Item.SIZE);
+        folder.fetch(messages, headers);
+        
+        List<Message> survivors = new ArrayList<>(messages.length);
+        for (Message message : messages) {
+            if (looksLikeTransaction(message)) {
+                survivors.add(message);
+            }
+        }
+        System.out.println("Header filter kept " + survivors.size() + " of " + messages.length + " emails");
+        return survivors.toArray(new Message[0]);
+    }
+    
+    /**
+     * Cheap classifier using only prefetched envelope data
+     */
+    static boolean looksLikeTransaction(Message message) {
         try {
-            if (store == null || !store.isConnected()) {
-                if (!connect()) {
-                    return transactions;
-                }
+            String subject = message.getSubject();
+            if (subject == null) {
+                return false;
             }
+            subject = subject.toLowerCase();
             
-            Folder inbox = store.getFolder("INBOX");
-            inbox.open(Folder.READ_ONLY);
+            if (!containsAny(subject, SUBJECT_KEYWORDS) || containsAny(subject, PROMOTIONAL_HINTS)) {
+                return false;
+            }
             
-            // Search for transaction emails
-            SearchTerm searchTerm = createTransactionSearchTerm(daysBack);
-            Message[] messages = inbox.search(searchTerm);
+            Address[] from = message.getFrom();
+            if (from == null || from.length == 0 || !containsAny(from[0].toString().toLowerCase(), SENDERS)) {
+                return false;
+            }
             
-            System.out.println("Found " + messages.length + " transaction emails");
+            if (message.getSize() > MAX_ALERT_SIZE) {
+                return false;
+            }
+            return message.isMimeType("text/*") || message.isMimeType("multipart/*");
+        } catch (MessagingException e) {
+            // Let the body stage decide
+            return true;
+        }
+    }
+    
+    private static boolean containsAny(String text, String[] needles) {
+        for (String needle : needles) {
+            if (text.contains(needle.toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Stage two: download bodies in batches, one FETCH per batch, then decode
+     * and parse them concurrently with bounded parallelism
+     * Results keep the order the messages were received in.
+     */
+    private List<Transaction> processMessages(Folder folder, Message[] messages, ProgressListener listener)
+            throws InterruptedException, MessagingException {
+        int total = messages.length;
+        if (listener != null) {
+            listener.onProgress(0, total);
+        }
+        
+        Semaphore permits = new Semaphore(maxConcurrency);
+        AtomicInteger processed = new AtomicInteger();
+        List<Future<List<Transaction>>> results = new ArrayList<>(total);
+        ExecutorService executor = TaskExecutors.newPerTaskExecutor("gmail-parse");
+        
+        FetchProfile bodies = new FetchProfile();
+        bodies.add(IMAPFolder.FetchProfileItem.MESSAGE);
+        
+        try {
+            for (int start = 0; start < total; start += BODY_BATCH_SIZE) {
+                Message[] batch = Arrays.copyOfRange(messages, start, Math.min(total, start + BODY_BATCH_SIZE));
+                folder.fetch(batch, bodies);
+                
+                for (Message message : batch) {
+                    permits.acquire();
+                    results.add(executor.submit(() -> {
+                        try {
+                            return parseMessage(message);
+                        } finally {
+                            permits.release();
+                            if (listener != null) {
+                                listener.onProgress(processed.incrementAndGet(), total);
+                            }
+                        }
+                    }));
+                }
+            }
             
-            for (Message message : messages) {
+            List<Transaction> transactions = new ArrayList<>();
+            for (Future<List<Transaction>> result : results) {
                 try {
-                    String subject = message.getSubject();
-                    String content = getTextFromMessage(message);
-                    
-                    if (subject != null && content != null) {
-                        List<Transaction> parsed = EmailTransactionParser.parseEmailContent(content, subject);
-                        transactions.addAll(parsed);
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error parsing message: " + e.getMessage());
+                    transactions.addAll(result.get());
+                } catch (ExecutionException e) {
+                    System.err.println("Error parsing message: " + e.getCause().getMessage());
                 }
             }
-            
-            inbox.close(false);
-            
-        } catch (Exception e) {
-            System.err.println("Error fetching emails: " + e.getMessage());
-            e.printStackTrace();
+            return transactions;
+        } finally {
+            executor.shutdownNow();
         }
+    }
+    
+    /**
+     * Fetch and parse a single message
+     */
+    private List<Transaction> parseMessage(Message message) throws Exception {
+        String subject = message.getSubject();
+        String content = getTextFromMessage(message);
         
-        return transactions;
+        if (subject != null && content != null) {
+            return EmailTransactionParser.parseEmailContent(content, subject);
+        }
+        return Collections.emptyList();
     }
     
     /**
@@ -111,29 +485,15 @@ public class GmailConnector {
         
         SearchTerm dateSearch = new ReceivedDateTerm(ComparisonTerm.GE, fromDate);
         
-        // Common bank/UPI email senders
-        String[] senders = {
-            "@sbi.co.in", "@hdfcbank.com", "@icicibank.com", "@axisbank.com",
-            "@kotak.com", "@pnb.co.in", "@yesbank.in", "@indusind.com",
-            "paytm.com", "phonepe.com", "google.com", "amazon.com",
-            "alerts", "notification", "noreply"
-        };
-        
-        SearchTerm[] fromSearches = new SearchTerm[senders.length];
-        for (int i = 0; i < senders.length; i++) {
-            fromSearches[i] = new FromStringTerm(senders[i]);
+        SearchTerm[] fromSearches = new SearchTerm[SENDERS.length];
+        for (int i = 0; i < SENDERS.length; i++) {
+            fromSearches[i] = new FromStringTerm(SENDERS[i]);
         }
         SearchTerm fromSearch = new OrTerm(fromSearches);
         
-        // Keywords in subject
-        String[] keywords = {
-            "debited", "credited", "transaction", "payment", "UPI",
-            "spent", "received", "withdrawn", "transferred"
-        };
-        
-        SearchTerm[] subjectSearches = new SearchTerm[keywords.length];
-        for (int i = 0; i < keywords.length; i++) {
-            subjectSearches[i] = new SubjectTerm(keywords[i]);
+        SearchTerm[] subjectSearches = new SearchTerm[SUBJECT_KEYWORDS.length];
+        for (int i = 0; i < SUBJECT_KEYWORDS.length; i++) {
+            subjectSearches[i] = new SubjectTerm(SUBJECT_KEYWORDS[i]);
         }
         SearchTerm keywordSearch = new OrTerm(subjectSearches);
         
@@ -150,58 +510,49 @@ public class GmailConnector {
      * Extract text content from email message
      */
     private String getTextFromMessage(Message message) throws Exception {
-        String result = "";
-        
-        if (message.isMimeType("text/plain")) {
-            result = message.getContent().toString();
-        } else if (message.isMimeType("text/html")) {
-            result = stripHtml(message.getContent().toString());
-        } else if (message.isMimeType("multipart/*")) {
-            MimeMultipart multipart = (MimeMultipart) message.getContent();
-            result = getTextFromMultipart(multipart);
-        }
-        
-        return result;
+        StringBuilder result = new StringBuilder();
+        appendText(message, result);
+        return result.toString();
     }
     
     /**
-     * Extract text from multipart email
+     * Append the text of a part, recursing into multiparts
+     * HTML is streamed from the decoded part straight into the buffer.
      */
-    private String getTextFromMultipart(MimeMultipart multipart) throws Exception {
-        StringBuilder result = new StringBuilder();
-        
-        for (int i = 0; i < multipart.getCount(); i++) {
-            BodyPart bodyPart = multipart.getBodyPart(i);
-            
-            if (bodyPart.isMimeType("text/plain")) {
-                result.append(bodyPart.getContent().toString());
-            } else if (bodyPart.isMimeType("text/html")) {
-                result.append(stripHtml(bodyPart.getContent().toString()));
-            } else if (bodyPart.getContent() instanceof MimeMultipart) {
-                result.append(getTextFromMultipart((MimeMultipart) bodyPart.getContent()));
+    private void appendText(Part part, StringBuilder result) throws Exception {
+        if (part.isMimeType("text/plain")) {
+            result.append(part.getContent().toString());
+        } else if (part.isMimeType("text/html")) {
+            try (Reader reader = new InputStreamReader(part.getInputStream(), charsetOf(part))) {
+                HtmlTextExtractor.extract(reader, result);
+            }
+        } else if (part.isMimeType("multipart/*")) {
+            Multipart multipart = (Multipart) part.getContent();
+            for (int i = 0; i < multipart.getCount(); i++) {
+                appendText(multipart.getBodyPart(i), result);
             }
         }
-        
-        return result.toString();
     }
     
     /**
-     * Strip HTML tags
+     * Charset declared in the part's content type, UTF-8 if missing or unknown
      */
-    private String stripHtml(String html) {
-        return html.replaceAll("<[^>]*>", " ")
-                   .replaceAll("&nbsp;", " ")
-                   .replaceAll("&amp;", "&")
-                   .replaceAll("&lt;", "<")
-                   .replaceAll("&gt;", ">")
-                   .replaceAll("\\s+", " ")
-                   .trim();
+    private static Charset charsetOf(Part part) {
+        try {
+            String charset = new ContentType(part.getContentType()).getParameter("charset");
+            if (charset != null) {
+                return Charset.forName(MimeUtility.javaCharset(charset));
+            }
+        } catch (Exception e) {
+            // Fall through to default
+        }
+        return StandardCharsets.UTF_8;
     }
     
     /**
      * Disconnect from Gmail
      */
-    public void disconnect() {
+    public synchronized void disconnect() {
         try {
             if (store != null && store.isConnected()) {
                 store.close();
@@ -222,6 +573,10 @@ public class GmailConnector {
         return connected;
     }
     
+    public String getEmail() {
+        return email;
+    }
+    
     /**
      * Get folder list (for debugging)
      */
@@ -0,0 +1,185 @@
+package com.expenso.util;
+
+import com.expenso.model.Transaction;
+import com.sun.mail.imap.IMAPFolder;
+import javax.mail.Folder;
+import javax.mail.MessagingException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Long-lived Gmail session that pushes new transaction emails as they arrive
+ * Keeps the inbox open and waits in IMAP IDLE; whenever the server reports
+ * activity the folder is synced incrementally by UID and new transactions are
+ * handed to the sink. Dropped connections are re-established with exponential
+ * backoff. The blocking IDLE loop runs on its own platform daemon thread: IDLE
+ * waits inside a synchronized read, which would pin a virtual thread's carrier
+ * for as long as the mailbox stays quiet. Servers may drop an IDLE after 30
+ * minutes (RFC 2177), so a timer touches the folder well before that, which
+ * ends the IDLE; the loop then syncs and idles again.
+ */
+public class GmailLiveImportService implements LiveImportRegistry.Handle {
+
+    private static final long INITIAL_BACKOFF_MS = 1_000;
+    private static final long MAX_BACKOFF_MS = 5 * 60 * 1_000;
+    private static final long IDLE_REFRESH_MS = 9 * 60 * 1_000;
+    // Longer than an IDLE lasts, so a quiet mailbox is not mistaken for a dead connection
+    private static final int READ_TIMEOUT_MS = (int) IDLE_REFRESH_MS + 60 * 1_000;
+
+    /**
+     * Receives human readable state changes, called from the service thread
+     */
+    public interface StatusListener {
+        void onStatus(String status);
+    }
+
+    private final GmailConnector connector;
+    private final int daysBack;
+    private final Consumer<List<Transaction>> sink;
+    private StatusListener statusListener;
+
+    private volatile boolean running;
+    private volatile Folder folder;
+    private Thread thread;
+    private ScheduledExecutorService idleRefresher;
+
+    /**
+     * @param connector Connector used by this service alone, not {@link GmailConnector#shared}:
+     *                  it is disconnected whenever the connection drops and on stop
+     * @param daysBack Window for the initial catch-up sync
+     * @param sink Receives each non-empty batch of newly parsed transactions and must
+     *             store them before returning; throw to have the batch fetched again
+     */
+    public GmailLiveImportService(GmailConnector connector, int daysBack, Consumer<List<Transaction>> sink) {
+        this.connector = connector;
+        this.daysBack = daysBack;
+        this.sink = sink;
+        connector.setReadTimeout(READ_TIMEOUT_MS);
+    }
+
+    public void setStatusListener(StatusListener statusListener) {
+        this.statusListener = statusListener;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = TaskExecutors.daemonFactory("gmail-idle").newThread(this::run);
+        thread.start();
+        idleRefresher = Executors.newSingleThreadScheduledExecutor(TaskExecutors.daemonFactory("gmail-idle-refresh"));
+        idleRefresher.scheduleWithFixedDelay(this::refreshIdle, IDLE_REFRESH_MS, IDLE_REFRESH_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        idleRefresher.shutdownNow();
+        idleRefresher = null;
+        // Closing the folder aborts a pending IDLE
+        closeQuietly(folder);
+        thread.interrupt();
+        thread = null;
+        connector.disconnect();
+        status("Live import stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        long backoff = INITIAL_BACKOFF_MS;
+
+        while (running) {
+            Folder inbox = null;
+            try {
+                if (!connector.ensureConnected()) {
+                    throw new MessagingException("Could not connect to Gmail");
+                }
+                inbox = connector.openInbox();
+                folder = inbox;
+                backoff = INITIAL_BACKOFF_MS;
+
+                // Catch up on anything that arrived while disconnected
+                deliver(connector.syncFolder(inbox, daysBack, null));
+                status("Listening for new transaction emails");
+
+                while (running && inbox.isOpen()) {
+                    // Returns once the server reports new mail, expunges or flag changes, or refreshIdle ends it
+                    ((IMAPFolder) inbox).idle(true);
+                    if (running) {
+                        deliver(connector.syncFolder(inbox, daysBack, null));
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) break;
+                System.err.println("Live import connection lost: " + e.getMessage());
+                connector.disconnect();
+
+                long delay = backoff + ThreadLocalRandom.current().nextLong(backoff / 4 + 1);
+                status(String.format("Connection lost, retrying in %d s", delay / 1000));
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            } finally {
+                folder = null;
+                closeQuietly(inbox);
+            }
+        }
+    }
+
+    /**
+     * End the current IDLE by using the folder from another thread; JavaMail
+     * sends DONE and a NOOP, which also checks the connection is still alive
+     */
+    private void refreshIdle() {
+        Folder inbox = folder;
+        try {
+            if (inbox != null && inbox.isOpen()) {
+                inbox.getMessageCount();
+            }
+        } catch (MessagingException e) {
+            // The IDLE loop sees the failure and reconnects
+        }
+    }
+
+    /**
+     * Hand new transactions to the sink and only then move the sync position,
+     * so a batch the sink failed to store is fetched again
+     */
+    private void deliver(GmailConnector.SyncResult result) {
+        List<Transaction> transactions = result.getTransactions();
+        if (!transactions.isEmpty()) {
+            sink.accept(transactions);
+            status(String.format("Imported %d new transactions", transactions.size()));
+        }
+        connector.commitSync(result);
+    }
+
+    private void status(String status) {
+        StatusListener listener = statusListener;
+        if (listener != null) {
+            listener.onStatus(status);
+        }
+    }
+
+    private static void closeQuietly(Folder folder) {
+        try {
+            if (folder != null && folder.isOpen()) {
+                folder.close(false);
+            }
+        } catch (MessagingException e) {
+            // Already closed
+        }
+    }
+}
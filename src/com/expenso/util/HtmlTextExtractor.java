@@ -0,0 +1,274 @@
+package com.expenso.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Streaming HTML to plain text converter for email bodies
+ * One pass over the input: drops tags, comments and script/style blocks,
+ * decodes entities and collapses whitespace, appending straight into the
+ * caller's buffer. Input is read in fixed-size chunks from a Reader so the
+ * HTML never has to be materialized as a String.
+ */
+public final class HtmlTextExtractor {
+
+    private static final int TEXT = 0;
+    private static final int TAG_START = 1;
+    private static final int TAG_NAME = 2;
+    private static final int IN_TAG = 3;
+    private static final int BANG = 4;
+    private static final int COMMENT = 5;
+    private static final int RAW_TEXT = 6;
+    private static final int ENTITY = 7;
+
+    private static final int MAX_ENTITY_LENGTH = 10;
+    private static final int MAX_TAG_NAME_LENGTH = 16;
+
+    private final StringBuilder out;
+    private final int outStart;
+    private final StringBuilder tagName = new StringBuilder(MAX_TAG_NAME_LENGTH);
+    private final StringBuilder entity = new StringBuilder(MAX_ENTITY_LENGTH);
+
+    private int state = TEXT;
+    private boolean closingTag;
+    private char quote;
+    private int dashes;
+    private String rawEnd;
+    private int rawMatched;
+    private boolean pendingSpace;
+
+    private HtmlTextExtractor(StringBuilder out) {
+        this.out = out;
+        this.outStart = out.length();
+    }
+
+    /**
+     * Append the text content of the HTML read from in to out
+     */
+    public static void extract(Reader in, StringBuilder out) throws IOException {
+        HtmlTextExtractor extractor = new HtmlTextExtractor(out);
+        char[] buffer = new char[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            for (int i = 0; i < n; i++) {
+                extractor.accept(buffer[i]);
+            }
+        }
+        extractor.finish();
+    }
+
+    /**
+     * Convert an HTML string to text
+     */
+    public static String extract(String html) {
+        StringBuilder out = new StringBuilder(html.length() / 4);
+        try {
+            extract(new StringReader(html), out);
+        } catch (IOException e) {
+            // StringReader does not throw
+        }
+        return out.toString();
+    }
+
+    private void accept(char c) {
+        switch (state) {
+            case TEXT:
+                if (c == '<') {
+                    state = TAG_START;
+                } else if (c == '&') {
+                    entity.setLength(0);
+                    state = ENTITY;
+                } else {
+                    emit(c);
+                }
+                break;
+
+            case TAG_START:
+                tagName.setLength(0);
+                closingTag = false;
+                quote = 0;
+                if (c == '!') {
+                    dashes = 0;
+                    state = BANG;
+                } else if (c == '/') {
+                    closingTag = true;
+                    state = TAG_NAME;
+                } else if (Character.isLetter(c)) {
+                    tagName.append(Character.toLowerCase(c));
+                    state = TAG_NAME;
+                } else {
+                    state = IN_TAG;
+                    accept(c);
+                }
+                break;
+
+            case TAG_NAME:
+                if (Character.isLetterOrDigit(c)) {
+                    if (tagName.length() < MAX_TAG_NAME_LENGTH) {
+                        tagName.append(Character.toLowerCase(c));
+                    }
+                } else {
+                    state = IN_TAG;
+                    accept(c);
+                }
+                break;
+
+            case IN_TAG:
+                if (quote != 0) {
+                    if (c == quote) quote = 0;
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '>') {
+                    endTag();
+                }
+                break;
+
+            case BANG:
+                if (c == '-' && ++dashes == 2) {
+                    dashes = 0;
+                    state = COMMENT;
+                } else if (c != '-') {
+                    // <!DOCTYPE ...> and similar declarations
+                    state = IN_TAG;
+                    accept(c);
+                }
+                break;
+
+            case COMMENT:
+                if (c == '-') {
+                    dashes++;
+                } else if (c == '>' && dashes >= 2) {
+                    pendingSpace = true;
+                    state = TEXT;
+                } else {
+                    dashes = 0;
+                }
+                break;
+
+            case RAW_TEXT:
+                // Skip everything up to the matching </script or </style
+                if (Character.toLowerCase(c) == rawEnd.charAt(rawMatched)) {
+                    if (++rawMatched == rawEnd.length()) {
+                        closingTag = true;
+                        quote = 0;
+                        state = IN_TAG;
+                    }
+                } else {
+                    rawMatched = c == '<' ? 1 : 0;
+                }
+                break;
+
+            case ENTITY:
+                if (c == ';') {
+                    decodeEntity();
+                    state = TEXT;
+                } else if ((Character.isLetterOrDigit(c) || c == '#') && entity.length() < MAX_ENTITY_LENGTH) {
+                    entity.append(c);
+                } else {
+                    // Not an entity after all, keep it literally
+                    emit('&');
+                    emitAll(entity);
+                    state = TEXT;
+                    accept(c);
+                }
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    private void endTag() {
+        pendingSpace = true;
+        String name = tagName.toString();
+        if (!closingTag && (name.equals("script") || name.equals("style"))) {
+            rawEnd = "</" + name;
+            rawMatched = 0;
+            state = RAW_TEXT;
+        } else {
+            state = TEXT;
+        }
+    }
+
+    private void finish() {
+        if (state == ENTITY) {
+            emit('&');
+            emitAll(entity);
+        }
+    }
+
+    private void decodeEntity() {
+        int code = -1;
+        if (entity.length() > 1 && entity.charAt(0) == '#') {
+            try {
+                if (entity.charAt(1) == 'x' || entity.charAt(1) == 'X') {
+                    code = Integer.parseInt(entity.substring(2), 16);
+                } else {
+                    code = Integer.parseInt(entity.substring(1));
+                }
+            } catch (NumberFormatException e) {
+                code = -1;
+            }
+        } else {
+            code = namedEntity(entity.toString());
+        }
+
+        if (code >= 0 && Character.isValidCodePoint(code)) {
+            if (Character.isBmpCodePoint(code)) {
+                emit((char) code);
+            } else {
+                emit(Character.highSurrogate(code));
+                emit(Character.lowSurrogate(code));
+            }
+        } else {
+            emit('&');
+            emitAll(entity);
+            emit(';');
+        }
+    }
+
+    private static int namedEntity(String name) {
+        switch (name) {
+            case "nbsp": return '\u00A0';
+            case "amp": return '&';
+            case "lt": return '<';
+            case "gt": return '>';
+            case "quot": return '"';
+            case "apos": return '\'';
+            case "ndash": return '–';
+            case "mdash": return '—';
+            case "lsquo": return '‘';
+            case "rsquo": return '’';
+            case "ldquo": return '“';
+            case "rdquo": return '”';
+            case "hellip": return '…';
+            case "bull": return '•';
+            case "copy": return '©';
+            case "reg": return '®';
+            case "inr": return '₹';
+            default: return -1;
+        }
+    }
+
+    private void emitAll(CharSequence chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            emit(chars.charAt(i));
+        }
+    }
+
+    /**
+     * Append a character, collapsing whitespace runs and trimming both ends
+     */
+    private void emit(char c) {
+        if (Character.isWhitespace(c) || c == '\u00A0') {
+            pendingSpace = true;
+            return;
+        }
+        if (pendingSpace && out.length() > outStart) {
+            out.append(' ');
+        }
+        pendingSpace = false;
+        out.append(c);
+    }
+}
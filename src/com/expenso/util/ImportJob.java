@@ -0,0 +1,530 @@
+package com.expenso.util;
+
+import com.expenso.data.DuplicateDetector;
+import com.expenso.model.Expense;
+import com.expenso.model.Transaction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Background import pipeline shared by file, email and mailbox imports
+ * Records flow read → parse → categorize → dedupe → commit, each stage on its
+ * own daemon thread with a small bounded queue in between, so a slow stage
+ * (usually commit) throttles the reader instead of buffering the whole source.
+ * Batches keep source order end to end, which lets the job remember the last
+ * committed source position: a cancelled or failed job can be resumed from
+ * there, and the dedupe stage absorbs any overlap.
+ */
+public class ImportJob {
+
+    private static final int BATCH_SIZE = 256;
+    private static final int QUEUE_CAPACITY = 8;
+    private static final long PROGRESS_INTERVAL_NANOS = 100_000_000L;
+
+    public enum State { NEW, RUNNING, COMPLETED, CANCELLED, FAILED }
+
+    /**
+     * Where records come from and how they become transactions
+     * read() runs on the reader thread and parse() on the parse stage, which
+     * may call it from several threads when {@link #isParallel()} is true.
+     */
+    public interface Source<R> {
+        String getName();
+
+        /** Total bytes to read, or 0 if unknown */
+        long getTotalBytes();
+
+        /** Emit records in order, skipping those at or before the resume position */
+        void read(long resumeFrom, RecordSink<R> sink) throws Exception;
+
+        List<Transaction> parse(R record) throws Exception;
+
+        default boolean isParallel() {
+            return false;
+        }
+
+        /** Release resources held for parse(), called when a run ends */
+        default void close() {
+        }
+    }
+
+    /**
+     * Receives records from a source
+     */
+    public interface RecordSink<R> {
+        /**
+         * @param position Resume token, increasing, that covers this record
+         * @param bytesRead Bytes consumed from the source so far
+         */
+        void accept(R record, long position, long bytesRead) throws InterruptedException;
+    }
+
+    /**
+     * Final stage, called on the commit thread with consecutive batches
+     */
+    public interface Committer {
+        void commit(List<Entry> entries) throws Exception;
+
+        /** Called once after the last batch of a completed run, e.g. to save */
+        default void complete() throws Exception {
+        }
+    }
+
+    /**
+     * Receives progress and completion, called from pipeline threads
+     */
+    public interface Listener {
+        void onProgress(Progress progress);
+
+        void onFinished(State state, Progress progress, Throwable error);
+    }
+
+    /**
+     * A parsed transaction with its category worked out once
+     */
+    public static final class Entry {
+        private final Transaction transaction;
+        private Expense expense;
+
+        Entry(Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        public Transaction getTransaction() {
+            return transaction;
+        }
+
+        /** Expense view of the transaction, null for credits */
+        public Expense getExpense() {
+            return expense;
+        }
+    }
+
+    /**
+     * Snapshot of the job counters
+     */
+    public static final class Progress {
+        private final long recordsRead;
+        private final long bytesRead;
+        private final long totalBytes;
+        private final long transactions;
+        private final long duplicates;
+        private final long committed;
+        private final long elapsedNanos;
+
+        Progress(long recordsRead, long bytesRead, long totalBytes, long transactions,
+                 long duplicates, long committed, long elapsedNanos) {
+            this.recordsRead = recordsRead;
+            this.bytesRead = bytesRead;
+            this.totalBytes = totalBytes;
+            this.transactions = transactions;
+            this.duplicates = duplicates;
+            this.committed = committed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRecordsRead() {
+            return recordsRead;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public long getTransactions() {
+            return transactions;
+        }
+
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        public long getCommitted() {
+            return committed;
+        }
+
+        /** Fraction of the source read, or -1 if the size is unknown */
+        public double getFraction() {
+            return totalBytes > 0 ? Math.min(1.0, (double) bytesRead / totalBytes) : -1;
+        }
+
+        /** Records read per second since the run started */
+        public double getRecordsPerSecond() {
+            return elapsedNanos > 0 ? recordsRead * 1e9 / elapsedNanos : 0;
+        }
+
+        public String toString() {
+            return String.format("%,d records, %,d transactions (%,d duplicates), %,.0f records/s",
+                recordsRead, committed, duplicates, getRecordsPerSecond());
+        }
+    }
+
+    /**
+     * Unit of work passed between stages
+     */
+    private static final class Batch<T> {
+        final List<T> items = new ArrayList<>(BATCH_SIZE);
+        long position;
+        long bytesRead;
+    }
+
+    private static final Batch<Object> END = new Batch<>();
+
+    private final Source<?> source;
+    private final Committer committer;
+    private DuplicateDetector duplicateDetector;
+    // Kept across resume so rows after the checkpoint continue the count
+    private final DuplicateDetector.Occurrences occurrences = new DuplicateDetector.Occurrences();
+    private StatementReconciler reconciler;
+    private Listener listener;
+    private int parseThreads;
+
+    private volatile State state = State.NEW;
+    private volatile Throwable error;
+    private volatile long checkpoint = -1;
+    private final List<Thread> threads = new ArrayList<>();
+    private Thread commitThread;
+
+    // Counters, each written by a single stage
+    private volatile long recordsRead;
+    private volatile long bytesRead;
+    private volatile long transactions;
+    private volatile long duplicates;
+    private volatile long committed;
+    private long startNanos;
+    private long lastProgressNanos;
+
+    public ImportJob(Source<?> source, Committer committer) {
+        this.source = source;
+        this.committer = committer;
+        this.parseThreads = source.isParallel() ? Runtime.getRuntime().availableProcessors() : 1;
+    }
+
+    /**
+     * Drop transactions the detector has already seen, as well as repeats within the job
+     * The detector is only queried; recording is up to the committer.
+     */
+    public void setDuplicateDetector(DuplicateDetector duplicateDetector) {
+        this.duplicateDetector = duplicateDetector;
+    }
+
+    /**
+     * Check running balances as transactions are parsed, in statement order
+     */
+    public void setReconciler(StatementReconciler reconciler) {
+        this.reconciler = reconciler;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void setParseThreads(int parseThreads) {
+        this.parseThreads = Math.max(1, parseThreads);
+    }
+
+    public String getName() {
+        return source.getName();
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    /** Whether a cancelled or failed job can pick up where it stopped */
+    public boolean canResume() {
+        return state == State.CANCELLED || state == State.FAILED;
+    }
+
+    public synchronized void start() {
+        if (state != State.NEW) {
+            throw new IllegalStateException("Job already started");
+        }
+        launch();
+    }
+
+    /**
+     * Continue after the last committed record
+     */
+    public synchronized void resume() {
+        if (!canResume()) {
+            throw new IllegalStateException("Job cannot be resumed from " + state);
+        }
+        if (reconciler != null) {
+            // Rows after the checkpoint are parsed again; don't compare across the gap
+            reconciler.restart();
+        }
+        launch();
+    }
+
+    /**
+     * Stop the job; the batch being committed, if any, is allowed to finish
+     */
+    public synchronized void cancel() {
+        if (state != State.RUNNING) return;
+        state = State.CANCELLED;
+        interruptStages();
+    }
+
+    /**
+     * Wait for the current run to finish
+     */
+    public void await() throws InterruptedException {
+        List<Thread> running;
+        synchronized (this) {
+            running = new ArrayList<>(threads);
+        }
+        for (Thread thread : running) {
+            thread.join();
+        }
+    }
+
+    public Progress getProgress() {
+        return new Progress(recordsRead, bytesRead, source.getTotalBytes(), transactions,
+            duplicates, committed, System.nanoTime() - startNanos);
+    }
+
+    private void launch() {
+        state = State.RUNNING;
+        error = null;
+        startNanos = System.nanoTime();
+        recordsRead = 0;
+
+        BlockingQueue<Batch<Object>> records = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Batch<Object>> parsed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Batch<Object>> categorized = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Batch<Object>> unique = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        ThreadFactory factory = TaskExecutors.daemonFactory("import-" + source.getName());
+        threads.clear();
+        threads.add(factory.newThread(() -> stage(() -> read(records))));
+        threads.add(factory.newThread(() -> stage(() -> parse(records, parsed))));
+        threads.add(factory.newThread(() -> stage(() -> categorize(parsed, categorized))));
+        threads.add(factory.newThread(() -> stage(() -> dedupe(categorized, unique))));
+        commitThread = factory.newThread(() -> {
+            stage(() -> commit(unique));
+            finish();
+        });
+        threads.add(commitThread);
+        for (Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    private interface StageBody {
+        void run() throws Exception;
+    }
+
+    private void stage(StageBody body) {
+        try {
+            body.run();
+        } catch (InterruptedException e) {
+            // Cancelled or another stage failed
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    private synchronized void fail(Throwable e) {
+        if (state != State.RUNNING) return;
+        System.err.println("Error importing " + source.getName() + ": " + e.getMessage());
+        error = e;
+        state = State.FAILED;
+        interruptStages();
+    }
+
+    private void interruptStages() {
+        // The commit thread is never interrupted so a committer doing file I/O
+        // is not cut off halfway; it notices the state change between batches
+        for (Thread thread : threads) {
+            if (thread != commitThread) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    private void finish() {
+        // Upstream stages may still be unwinding after a cancel
+        for (Thread thread : threads) {
+            if (thread != Thread.currentThread()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        source.close();
+        synchronized (this) {
+            if (state == State.RUNNING) {
+                state = State.COMPLETED;
+            }
+        }
+        Listener l = listener;
+        if (l != null) {
+            l.onFinished(state, getProgress(), error);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void read(BlockingQueue<Batch<Object>> out) throws Exception {
+        AtomicReference<Batch<Object>> current = new AtomicReference<>(new Batch<>());
+        ((Source<Object>) source).read(checkpoint, (record, position, bytes) -> {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            Batch<Object> batch = current.get();
+            batch.items.add(record);
+            batch.position = position;
+            batch.bytesRead = bytes;
+            recordsRead++;
+            bytesRead = bytes;
+            if (batch.items.size() == BATCH_SIZE) {
+                out.put(batch);
+                current.set(new Batch<>());
+            }
+        });
+        if (!current.get().items.isEmpty()) {
+            out.put(current.get());
+        }
+        out.put(END);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void parse(BlockingQueue<Batch<Object>> in, BlockingQueue<Batch<Object>> out) throws Exception {
+        Source<Object> src = (Source<Object>) source;
+        ExecutorService pool = parseThreads > 1
+            ? Executors.newFixedThreadPool(parseThreads, TaskExecutors.daemonFactory("import-parse"))
+            : null;
+        try {
+            Batch<Object> batch;
+            while ((batch = in.take()) != END) {
+                Batch<Object> result = new Batch<>();
+                result.position = batch.position;
+                result.bytesRead = batch.bytesRead;
+
+                if (pool == null) {
+                    for (Object record : batch.items) {
+                        try {
+                            addEntries(src.parse(record), result);
+                        } catch (Exception e) {
+                            System.err.println("Error parsing record: " + e.getMessage());
+                        }
+                    }
+                } else {
+                    List<Future<List<Transaction>>> futures = new ArrayList<>(batch.items.size());
+                    for (Object record : batch.items) {
+                        futures.add(pool.submit(() -> src.parse(record)));
+                    }
+                    for (Future<List<Transaction>> future : futures) {
+                        try {
+                            addEntries(future.get(), result);
+                        } catch (ExecutionException e) {
+                            System.err.println("Error parsing record: " + e.getCause().getMessage());
+                        }
+                    }
+                }
+                transactions += result.items.size();
+                out.put(result);
+            }
+            out.put(END);
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private void addEntries(List<Transaction> parsed, Batch<Object> out) {
+        for (Transaction txn : parsed) {
+            if (reconciler != null) {
+                reconciler.accept(txn);
+            }
+            out.items.add(new Entry(txn));
+        }
+    }
+
+    private void categorize(BlockingQueue<Batch<Object>> in, BlockingQueue<Batch<Object>> out) throws Exception {
+        Batch<Object> batch;
+        while ((batch = in.take()) != END) {
+            for (Object item : batch.items) {
+                Entry entry = (Entry) item;
+                entry.expense = entry.transaction.toExpense();
+            }
+            out.put(batch);
+        }
+        out.put(END);
+    }
+
+    private void dedupe(BlockingQueue<Batch<Object>> in, BlockingQueue<Batch<Object>> out) throws Exception {
+        Batch<Object> batch;
+        while ((batch = in.take()) != END) {
+            int before = batch.items.size();
+            // Repeats of a row get their own key, so identical purchases on one day are all kept,
+            // but a repeated reference number is the same transaction listed twice
+            batch.items.removeIf(item -> {
+                Transaction txn = ((Entry) item).transaction;
+                int occurrence = occurrences.number(txn);
+                return duplicateDetector != null
+                    && ((occurrence > 1 && DuplicateDetector.hasReference(txn)) || duplicateDetector.isDuplicate(txn));
+            });
+            duplicates += before - batch.items.size();
+            out.put(batch);
+        }
+        out.put(END);
+    }
+
+    private void commit(BlockingQueue<Batch<Object>> in) throws Exception {
+        while (true) {
+            Batch<Object> batch = in.poll(PROGRESS_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+            if (state != State.RUNNING) {
+                return;
+            }
+            if (batch == END) {
+                break;
+            }
+            if (batch == null) {
+                continue;
+            }
+            if (!batch.items.isEmpty()) {
+                List<Entry> entries = new ArrayList<>(batch.items.size());
+                for (Object item : batch.items) {
+                    entries.add((Entry) item);
+                }
+                committer.commit(entries);
+                committed += entries.size();
+            }
+            checkpoint = batch.position;
+            reportProgress(false);
+        }
+        committer.complete();
+        reportProgress(true);
+    }
+
+    private void reportProgress(boolean force) {
+        Listener l = listener;
+        long now = System.nanoTime();
+        if (l != null && (force || now - lastProgressNanos >= PROGRESS_INTERVAL_NANOS)) {
+            lastProgressNanos = now;
+            l.onProgress(getProgress());
+        }
+    }
+}
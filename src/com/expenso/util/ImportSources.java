@@ -0,0 +1,269 @@
+package com.expenso.util;
+
+import com.expenso.model.Transaction;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Import job sources for the formats Expenso understands
+ */
+public final class ImportSources {
+
+    private ImportSources() {
+    }
+
+    /**
+     * Bank statement in any supported format
+     */
+    public static ImportJob.Source<?> bankStatement(File file) {
+        if (BankStatementParser.isZip(file.getName())) {
+            return statementArchive(file);
+        }
+        BankStatementParser.Format format = BankStatementParser.Format.of(file);
+        return format == BankStatementParser.Format.CSV ? csvStatement(file) : structuredStatement(file, format);
+    }
+
+    /**
+     * CSV bank statement, one record per data line; positions are line numbers
+     */
+    public static ImportJob.Source<String> csvStatement(File file) {
+        return new ImportJob.Source<String>() {
+            private final BankStatementParser.LineParser parser = new BankStatementParser.LineParser();
+
+            public String getName() {
+                return file.getName();
+            }
+
+            public long getTotalBytes() {
+                return file.length();
+            }
+
+            public void read(long resumeFrom, ImportJob.RecordSink<String> sink) throws Exception {
+                // Progress counts compressed bytes for .gz files, matching getTotalBytes()
+                try (CountingInputStream in = new CountingInputStream(new FileInputStream(file));
+                     BufferedReader reader = new BufferedReader(new InputStreamReader(
+                         BankStatementParser.decompress(in, file.getName()), Charset.defaultCharset()))) {
+                    String line;
+                    long lineNo = 0;
+                    while ((line = reader.readLine()) != null) {
+                        lineNo++;
+                        // The header is read here so data lines can be parsed anywhere
+                        if (!parser.isHeaderSeen()) {
+                            parser.parseLine(line);
+                            continue;
+                        }
+                        if (lineNo > resumeFrom) {
+                            sink.accept(line, lineNo, in.count);
+                        }
+                    }
+                }
+            }
+
+            public List<Transaction> parse(String line) {
+                Transaction txn = parser.parseLine(line);
+                return txn != null ? Collections.singletonList(txn) : Collections.emptyList();
+            }
+
+            public boolean isParallel() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * OFX, QIF or CAMT statement; the streaming parser runs on the reader thread
+     * and its transactions are the records. Positions count transactions.
+     */
+    private static ImportJob.Source<Transaction> structuredStatement(File file, BankStatementParser.Format format) {
+        return new ImportJob.Source<Transaction>() {
+            public String getName() {
+                return file.getName();
+            }
+
+            public long getTotalBytes() {
+                return file.length();
+            }
+
+            public void read(long resumeFrom, ImportJob.RecordSink<Transaction> sink) throws Exception {
+                long[] index = {0};
+                try (CountingInputStream in = new CountingInputStream(new FileInputStream(file))) {
+                    BankStatementParser.parse(BankStatementParser.decompress(in, file.getName()), format, txn -> {
+                        if (++index[0] > resumeFrom) {
+                            sink.accept(txn, index[0], in.count);
+                        }
+                    });
+                }
+            }
+
+            public List<Transaction> parse(Transaction txn) {
+                return Collections.singletonList(txn);
+            }
+        };
+    }
+
+    /**
+     * Zip of statements, one record per entry; entries are parsed in parallel
+     * straight from the archive. Positions are entry indexes.
+     */
+    private static ImportJob.Source<ZipEntry> statementArchive(File file) {
+        return new ImportJob.Source<ZipEntry>() {
+            private volatile ZipFile zip;
+
+            public String getName() {
+                return file.getName();
+            }
+
+            public long getTotalBytes() {
+                return file.length();
+            }
+
+            public void read(long resumeFrom, ImportJob.RecordSink<ZipEntry> sink) throws Exception {
+                // Stays open for the parse stage until close()
+                zip = new ZipFile(file);
+                long index = 0;
+                long bytes = 0;
+                for (ZipEntry entry : BankStatementParser.statementEntries(zip)) {
+                    index++;
+                    bytes += Math.max(0, entry.getCompressedSize());
+                    if (index > resumeFrom) {
+                        sink.accept(entry, index, bytes);
+                    }
+                }
+            }
+
+            public List<Transaction> parse(ZipEntry entry) throws Exception {
+                return BankStatementParser.parseEntry(zip, entry);
+            }
+
+            public boolean isParallel() {
+                return true;
+            }
+
+            public void close() {
+                ZipFile open = zip;
+                zip = null;
+                if (open != null) {
+                    try {
+                        open.close();
+                    } catch (IOException e) {
+                        // Nothing left to read
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Mailbox export (.mbox or .eml), one record per message; positions are message indexes
+     */
+    public static ImportJob.Source<ByteBuffer> mailbox(File file) {
+        return new ImportJob.Source<ByteBuffer>() {
+            public String getName() {
+                return file.getName();
+            }
+
+            public long getTotalBytes() {
+                return file.length();
+            }
+
+            public void read(long resumeFrom, ImportJob.RecordSink<ByteBuffer> sink) throws Exception {
+                long[] index = {0};
+                long[] bytes = {0};
+                try {
+                    MboxScanner.scan(file.toPath(), message -> {
+                        index[0]++;
+                        bytes[0] += message.remaining();
+                        if (index[0] > resumeFrom) {
+                            try {
+                                sink.accept(message, index[0], bytes[0]);
+                            } catch (InterruptedException e) {
+                                throw new StopScan(e);
+                            }
+                        }
+                    });
+                } catch (StopScan e) {
+                    throw (InterruptedException) e.getCause();
+                }
+            }
+
+            public List<Transaction> parse(ByteBuffer message) {
+                return MboxImporter.parseMessage(message);
+            }
+
+            public boolean isParallel() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Emails already in memory, e.g. pasted or fetched; positions are list indexes
+     */
+    public static ImportJob.Source<EmailTransactionParser.EmailData> emails(String name,
+                                                                            List<EmailTransactionParser.EmailData> emails) {
+        return new ImportJob.Source<EmailTransactionParser.EmailData>() {
+            public String getName() {
+                return name;
+            }
+
+            public long getTotalBytes() {
+                return 0;
+            }
+
+            public void read(long resumeFrom, ImportJob.RecordSink<EmailTransactionParser.EmailData> sink)
+                    throws InterruptedException {
+                for (int i = (int) Math.max(0, resumeFrom); i < emails.size(); i++) {
+                    sink.accept(emails.get(i), i + 1, 0);
+                }
+            }
+
+            public List<Transaction> parse(EmailTransactionParser.EmailData email) {
+                return EmailTransactionParser.parseEmailContent(email.getContent(), email.getSubject());
+            }
+
+            public boolean isParallel() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Carries an interrupt out of the scanner callback
+     */
+    private static final class StopScan extends RuntimeException {
+        StopScan(InterruptedException cause) {
+            super(cause);
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.expenso.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Minimal JSON support for the HTTP API
+ * Json.Writer streams values straight to a Writer, so large arrays are never
+ * built up in memory; parseObject reads the small flat request bodies the API
+ * accepts (strings, numbers, booleans and null).
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Streaming writer; commas between values are inserted automatically
+     */
+    public static final class Writer implements Closeable {
+        private final java.io.Writer out;
+        // One entry per open array or object: whether a value was written at that level
+        private boolean[] written = new boolean[16];
+        private int depth;
+        private boolean afterName;
+
+        public Writer(java.io.Writer out) {
+            this.out = out;
+        }
+
+        public Writer beginObject() throws IOException {
+            separate();
+            out.write('{');
+            push();
+            return this;
+        }
+
+        public Writer endObject() throws IOException {
+            depth--;
+            out.write('}');
+            return this;
+        }
+
+        public Writer beginArray() throws IOException {
+            separate();
+            out.write('[');
+            push();
+            return this;
+        }
+
+        public Writer endArray() throws IOException {
+            depth--;
+            out.write(']');
+            return this;
+        }
+
+        public Writer name(String name) throws IOException {
+            separate();
+            string(name);
+            out.write(':');
+            afterName = true;
+            return this;
+        }
+
+        public Writer value(String value) throws IOException {
+            separate();
+            if (value == null) {
+                out.write("null");
+            } else {
+                string(value);
+            }
+            return this;
+        }
+
+        public Writer value(long value) throws IOException {
+            separate();
+            out.write(Long.toString(value));
+            return this;
+        }
+
+        public Writer value(double value) throws IOException {
+            separate();
+            out.write(Double.isFinite(value) ? Double.toString(value) : "null");
+            return this;
+        }
+
+        /**
+         * Rupee amount from paise, always with two decimals
+         */
+        public Writer amount(long paise) throws IOException {
+            separate();
+            if (paise < 0) {
+                out.write('-');
+                paise = -paise;
+            }
+            long fraction = paise % 100;
+            out.write(Long.toString(paise / 100));
+            out.write('.');
+            out.write((char) ('0' + fraction / 10));
+            out.write((char) ('0' + fraction % 10));
+            return this;
+        }
+
+        public Writer value(boolean value) throws IOException {
+            separate();
+            out.write(value ? "true" : "false");
+            return this;
+        }
+
+        public Writer field(String name, String value) throws IOException {
+            return name(name).value(value);
+        }
+
+        public Writer field(String name, long value) throws IOException {
+            return name(name).value(value);
+        }
+
+        public Writer field(String name, boolean value) throws IOException {
+            return name(name).value(value);
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private void push() {
+            if (depth == written.length) {
+                written = java.util.Arrays.copyOf(written, depth * 2);
+            }
+            written[depth++] = false;
+        }
+
+        private void separate() throws IOException {
+            if (afterName) {
+                afterName = false;
+                return;
+            }
+            if (depth > 0) {
+                if (written[depth - 1]) {
+                    out.write(',');
+                }
+                written[depth - 1] = true;
+            }
+        }
+
+        private void string(String s) throws IOException {
+            out.write('"');
+            int start = 0;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                    continue;
+                }
+                out.write(s, start, i - start);
+                switch (c) {
+                    case '"': out.write("\\\""); break;
+                    case '\\': out.write("\\\\"); break;
+                    case '\n': out.write("\\n"); break;
+                    case '\r': out.write("\\r"); break;
+                    case '\t': out.write("\\t"); break;
+                    default:
+                        out.write(String.format("\\u%04x", (int) c));
+                }
+                start = i + 1;
+            }
+            out.write(s, start, s.length() - start);
+            out.write('"');
+        }
+    }
+
+    /**
+     * Parse a flat JSON object; numbers come back as Double, nested values are rejected
+     * @throws IllegalArgumentException if the text is not such an object
+     */
+    public static Map<String, Object> parseObject(String text) {
+        Parser parser = new Parser(text);
+        Map<String, Object> result = parser.object();
+        parser.skipSpace();
+        if (parser.pos != text.length()) {
+            throw parser.error("Trailing characters");
+        }
+        return result;
+    }
+
+    private static final class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Map<String, Object> object() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            expect('{');
+            skipSpace();
+            if (peek() == '}') {
+                pos++;
+                return map;
+            }
+            while (true) {
+                skipSpace();
+                String key = string();
+                skipSpace();
+                expect(':');
+                skipSpace();
+                map.put(key, value());
+                skipSpace();
+                char c = next();
+                if (c == '}') {
+                    return map;
+                }
+                if (c != ',') {
+                    throw error("Expected , or }");
+                }
+            }
+        }
+
+        Object value() {
+            char c = peek();
+            if (c == '"') return string();
+            if (text.startsWith("true", pos)) { pos += 4; return Boolean.TRUE; }
+            if (text.startsWith("false", pos)) { pos += 5; return Boolean.FALSE; }
+            if (text.startsWith("null", pos)) { pos += 4; return null; }
+            if (c == '-' || (c >= '0' && c <= '9')) return number();
+            throw error("Unsupported value");
+        }
+
+        Double number() {
+            int start = pos;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+                pos++;
+            }
+            try {
+                return Double.valueOf(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error("Bad number");
+            }
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char e = next();
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) throw error("Bad escape");
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("Bad escape");
+                        }
+                        pos += 4;
+                        break;
+                    default: sb.append(e);
+                }
+            }
+        }
+
+        void skipSpace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        void expect(char c) {
+            if (next() != c) {
+                throw error("Expected " + c);
+            }
+        }
+
+        char peek() {
+            if (pos >= text.length()) throw error("Unexpected end");
+            return text.charAt(pos);
+        }
+
+        char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos);
+        }
+    }
+}
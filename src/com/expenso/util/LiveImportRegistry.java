@@ -0,0 +1,51 @@
+package com.expenso.util;
+
+/**
+ * Holds the running live import, if any, so the window can stop it without
+ * depending on the mail classes
+ * GmailSetupDialog registers its GmailLiveImportService here; only it needs
+ * JavaMail, and it is compiled only when JavaMail is on the classpath.
+ */
+public final class LiveImportRegistry {
+
+    /**
+     * A live import that keeps running after its dialog closes
+     */
+    public interface Handle {
+        void stop();
+
+        boolean isRunning();
+    }
+
+    private static Handle current;
+
+    private LiveImportRegistry() {
+    }
+
+    /**
+     * The registered live import if it is still running, else null
+     */
+    public static synchronized Handle get() {
+        return current != null && current.isRunning() ? current : null;
+    }
+
+    /**
+     * Register a live import, stopping the one registered before
+     */
+    public static synchronized void set(Handle handle) {
+        if (current != null && current != handle) {
+            current.stop();
+        }
+        current = handle;
+    }
+
+    /**
+     * Stop the live import if one is running, e.g. when switching profile
+     */
+    public static synchronized void stop() {
+        if (current != null) {
+            current.stop();
+            current = null;
+        }
+    }
+}
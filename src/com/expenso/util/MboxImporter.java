@@ -0,0 +1,123 @@
+package com.expenso.util;
+
+import com.expenso.model.Transaction;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Bulk importer for mailbox exports (Google Takeout .mbox, single .eml files)
+ * MboxScanner slices the memory-mapped file into messages on the calling thread
+ * while a pool sized to the CPU count decodes and parses them in batches.
+ * Results keep mailbox order.
+ */
+public class MboxImporter {
+
+    private static final int BATCH_SIZE = 512;
+
+    /**
+     * Receives import progress, called from the scanning thread
+     */
+    public interface ProgressListener {
+        void onProgress(int messagesScanned, int transactionsFound);
+    }
+
+    /**
+     * Check if file looks like a mailbox export
+     */
+    public static boolean isSupportedFile(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".mbox") || name.endsWith(".mbx") || name.endsWith(".eml");
+    }
+
+    /**
+     * Parse every transaction email in the file
+     */
+    public static List<Transaction> importFile(File file) throws IOException {
+        return importFile(file, null);
+    }
+
+    /**
+     * Parse every transaction email in the file, reporting progress per batch
+     */
+    public static List<Transaction> importFile(File file, ProgressListener listener) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, TaskExecutors.daemonFactory("mbox-parse"));
+        List<Transaction> transactions = new ArrayList<>();
+        List<ByteBuffer> batch = new ArrayList<>(BATCH_SIZE);
+        // One batch is parsed while the next one is being scanned
+        List<List<Future<List<Transaction>>>> inFlight = new ArrayList<>(1);
+        int[] scanned = {0};
+
+        try {
+            MboxScanner.scan(file.toPath(), message -> {
+                batch.add(message);
+                if (batch.size() == BATCH_SIZE) {
+                    scanned[0] += batch.size();
+                    List<Future<List<Transaction>>> submitted = submitBatch(executor, batch);
+                    batch.clear();
+                    if (!inFlight.isEmpty()) {
+                        collect(inFlight.remove(0), transactions);
+                    }
+                    inFlight.add(submitted);
+                    if (listener != null) {
+                        listener.onProgress(scanned[0], transactions.size());
+                    }
+                }
+            });
+            scanned[0] += batch.size();
+            inFlight.add(submitBatch(executor, batch));
+            for (List<Future<List<Transaction>>> pending : inFlight) {
+                collect(pending, transactions);
+            }
+            if (listener != null) {
+                listener.onProgress(scanned[0], transactions.size());
+            }
+        } catch (CancellationException e) {
+            throw new IOException("Import interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return transactions;
+    }
+
+    private static List<Future<List<Transaction>>> submitBatch(ExecutorService executor, List<ByteBuffer> batch) {
+        List<Future<List<Transaction>>> futures = new ArrayList<>(batch.size());
+        for (ByteBuffer message : batch) {
+            futures.add(executor.submit(() -> parseMessage(message)));
+        }
+        return futures;
+    }
+
+    private static void collect(List<Future<List<Transaction>>> futures, List<Transaction> out) {
+        try {
+            for (Future<List<Transaction>> result : futures) {
+                try {
+                    out.addAll(result.get());
+                } catch (ExecutionException e) {
+                    System.err.println("Error parsing message: " + e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted");
+        }
+    }
+
+    /**
+     * Decode one raw message and run it through the email parser
+     */
+    static List<Transaction> parseMessage(ByteBuffer message) {
+        MimeTextDecoder.DecodedMessage decoded = MimeTextDecoder.decode(message);
+        List<Transaction> transactions = EmailTransactionParser.parseEmailContent(decoded.getText(), decoded.getSubject());
+        for (Transaction txn : transactions) {
+            if ("Email Import".equals(txn.getSource())) {
+                txn.setSource("Mailbox Import");
+            }
+        }
+        return transactions;
+    }
+}
@@ -0,0 +1,128 @@
+package com.expenso.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Splits an mbox file into messages without copying
+ * The file is memory-mapped in large windows and scanned for "From " separator
+ * lines; each message is handed out as a read-only slice of the mapping, which
+ * stays valid after the scan moves on. Files larger than one window are
+ * covered by remapping from the start of the last incomplete message.
+ */
+public final class MboxScanner {
+
+    private static final long WINDOW_SIZE = 512L * 1024 * 1024;
+    private static final byte[] SEPARATOR = {'F', 'r', 'o', 'm', ' '};
+
+    private MboxScanner() {
+    }
+
+    /**
+     * Call consumer once per message, in file order
+     * The slice starts after the "From " separator line.
+     */
+    public static void scan(Path file, Consumer<ByteBuffer> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize == 0) {
+                return;
+            }
+
+            if (!isMbox(channel)) {
+                // A single message (.eml)
+                if (fileSize > Integer.MAX_VALUE) {
+                    throw new IOException("Message larger than 2GB: " + file);
+                }
+                consumer.accept(channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize).asReadOnlyBuffer());
+                return;
+            }
+
+            long windowStart = 0;
+            long window = WINDOW_SIZE;
+
+            while (windowStart < fileSize) {
+                long length = Math.min(window, fileSize - windowStart);
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+                boolean lastWindow = windowStart + length == fileSize;
+                int limit = (int) length;
+
+                // Every window starts on a separator
+                int messageStart = 0;
+                int consumed = 0;
+                while (true) {
+                    int next = findSeparator(map, messageStart + 1, limit);
+                    if (next < 0) {
+                        if (lastWindow) {
+                            emit(map, messageStart, limit, consumer);
+                            consumed = limit;
+                        }
+                        break;
+                    }
+                    emit(map, messageStart, next, consumer);
+                    messageStart = next;
+                    consumed = next;
+                }
+
+                if (lastWindow) {
+                    break;
+                }
+                if (consumed == 0) {
+                    // A single message larger than the window
+                    if (window >= Integer.MAX_VALUE) {
+                        throw new IOException("Message larger than 2GB at offset " + windowStart);
+                    }
+                    window = Math.min(Integer.MAX_VALUE, window * 2);
+                } else {
+                    windowStart += consumed;
+                    window = WINDOW_SIZE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the file starts with an mbox "From " separator
+     */
+    private static boolean isMbox(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(SEPARATOR.length);
+        while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+            // Keep reading until the prefix is filled or EOF
+        }
+        return !head.hasRemaining() && head.flip().equals(ByteBuffer.wrap(SEPARATOR));
+    }
+
+    /**
+     * Offset of the next "From " at the start of a line, or -1
+     */
+    private static int findSeparator(ByteBuffer buf, int from, int limit) {
+        int last = limit - SEPARATOR.length;
+        for (int i = from; i <= last; i++) {
+            if (buf.get(i) == 'F' && (i == 0 || buf.get(i - 1) == '\n')
+                    && buf.get(i + 1) == 'r' && buf.get(i + 2) == 'o'
+                    && buf.get(i + 3) == 'm' && buf.get(i + 4) == ' ') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void emit(ByteBuffer map, int start, int end, Consumer<ByteBuffer> consumer) {
+        // Skip the separator line itself
+        int body = start;
+        while (body < end && map.get(body) != '\n') {
+            body++;
+        }
+        body = Math.min(end, body + 1);
+        if (body < end) {
+            ByteBuffer slice = map.asReadOnlyBuffer();
+            slice.position(body).limit(end);
+            consumer.accept(slice.slice());
+        }
+    }
+}
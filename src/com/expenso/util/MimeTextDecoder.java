@@ -0,0 +1,385 @@
+package com.expenso.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal MIME decoder for raw RFC 822 messages
+ * Pulls out the subject, sender and readable text of a message held in a
+ * ByteBuffer. Parts are decoded lazily: only text/plain and text/html parts
+ * are transfer-decoded, attachments are skipped without touching their bytes,
+ * and for multipart/alternative only the plain text variant is decoded when present.
+ * Works without JavaMail so offline imports run on a bare JRE.
+ */
+public final class MimeTextDecoder {
+
+    private MimeTextDecoder() {
+    }
+
+    /**
+     * Decoded view of one message
+     */
+    public static final class DecodedMessage {
+        private final String subject;
+        private final String from;
+        private final String text;
+
+        DecodedMessage(String subject, String from, String text) {
+            this.subject = subject;
+            this.from = from;
+            this.text = text;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+    /**
+     * Decode a whole message
+     */
+    public static DecodedMessage decode(ByteBuffer message) {
+        ByteBuffer buf = message.duplicate();
+        Map<String, String> headers = readHeaders(buf);
+        StringBuilder text = new StringBuilder();
+        appendText(headers, buf.slice(), text);
+        return new DecodedMessage(
+            decodeWords(headers.getOrDefault("subject", "")),
+            decodeWords(headers.getOrDefault("from", "")),
+            text.toString());
+    }
+
+    /**
+     * Read and unfold the header block, leaving buf positioned at the body
+     * Only the first occurrence of each header is kept.
+     */
+    private static Map<String, String> readHeaders(ByteBuffer buf) {
+        Map<String, String> headers = new HashMap<>();
+        String name = null;
+        StringBuilder value = new StringBuilder();
+
+        while (buf.hasRemaining()) {
+            String line = readLine(buf);
+            if (line.isEmpty()) {
+                break;
+            }
+            if ((line.charAt(0) == ' ' || line.charAt(0) == '\t') && name != null) {
+                value.append(' ').append(line.trim());
+                continue;
+            }
+            if (name != null) {
+                headers.putIfAbsent(name, value.toString());
+            }
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                name = null;
+                continue;
+            }
+            name = line.substring(0, colon).trim().toLowerCase();
+            value.setLength(0);
+            value.append(line.substring(colon + 1).trim());
+        }
+        if (name != null) {
+            headers.putIfAbsent(name, value.toString());
+        }
+        return headers;
+    }
+
+    private static String readLine(ByteBuffer buf) {
+        int start = buf.position();
+        int end = start;
+        int limit = buf.limit();
+        while (end < limit && buf.get(end) != '\n') {
+            end++;
+        }
+        buf.position(Math.min(limit, end + 1));
+        if (end > start && buf.get(end - 1) == '\r') {
+            end--;
+        }
+        return latin1(buf, start, end);
+    }
+
+    private static String latin1(ByteBuffer buf, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buf.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void appendText(Map<String, String> headers, ByteBuffer body, StringBuilder out) {
+        String contentType = headers.getOrDefault("content-type", "text/plain");
+        String mimeType = mimeType(contentType);
+
+        if (mimeType.startsWith("multipart/")) {
+            String boundary = parameter(contentType, "boundary");
+            if (boundary != null) {
+                appendMultipart(mimeType, boundary, body, out);
+            }
+        } else if (mimeType.equals("text/plain") || mimeType.equals("text/html")) {
+            if (isAttachment(headers)) {
+                return;
+            }
+            byte[] bytes = transferDecode(headers.get("content-transfer-encoding"), body);
+            Charset charset = charset(contentType);
+            if (mimeType.equals("text/html")) {
+                try (Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes), charset)) {
+                    HtmlTextExtractor.extract(reader, out);
+                } catch (IOException e) {
+                    // In-memory stream does not throw
+                }
+            } else {
+                out.append(new String(bytes, charset));
+            }
+        }
+    }
+
+    private static void appendMultipart(String mimeType, String boundary, ByteBuffer body, StringBuilder out) {
+        byte[] delimiter = ("--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        int limit = body.limit();
+        int start = findDelimiter(body, delimiter, 0);
+        // multipart/alternative holds one message several ways: plain text wins,
+        // else the first nested multipart, else the first HTML part
+        ByteBuffer nestedFallback = null;
+        Map<String, String> nestedHeaders = null;
+        ByteBuffer htmlFallback = null;
+        Map<String, String> htmlHeaders = null;
+
+        while (start >= 0) {
+            int afterDelimiter = start + delimiter.length;
+            // Closing delimiter "--boundary--"
+            if (afterDelimiter + 1 < limit && body.get(afterDelimiter) == '-' && body.get(afterDelimiter + 1) == '-') {
+                break;
+            }
+            int partStart = afterDelimiter;
+            while (partStart < limit && body.get(partStart) != '\n') {
+                partStart++;
+            }
+            partStart = Math.min(limit, partStart + 1);
+
+            int next = findDelimiter(body, delimiter, partStart);
+            int partEnd = next >= 0 ? next : limit;
+
+            ByteBuffer part = body.duplicate();
+            part.position(partStart).limit(partEnd);
+            part = part.slice();
+            Map<String, String> partHeaders = readHeaders(part);
+            ByteBuffer partBody = part.slice();
+
+            if (mimeType.equals("multipart/alternative")) {
+                String type = mimeType(partHeaders.getOrDefault("content-type", "text/plain"));
+                if (type.equals("text/html") && htmlFallback == null) {
+                    htmlFallback = partBody;
+                    htmlHeaders = partHeaders;
+                } else if (type.equals("text/plain")) {
+                    appendText(partHeaders, partBody, out);
+                    return;
+                } else if (type.startsWith("multipart/") && nestedFallback == null) {
+                    nestedFallback = partBody;
+                    nestedHeaders = partHeaders;
+                }
+            } else {
+                appendText(partHeaders, partBody, out);
+            }
+            start = next;
+        }
+
+        if (nestedFallback != null) {
+            appendText(nestedHeaders, nestedFallback, out);
+        } else if (htmlFallback != null) {
+            appendText(htmlHeaders, htmlFallback, out);
+        }
+    }
+
+    /**
+     * Offset of the next delimiter line at or after from, or -1
+     */
+    private static int findDelimiter(ByteBuffer buf, byte[] delimiter, int from) {
+        int last = buf.limit() - delimiter.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            if (i > 0 && buf.get(i - 1) != '\n') {
+                continue;
+            }
+            for (int j = 0; j < delimiter.length; j++) {
+                if (buf.get(i + j) != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static boolean isAttachment(Map<String, String> headers) {
+        String disposition = headers.get("content-disposition");
+        return disposition != null && disposition.toLowerCase().startsWith("attachment");
+    }
+
+    private static byte[] transferDecode(String encoding, ByteBuffer body) {
+        byte[] raw = new byte[body.remaining()];
+        body.duplicate().get(raw);
+        if (encoding == null) {
+            return raw;
+        }
+        switch (encoding.trim().toLowerCase()) {
+            case "base64":
+                try {
+                    return Base64.getMimeDecoder().decode(raw);
+                } catch (IllegalArgumentException e) {
+                    return raw;
+                }
+            case "quoted-printable":
+                return decodeQuotedPrintable(raw, false);
+            default:
+                return raw;
+        }
+    }
+
+    /**
+     * Decode quoted-printable; in encoded words '_' also stands for a space
+     */
+    private static byte[] decodeQuotedPrintable(byte[] in, boolean encodedWord) {
+        byte[] out = new byte[in.length];
+        int n = 0;
+        for (int i = 0; i < in.length; i++) {
+            byte b = in[i];
+            if (b == '=') {
+                // Soft line break
+                if (i + 1 < in.length && (in[i + 1] == '\n' || in[i + 1] == '\r')) {
+                    i++;
+                    if (in[i] == '\r' && i + 1 < in.length && in[i + 1] == '\n') i++;
+                    continue;
+                }
+                if (i + 2 < in.length) {
+                    int hi = Character.digit(in[i + 1], 16);
+                    int lo = Character.digit(in[i + 2], 16);
+                    if (hi >= 0 && lo >= 0) {
+                        out[n++] = (byte) ((hi << 4) | lo);
+                        i += 2;
+                        continue;
+                    }
+                }
+                out[n++] = b;
+            } else if (encodedWord && b == '_') {
+                out[n++] = ' ';
+            } else {
+                out[n++] = b;
+            }
+        }
+        byte[] result = new byte[n];
+        System.arraycopy(out, 0, result, 0, n);
+        return result;
+    }
+
+    /**
+     * Decode RFC 2047 encoded words such as =?UTF-8?B?...?=
+     */
+    static String decodeWords(String value) {
+        if (!value.contains("=?")) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        int i = 0;
+        boolean lastWasWord = false;
+        while (i < value.length()) {
+            int start = value.indexOf("=?", i);
+            if (start < 0) {
+                out.append(value, i, value.length());
+                break;
+            }
+            int q1 = value.indexOf('?', start + 2);
+            int q2 = q1 < 0 ? -1 : value.indexOf('?', q1 + 1);
+            int end = q2 < 0 ? -1 : value.indexOf("?=", q2 + 1);
+            if (end < 0) {
+                out.append(value, i, value.length());
+                break;
+            }
+
+            String between = value.substring(i, start);
+            // Whitespace between adjacent encoded words is dropped
+            if (!(lastWasWord && between.trim().isEmpty())) {
+                out.append(between);
+            }
+
+            String charsetName = value.substring(start + 2, q1);
+            String encoding = value.substring(q1 + 1, q2);
+            String text = value.substring(q2 + 1, end);
+            try {
+                Charset charset = Charset.forName(charsetName);
+                byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+                byte[] decoded = encoding.equalsIgnoreCase("B")
+                    ? Base64.getDecoder().decode(bytes)
+                    : decodeQuotedPrintable(bytes, true);
+                out.append(new String(decoded, charset));
+            } catch (RuntimeException e) {
+                out.append(value, start, end + 2);
+            }
+            lastWasWord = true;
+            i = end + 2;
+        }
+        return out.toString();
+    }
+
+    private static String mimeType(String contentType) {
+        int semi = contentType.indexOf(';');
+        return (semi >= 0 ? contentType.substring(0, semi) : contentType).trim().toLowerCase();
+    }
+
+    /**
+     * Value of a Content-Type parameter, unquoted
+     */
+    private static String parameter(String contentType, String name) {
+        String lower = contentType.toLowerCase();
+        int idx = 0;
+        while ((idx = lower.indexOf(name, idx)) >= 0) {
+            int eq = idx + name.length();
+            while (eq < lower.length() && lower.charAt(eq) == ' ') eq++;
+            boolean atStart = idx > 0 && (lower.charAt(idx - 1) == ';' || lower.charAt(idx - 1) == ' ');
+            if (atStart && eq < lower.length() && lower.charAt(eq) == '=') {
+                int v = eq + 1;
+                while (v < contentType.length() && contentType.charAt(v) == ' ') v++;
+                if (v < contentType.length() && contentType.charAt(v) == '"') {
+                    int close = contentType.indexOf('"', v + 1);
+                    return contentType.substring(v + 1, close < 0 ? contentType.length() : close);
+                }
+                int end = v;
+                while (end < contentType.length() && contentType.charAt(end) != ';'
+                        && !Character.isWhitespace(contentType.charAt(end))) {
+                    end++;
+                }
+                return contentType.substring(v, end);
+            }
+            idx = eq;
+        }
+        return null;
+    }
+
+    private static Charset charset(String contentType) {
+        String name = parameter(contentType, "charset");
+        if (name != null) {
+            try {
+                return Charset.forName(name);
+            } catch (RuntimeException e) {
+                // Unknown charset
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
@@ -0,0 +1,187 @@
+package com.expenso.util;
+
+import com.expenso.model.Transaction;
+import com.expenso.model.Transaction.TransactionType;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Streaming parser for OFX/QFX statements (1.x SGML and 2.x XML)
+ * Works on the raw bytes with a tag tokenizer instead of an XML parser, since
+ * OFX 1.x leaves leaf elements unclosed. Only the current STMTTRN aggregate
+ * is held in memory.
+ */
+public final class OfxStatementParser {
+
+    private OfxStatementParser() {
+    }
+
+    /**
+     * Fields of the transaction being read
+     */
+    private static final class Pending {
+        String type;
+        String posted;
+        String amount;
+        String fitId;
+        String name;
+        String memo;
+        String checkNum;
+    }
+
+    public static void parse(InputStream input, BankStatementParser.TransactionHandler handler) throws Exception {
+        InputStream in = input instanceof BufferedInputStream ? input : new BufferedInputStream(input, 64 * 1024);
+        ByteArrayOutputStream text = new ByteArrayOutputStream(256);
+        // Header lines and the XML prolog come before any transaction, so the
+        // charset is known before the first value is decoded
+        Charset charset = Charset.forName("windows-1252");
+        StringBuilder tag = new StringBuilder(32);
+        String openTag = null;
+        String account = null;
+        Pending txn = null;
+
+        int b = in.read();
+        while (b != -1) {
+            if (b != '<') {
+                text.write(b);
+                b = in.read();
+                continue;
+            }
+
+            // Text before this tag belongs to the last opened leaf element
+            String value = decode(text, charset);
+            text.reset();
+            if (openTag != null && !value.isEmpty()) {
+                if (txn != null) {
+                    assign(txn, openTag, value);
+                } else if (openTag.equals("ACCTID")) {
+                    account = value;
+                }
+            } else if (openTag == null && value.toUpperCase().contains("UTF-8")) {
+                charset = StandardCharsets.UTF_8;
+            }
+
+            tag.setLength(0);
+            while ((b = in.read()) != -1 && b != '>') {
+                tag.append((char) b);
+            }
+            b = in.read();
+
+            String name = tag.toString().trim();
+            if (name.startsWith("?") || name.startsWith("!")) {
+                // <?xml ...?> and <?OFX ...?> processing instructions
+                if (name.toUpperCase().contains("UTF-8")) {
+                    charset = StandardCharsets.UTF_8;
+                }
+                openTag = null;
+                continue;
+            }
+            int space = name.indexOf(' ');
+            if (space > 0) {
+                name = name.substring(0, space);
+            }
+            name = name.toUpperCase();
+
+            if (name.startsWith("/")) {
+                openTag = null;
+                if (name.equals("/STMTTRN") && txn != null) {
+                    Transaction t = toTransaction(txn, account);
+                    if (t != null) {
+                        handler.handle(t);
+                    }
+                    txn = null;
+                }
+            } else if (name.equals("STMTTRN")) {
+                txn = new Pending();
+                openTag = null;
+            } else {
+                openTag = name;
+            }
+        }
+    }
+
+    private static void assign(Pending txn, String tag, String value) {
+        switch (tag) {
+            case "TRNTYPE": txn.type = value.toUpperCase(); break;
+            case "DTPOSTED": txn.posted = value; break;
+            case "TRNAMT": txn.amount = value; break;
+            case "FITID": txn.fitId = value; break;
+            case "NAME": txn.name = value; break;
+            case "MEMO": txn.memo = value; break;
+            case "CHECKNUM": txn.checkNum = value; break;
+            default: break;
+        }
+    }
+
+    private static Transaction toTransaction(Pending p, String account) {
+        if (p.amount == null || p.posted == null) {
+            return null;
+        }
+        double amount;
+        try {
+            amount = Double.parseDouble(p.amount.replace(",", "").trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Skipping OFX transaction with bad amount: " + p.amount);
+            return null;
+        }
+        if (amount == 0) {
+            return null;
+        }
+
+        String description = p.name != null ? p.name : p.memo != null ? p.memo : "Check " + p.checkNum;
+        boolean debit = amount < 0;
+
+        Transaction txn = new Transaction();
+        txn.setDate(parseDate(p.posted));
+        txn.setDescription(description);
+        txn.setAmount(Math.abs(amount));
+        txn.setType(debit ? typeOf(p.type, description) : TransactionType.CREDIT);
+        txn.setReferenceNumber(p.fitId);
+        txn.setAccount(account);
+        txn.setSource("Bank Statement");
+        return txn;
+    }
+
+    private static TransactionType typeOf(String trnType, String description) {
+        if (trnType != null) {
+            switch (trnType) {
+                case "ATM": return TransactionType.ATM_WITHDRAWAL;
+                case "POS": return TransactionType.CARD_PAYMENT;
+                case "XFER": return TransactionType.BANK_TRANSFER;
+                default: break;
+            }
+        }
+        return BankStatementParser.detectTransactionType(description, true);
+    }
+
+    /**
+     * OFX dates are YYYYMMDD followed by optional time and zone
+     */
+    private static LocalDate parseDate(String value) {
+        try {
+            return LocalDate.of(
+                Integer.parseInt(value.substring(0, 4)),
+                Integer.parseInt(value.substring(4, 6)),
+                Integer.parseInt(value.substring(6, 8)));
+        } catch (RuntimeException e) {
+            return LocalDate.now();
+        }
+    }
+
+    private static String decode(ByteArrayOutputStream text, Charset charset) {
+        if (text.size() == 0) {
+            return "";
+        }
+        String value = new String(text.toByteArray(), charset).trim();
+        if (value.indexOf('&') >= 0) {
+            value = value.replace("&lt;", "<").replace("&gt;", ">")
+                .replace("&quot;", "\"").replace("&apos;", "'").replace("&nbsp;", " ")
+                .replace("&amp;", "&");
+        }
+        return value;
+    }
+}
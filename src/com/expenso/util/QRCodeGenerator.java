@@ -2,76 +2,82 @@ package com.expenso.util;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
- * Simple QR Code generator without external dependencies
- * Generates a basic QR-like pattern for UPI links
+ * QR code images for UPI links, without external dependencies
+ * Symbols come from {@link QrEncoder} and are drawn straight into a packed
+ * 1-bit raster. Recently rendered images are cached, so showing the same
+ * link again costs a map lookup.
  */
 public class QRCodeGenerator {
+    private static final int QUIET_ZONE = 4;
+    private static final int CACHE_SIZE = 32;
+    
+    private static final ThreadLocal<QrEncoder> ENCODERS = ThreadLocal.withInitial(QrEncoder::new);
+    
+    private static final Map<String, BufferedImage> CACHE = new LinkedHashMap<String, BufferedImage>(CACHE_SIZE, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
     
     /**
-     * Generate a simple QR-like image for display
-     * Note: This creates a visual representation. For actual scanning,
-     * users should use the UPI link or a proper QR library.
+     * Scannable QR code for the data, about size pixels square
+     * Images are shared through the cache and must not be drawn on.
      */
     public static BufferedImage generateQRImage(String data, int size) {
-        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2d = image.createGraphics();
-        
-        // Enable anti-aliasing
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        
-        // White background
-        g2d.setColor(Color.WHITE);
-        g2d.fillRect(0, 0, size, size);
-        
-        // Create a pattern based on the data hash
-        g2d.setColor(Color.BLACK);
-        int blockSize = size / 25;
-        
-        // Generate pseudo-random pattern based on data
-        for (int i = 0; i < data.length(); i++) {
-            int charCode = data.charAt(i);
-            int x = (charCode * (i + 1)) % 23;
-            int y = (charCode * (i + 2)) % 23;
-            g2d.fillRect(x * blockSize + blockSize, y * blockSize + blockSize, blockSize, blockSize);
+        String key = size + "\n" + data;
+        synchronized (CACHE) {
+            BufferedImage cached = CACHE.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        BufferedImage image = render(ENCODERS.get().encode(data), size);
+        synchronized (CACHE) {
+            CACHE.put(key, image);
         }
-        
-        // Add corner markers (typical QR code feature)
-        drawCornerMarker(g2d, blockSize, blockSize, blockSize * 3);
-        drawCornerMarker(g2d, size - blockSize * 4, blockSize, blockSize * 3);
-        drawCornerMarker(g2d, blockSize, size - blockSize * 4, blockSize * 3);
-        
-        // Add center marker
-        int center = size / 2;
-        g2d.setColor(Color.BLACK);
-        g2d.fillRect(center - blockSize * 2, center - blockSize * 2, blockSize * 4, blockSize * 4);
-        g2d.setColor(Color.WHITE);
-        g2d.fillRect(center - blockSize, center - blockSize, blockSize * 2, blockSize * 2);
-        
-        // Add border
-        g2d.setColor(Color.BLACK);
-        g2d.setStroke(new BasicStroke(2));
-        g2d.drawRect(0, 0, size - 1, size - 1);
-        
-        g2d.dispose();
         return image;
     }
     
-    private static void drawCornerMarker(Graphics2D g2d, int x, int y, int size) {
-        // Outer square
-        g2d.setColor(Color.BLACK);
-        g2d.fillRect(x, y, size, size);
-        
-        // Inner white square
-        g2d.setColor(Color.WHITE);
-        int innerSize = size / 3;
-        g2d.fillRect(x + innerSize, y + innerSize, innerSize, innerSize);
-        
-        // Center dot
-        g2d.setColor(Color.BLACK);
-        int dotSize = innerSize / 2;
-        g2d.fillRect(x + innerSize + dotSize / 2, y + innerSize + dotSize / 2, dotSize, dotSize);
+    /**
+     * Draw a symbol with a four-module quiet zone, scaled to whole pixels per module
+     * The image is size pixels square, or larger if the symbol needs more.
+     */
+    public static BufferedImage render(QrEncoder.QrCode code, int size) {
+        int modules = code.getSize() + 2 * QUIET_ZONE;
+        int scale = Math.max(1, size / modules);
+        int width = Math.max(size, modules * scale);
+        int offset = (width - code.getSize() * scale) / 2;
+        
+        // Default palette for TYPE_BYTE_BINARY: bit 0 is black, bit 1 is white
+        BufferedImage image = new BufferedImage(width, width, BufferedImage.TYPE_BYTE_BINARY);
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        int stride = (width + 7) / 8;
+        Arrays.fill(pixels, (byte) 0xFF);
+        
+        byte[] row = new byte[stride];
+        for (int y = 0; y < code.getSize(); y++) {
+            Arrays.fill(row, (byte) 0xFF);
+            for (int x = 0; x < code.getSize(); x++) {
+                if (code.isDark(x, y)) {
+                    int from = offset + x * scale;
+                    for (int px = from; px < from + scale; px++) {
+                        row[px >>> 3] &= (byte) ~(0x80 >>> (px & 7));
+                    }
+                }
+            }
+            // Every pixel row of a module row is the same
+            int top = offset + y * scale;
+            for (int py = top; py < top + scale; py++) {
+                System.arraycopy(row, 0, pixels, py * stride, stride);
+            }
+        }
+        return image;
     }
     
     /**
@@ -0,0 +1,130 @@
+package com.expenso.util;
+
+import com.expenso.model.Transaction;
+import com.expenso.model.Transaction.TransactionType;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Streaming parser for Quicken Interchange Format (QIF) statements
+ * Reads one line at a time; each record ends with a "^" line. Only bank,
+ * cash and credit card sections are imported; category, class and
+ * memorized lists are skipped.
+ */
+public final class QifStatementParser {
+
+    private QifStatementParser() {
+    }
+
+    public static void parse(InputStream in, BankStatementParser.TransactionHandler handler) throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        boolean transactions = true;
+        boolean accountList = false;
+        String account = null;
+
+        String date = null, amount = null, payee = null, memo = null, number = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) continue;
+            char code = line.charAt(0);
+            String value = line.substring(1).trim();
+
+            if (code == '!') {
+                String header = value.toLowerCase();
+                if (header.startsWith("account")) {
+                    accountList = true;
+                    transactions = false;
+                } else if (header.startsWith("type:")) {
+                    String type = header.substring(5).trim();
+                    accountList = false;
+                    transactions = type.equals("bank") || type.equals("cash") || type.equals("ccard")
+                        || type.equals("oth a") || type.equals("oth l");
+                } else if (header.startsWith("clear:autoswitch")) {
+                    accountList = false;
+                }
+                continue;
+            }
+
+            if (code == '^') {
+                if (transactions && date != null && amount != null) {
+                    Transaction txn = toTransaction(date, amount, payee, memo, number, account);
+                    if (txn != null) {
+                        handler.handle(txn);
+                    }
+                }
+                date = amount = payee = memo = number = null;
+                continue;
+            }
+
+            if (accountList) {
+                if (code == 'N') account = value;
+                continue;
+            }
+            if (!transactions) continue;
+
+            switch (code) {
+                case 'D': date = value; break;
+                case 'T': amount = value; break;
+                case 'U': if (amount == null) amount = value; break;
+                case 'P': payee = value; break;
+                case 'M': memo = value; break;
+                case 'N': number = value; break;
+                default: break;
+            }
+        }
+    }
+
+    private static Transaction toTransaction(String date, String amountText, String payee, String memo,
+                                             String number, String account) {
+        double amount;
+        try {
+            amount = Double.parseDouble(amountText.replace(",", ""));
+        } catch (NumberFormatException e) {
+            System.err.println("Skipping QIF record with bad amount: " + amountText);
+            return null;
+        }
+        if (amount == 0) {
+            return null;
+        }
+
+        String description = payee != null && !payee.isEmpty() ? payee
+            : memo != null && !memo.isEmpty() ? memo
+            : number != null ? "Check " + number : "QIF transaction";
+        boolean debit = amount < 0;
+
+        Transaction txn = new Transaction();
+        txn.setDate(parseDate(date));
+        txn.setDescription(description);
+        txn.setAmount(Math.abs(amount));
+        txn.setType(debit ? BankStatementParser.detectTransactionType(description, true) : TransactionType.CREDIT);
+        txn.setAccount(account);
+        txn.setSource("Bank Statement");
+        return txn;
+    }
+
+    /**
+     * QIF dates look like 1/15/2024, 01/15'24 or 2024-01-15
+     * Month comes first as in Quicken exports unless the first part cannot be a month.
+     */
+    static LocalDate parseDate(String value) {
+        String[] parts = value.trim().split("[/'.\\-\\s]+");
+        try {
+            if (parts.length == 3) {
+                int a = Integer.parseInt(parts[0]);
+                int b = Integer.parseInt(parts[1]);
+                int c = Integer.parseInt(parts[2]);
+                if (parts[0].length() == 4) {
+                    return LocalDate.of(a, b, c);
+                }
+                int year = c < 100 ? (value.indexOf('\'') >= 0 || c < 70 ? 2000 + c : 1900 + c) : c;
+                return a > 12 ? LocalDate.of(year, b, a) : LocalDate.of(year, a, b);
+            }
+        } catch (RuntimeException e) {
+            // Fall through
+        }
+        return LocalDate.now();
+    }
+}
@@ -0,0 +1,574 @@
+package com.expenso.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * QR code encoder (ISO/IEC 18004) for byte-mode payloads such as UPI links
+ * Picks the smallest version 1-40 that fits, raises the error correction level
+ * while the version stays the same, adds Reed-Solomon codewords and chooses the
+ * mask with the lowest penalty score. An encoder reuses its working buffers
+ * between calls, so it is not thread-safe; keep one per thread.
+ */
+public class QrEncoder {
+
+    /**
+     * Error correction level, in increasing order of redundancy
+     */
+    public enum Ecc {
+        L(1), M(0), Q(3), H(2);
+
+        final int formatBits;
+
+        Ecc(int formatBits) {
+            this.formatBits = formatBits;
+        }
+    }
+
+    private static final int MAX_SIZE = 21 + 4 * 39;
+
+    // Codewords per block and number of blocks, indexed by Ecc ordinal and version
+    private static final int[][] ECC_CODEWORDS_PER_BLOCK = {
+        {-1, 7, 10, 15, 20, 26, 18, 20, 24, 30, 18, 20, 24, 26, 30, 22, 24, 28, 30, 28, 28, 28, 28, 30, 30, 26, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+        {-1, 10, 16, 26, 18, 24, 16, 18, 22, 22, 26, 30, 22, 22, 24, 24, 28, 28, 26, 26, 26, 26, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28},
+        {-1, 13, 22, 18, 26, 18, 24, 18, 22, 20, 24, 28, 26, 24, 20, 30, 24, 28, 28, 26, 30, 28, 30, 30, 30, 30, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+        {-1, 17, 28, 22, 16, 22, 28, 26, 26, 24, 28, 24, 28, 22, 24, 24, 30, 28, 28, 26, 28, 30, 24, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+    };
+    private static final int[][] NUM_ERROR_CORRECTION_BLOCKS = {
+        {-1, 1, 1, 1, 1, 1, 2, 2, 2, 2, 4, 4, 4, 4, 4, 6, 6, 6, 6, 7, 8, 8, 9, 9, 10, 12, 12, 12, 13, 14, 15, 16, 17, 18, 19, 19, 20, 21, 22, 24, 25},
+        {-1, 1, 1, 1, 2, 2, 4, 4, 4, 5, 5, 5, 8, 9, 9, 10, 10, 11, 13, 14, 16, 17, 17, 18, 20, 21, 23, 25, 26, 28, 29, 31, 33, 35, 37, 38, 40, 43, 45, 47, 49},
+        {-1, 1, 1, 2, 2, 4, 4, 6, 6, 8, 8, 8, 10, 12, 16, 12, 17, 16, 18, 21, 20, 23, 23, 25, 27, 29, 34, 34, 35, 38, 40, 43, 45, 48, 51, 53, 56, 59, 62, 65, 68},
+        {-1, 1, 1, 2, 4, 4, 4, 5, 6, 8, 8, 11, 11, 16, 16, 18, 16, 19, 21, 25, 25, 25, 34, 30, 32, 35, 37, 40, 42, 45, 48, 51, 54, 57, 60, 63, 66, 70, 74, 77, 81},
+    };
+
+    // GF(256) with the QR polynomial x^8 + x^4 + x^3 + x^2 + 1
+    private static final int[] EXP = new int[512];
+    private static final int[] LOG = new int[256];
+
+    static {
+        int x = 1;
+        for (int i = 0; i < 255; i++) {
+            EXP[i] = x;
+            LOG[x] = i;
+            x <<= 1;
+            if (x >= 256) {
+                x ^= 0x11D;
+            }
+        }
+        for (int i = 255; i < EXP.length; i++) {
+            EXP[i] = EXP[i - 255];
+        }
+    }
+
+    // All eight masks repeat every 12 modules both ways, so one 12x12 tile each is enough
+    private static final byte[][] MASK_PATTERNS = new byte[8][144];
+
+    static {
+        for (int y = 0; y < 12; y++) {
+            for (int x = 0; x < 12; x++) {
+                boolean[] invert = {
+                    (x + y) % 2 == 0,
+                    y % 2 == 0,
+                    x % 3 == 0,
+                    (x + y) % 3 == 0,
+                    (x / 3 + y / 2) % 2 == 0,
+                    x * y % 2 + x * y % 3 == 0,
+                    (x * y % 2 + x * y % 3) % 2 == 0,
+                    ((x + y) % 2 + x * y % 3) % 2 == 0,
+                };
+                for (int mask = 0; mask < 8; mask++) {
+                    MASK_PATTERNS[mask][y * 12 + x] = (byte) (invert[mask] ? 1 : 0);
+                }
+            }
+        }
+    }
+
+    // Reed-Solomon generator polynomials by degree, built on first use
+    private static final int[][] GENERATORS = new int[31][];
+
+    private static final int LIGHT = 0;
+    private static final int DARK = 1;
+
+    private final Ecc minEcc;
+    private final boolean boostEcc;
+
+    // Working buffers, sized for version 40
+    private final byte[] modules = new byte[MAX_SIZE * MAX_SIZE];
+    // 1 where a data module may go, 0 on function patterns
+    private final byte[] free = new byte[MAX_SIZE * MAX_SIZE];
+    private final byte[] best = new byte[MAX_SIZE * MAX_SIZE];
+    private final byte[] codewords = new byte[3706];
+    private final byte[] interleaved = new byte[3706];
+    private final int[] remainder = new int[30];
+    private final int[] columnColor = new int[MAX_SIZE];
+    private final int[] columnLength = new int[MAX_SIZE];
+    private final int[] columnWindow = new int[MAX_SIZE];
+    private int size;
+
+    /**
+     * Encoder at level M, raised when the payload leaves room
+     */
+    public QrEncoder() {
+        this(Ecc.M, true);
+    }
+
+    /**
+     * @param minEcc Lowest error correction level to use
+     * @param boostEcc Use a higher level when it fits in the same version
+     */
+    public QrEncoder(Ecc minEcc, boolean boostEcc) {
+        this.minEcc = minEcc;
+        this.boostEcc = boostEcc;
+    }
+
+    public QrCode encode(String text) {
+        return encode(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Encode bytes in byte mode
+     * @throws IllegalArgumentException if the data does not fit in version 40
+     */
+    public QrCode encode(byte[] data) {
+        return encode(data, data.length);
+    }
+
+    /**
+     * Encode the first length bytes of a buffer in byte mode, e.g. one reused by UpiLinkBuilder
+     * @throws IllegalArgumentException if the data does not fit in version 40
+     */
+    public QrCode encode(byte[] data, int length) {
+        int version = 0;
+        for (int v = 1; v <= 40; v++) {
+            if (dataBits(length, v) <= getNumDataCodewords(v, minEcc) * 8) {
+                version = v;
+                break;
+            }
+        }
+        if (version == 0) {
+            throw new IllegalArgumentException("Data too long for a QR code: " + length + " bytes");
+        }
+        Ecc ecc = minEcc;
+        if (boostEcc) {
+            for (Ecc higher : Ecc.values()) {
+                if (higher.ordinal() > ecc.ordinal()
+                        && dataBits(length, version) <= getNumDataCodewords(version, higher) * 8) {
+                    ecc = higher;
+                }
+            }
+        }
+
+        int dataCodewords = getNumDataCodewords(version, ecc);
+        writeData(data, length, version, dataCodewords);
+        int total = addEccAndInterleave(version, ecc, dataCodewords);
+
+        size = version * 4 + 17;
+        Arrays.fill(modules, 0, size * size, (byte) LIGHT);
+        Arrays.fill(free, 0, size * size, (byte) 1);
+        drawFunctionPatterns(version);
+        drawCodewords(total);
+
+        int bestMask = -1;
+        int minPenalty = Integer.MAX_VALUE;
+        for (int mask = 0; mask < 8; mask++) {
+            applyMask(mask);
+            drawFormatBits(ecc, mask);
+            int penalty = getPenaltyScore();
+            if (penalty < minPenalty) {
+                minPenalty = penalty;
+                bestMask = mask;
+                System.arraycopy(modules, 0, best, 0, size * size);
+            }
+            applyMask(mask); // XOR again to undo
+        }
+        return new QrCode(version, ecc, bestMask, size, Arrays.copyOf(best, size * size));
+    }
+
+    private static int dataBits(int length, int version) {
+        return 4 + (version < 10 ? 8 : 16) + length * 8;
+    }
+
+    /*---- Data codewords ----*/
+
+    private void writeData(byte[] data, int length, int version, int capacity) {
+        Arrays.fill(codewords, 0, capacity, (byte) 0);
+        int bit = 0;
+        bit = appendBits(0x4, 4, bit);
+        bit = appendBits(length, version < 10 ? 8 : 16, bit);
+        for (int i = 0; i < length; i++) {
+            bit = appendBits(data[i] & 0xFF, 8, bit);
+        }
+        // Terminator of up to four zero bits, then pad to a byte boundary
+        bit = Math.min(bit + 4, capacity * 8);
+        bit = (bit + 7) & ~7;
+        for (int i = bit / 8, pad = 0xEC; i < capacity; i++, pad ^= 0xEC ^ 0x11) {
+            codewords[i] = (byte) pad;
+        }
+    }
+
+    private int appendBits(int value, int length, int bit) {
+        for (int i = length - 1; i >= 0; i--, bit++) {
+            if (((value >>> i) & 1) != 0) {
+                codewords[bit >>> 3] |= (byte) (0x80 >>> (bit & 7));
+            }
+        }
+        return bit;
+    }
+
+    /*---- Error correction ----*/
+
+    /**
+     * Split data into blocks, append each block's ECC and interleave the result
+     */
+    private int addEccAndInterleave(int version, Ecc ecc, int dataCodewords) {
+        int numBlocks = NUM_ERROR_CORRECTION_BLOCKS[ecc.ordinal()][version];
+        int blockEccLen = ECC_CODEWORDS_PER_BLOCK[ecc.ordinal()][version];
+        int rawCodewords = getNumRawDataModules(version) / 8;
+        int numShortBlocks = numBlocks - rawCodewords % numBlocks;
+        int shortBlockLen = rawCodewords / numBlocks;
+        int shortDataLen = shortBlockLen - blockEccLen;
+        int[] generator = generator(blockEccLen);
+
+        // Data codewords: column by column across blocks, long blocks have one extra
+        int out = 0;
+        for (int i = 0; i <= shortDataLen; i++) {
+            for (int b = 0; b < numBlocks; b++) {
+                if (i < shortDataLen || b >= numShortBlocks) {
+                    interleaved[out++] = codewords[blockStart(b, shortDataLen, numShortBlocks) + i];
+                }
+            }
+        }
+        // ECC codewords, computed per block into a strip after the data
+        int eccStart = out;
+        for (int b = 0; b < numBlocks; b++) {
+            int len = shortDataLen + (b < numShortBlocks ? 0 : 1);
+            reedSolomonRemainder(codewords, blockStart(b, shortDataLen, numShortBlocks), len, generator);
+            for (int i = 0; i < blockEccLen; i++) {
+                interleaved[eccStart + i * numBlocks + b] = (byte) remainder[i];
+            }
+        }
+        return eccStart + blockEccLen * numBlocks;
+    }
+
+    private static int blockStart(int block, int shortDataLen, int numShortBlocks) {
+        return block * shortDataLen + Math.max(0, block - numShortBlocks);
+    }
+
+    private static synchronized int[] generator(int degree) {
+        if (GENERATORS[degree] == null) {
+            // Product of (x - 2^i) for i in [0, degree), leading coefficient dropped
+            int[] result = new int[degree];
+            result[degree - 1] = 1;
+            int root = 1;
+            for (int i = 0; i < degree; i++) {
+                for (int j = 0; j < degree; j++) {
+                    result[j] = multiply(result[j], root);
+                    if (j + 1 < degree) {
+                        result[j] ^= result[j + 1];
+                    }
+                }
+                root = multiply(root, 0x02);
+            }
+            GENERATORS[degree] = result;
+        }
+        return GENERATORS[degree];
+    }
+
+    private void reedSolomonRemainder(byte[] data, int offset, int length, int[] generator) {
+        int degree = generator.length;
+        Arrays.fill(remainder, 0, degree, 0);
+        for (int i = 0; i < length; i++) {
+            int factor = (data[offset + i] & 0xFF) ^ remainder[0];
+            System.arraycopy(remainder, 1, remainder, 0, degree - 1);
+            remainder[degree - 1] = 0;
+            if (factor != 0) {
+                int logFactor = LOG[factor];
+                for (int j = 0; j < degree; j++) {
+                    if (generator[j] != 0) {
+                        remainder[j] ^= EXP[LOG[generator[j]] + logFactor];
+                    }
+                }
+            }
+        }
+    }
+
+    private static int multiply(int x, int y) {
+        return x == 0 || y == 0 ? 0 : EXP[LOG[x] + LOG[y]];
+    }
+
+    /*---- Module placement ----*/
+
+    private void drawFunctionPatterns(int version) {
+        for (int i = 0; i < size; i++) {
+            setFunction(6, i, i % 2 == 0);
+            setFunction(i, 6, i % 2 == 0);
+        }
+        drawFinder(3, 3);
+        drawFinder(size - 4, 3);
+        drawFinder(3, size - 4);
+
+        int[] positions = alignmentPositions(version);
+        int n = positions.length;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                // Skip the three corners taken by finder patterns
+                if (!(i == 0 && j == 0 || i == 0 && j == n - 1 || i == n - 1 && j == 0)) {
+                    drawAlignment(positions[i], positions[j]);
+                }
+            }
+        }
+
+        // Reserve the format areas; the real bits are drawn per mask
+        drawFormatBits(Ecc.L, 0);
+        drawVersion(version);
+    }
+
+    private void drawFinder(int cx, int cy) {
+        for (int dy = -4; dy <= 4; dy++) {
+            for (int dx = -4; dx <= 4; dx++) {
+                int x = cx + dx;
+                int y = cy + dy;
+                if (x >= 0 && x < size && y >= 0 && y < size) {
+                    int dist = Math.max(Math.abs(dx), Math.abs(dy));
+                    setFunction(x, y, dist != 2 && dist != 4);
+                }
+            }
+        }
+    }
+
+    private void drawAlignment(int cx, int cy) {
+        for (int dy = -2; dy <= 2; dy++) {
+            for (int dx = -2; dx <= 2; dx++) {
+                setFunction(cx + dx, cy + dy, Math.max(Math.abs(dx), Math.abs(dy)) != 1);
+            }
+        }
+    }
+
+    private void drawFormatBits(Ecc ecc, int mask) {
+        int data = ecc.formatBits << 3 | mask;
+        int rem = data;
+        for (int i = 0; i < 10; i++) {
+            rem = (rem << 1) ^ ((rem >>> 9) * 0x537);
+        }
+        int bits = (data << 10 | rem) ^ 0x5412;
+
+        // Around the top left finder
+        for (int i = 0; i <= 5; i++) {
+            setFunction(8, i, bit(bits, i));
+        }
+        setFunction(8, 7, bit(bits, 6));
+        setFunction(8, 8, bit(bits, 7));
+        setFunction(7, 8, bit(bits, 8));
+        for (int i = 9; i < 15; i++) {
+            setFunction(14 - i, 8, bit(bits, i));
+        }
+        // Split between the other two finders
+        for (int i = 0; i < 8; i++) {
+            setFunction(size - 1 - i, 8, bit(bits, i));
+        }
+        for (int i = 8; i < 15; i++) {
+            setFunction(8, size - 15 + i, bit(bits, i));
+        }
+        setFunction(8, size - 8, true);
+    }
+
+    private void drawVersion(int version) {
+        if (version < 7) {
+            return;
+        }
+        int rem = version;
+        for (int i = 0; i < 12; i++) {
+            rem = (rem << 1) ^ ((rem >>> 11) * 0x1F25);
+        }
+        int bits = version << 12 | rem;
+        for (int i = 0; i < 18; i++) {
+            boolean dark = bit(bits, i);
+            int a = size - 11 + i % 3;
+            int b = i / 3;
+            setFunction(a, b, dark);
+            setFunction(b, a, dark);
+        }
+    }
+
+    /**
+     * Place codewords in the two-column zigzag from the bottom right corner
+     */
+    private void drawCodewords(int count) {
+        int i = 0;
+        int totalBits = count * 8;
+        for (int right = size - 1; right >= 1; right -= 2) {
+            if (right == 6) {
+                right = 5; // Skip the vertical timing pattern
+            }
+            boolean upward = ((right + 1) & 2) == 0;
+            for (int vert = 0; vert < size; vert++) {
+                int y = upward ? size - 1 - vert : vert;
+                for (int j = 0; j < 2; j++) {
+                    int index = y * size + right - j;
+                    if (free[index] != 0 && i < totalBits) {
+                        modules[index] = (byte) ((interleaved[i >>> 3] >>> (7 - (i & 7))) & 1);
+                        i++;
+                    }
+                    // Remainder bits stay light
+                }
+            }
+        }
+    }
+
+    private void applyMask(int mask) {
+        byte[] pattern = MASK_PATTERNS[mask];
+        for (int y = 0; y < size; y++) {
+            int tileRow = (y % 12) * 12;
+            int index = y * size;
+            for (int x = 0; x < size; x++, index++) {
+                modules[index] ^= (byte) (pattern[tileRow + x % 12] & free[index]);
+            }
+        }
+    }
+
+    /*---- Mask penalty ----*/
+
+    /**
+     * Penalty rules in one row-major pass: runs of five or more same-colored
+     * modules, 2x2 blocks, finder-like 1:1:3:1:1 patterns with four light modules
+     * on one side, and the dark/light balance. Columns are tracked in arrays so
+     * the matrix is never walked down a column.
+     */
+    private int getPenaltyScore() {
+        int penalty = 0;
+        int dark = 0;
+        Arrays.fill(columnColor, 0, size, -1);
+        Arrays.fill(columnWindow, 0, size, 0);
+        for (int y = 0; y < size; y++) {
+            int row = y * size;
+            int runColor = -1;
+            int runLength = 0;
+            int window = 0; // Last 11 modules of the row, newest in bit 0
+            for (int x = 0; x < size; x++) {
+                int color = modules[row + x];
+                dark += color;
+
+                if (color == runColor) {
+                    runLength++;
+                } else {
+                    if (runLength >= 5) penalty += runLength - 2;
+                    runColor = color;
+                    runLength = 1;
+                }
+                window = ((window << 1) | color) & 0x7FF;
+                if (x >= 10 && (window == 0x5D0 || window == 0x05D)) penalty += 40;
+
+                if (color == columnColor[x]) {
+                    columnLength[x]++;
+                } else {
+                    if (columnLength[x] >= 5) penalty += columnLength[x] - 2;
+                    columnColor[x] = color;
+                    columnLength[x] = 1;
+                }
+                int column = ((columnWindow[x] << 1) | color) & 0x7FF;
+                columnWindow[x] = column;
+                if (y >= 10 && (column == 0x5D0 || column == 0x05D)) penalty += 40;
+
+                if (x > 0 && y > 0 && color == modules[row + x - 1]
+                        && color == modules[row - size + x] && color == modules[row - size + x - 1]) {
+                    penalty += 3;
+                }
+            }
+            if (runLength >= 5) penalty += runLength - 2;
+        }
+        for (int x = 0; x < size; x++) {
+            if (columnLength[x] >= 5) penalty += columnLength[x] - 2;
+        }
+
+        // 10 points for every 5% the dark share is away from 50%
+        int total = size * size;
+        int k = (Math.abs(dark * 20 - total * 10) + total - 1) / total - 1;
+        return penalty + k * 10;
+    }
+
+    /*---- Capacity ----*/
+
+    private static int[] alignmentPositions(int version) {
+        if (version == 1) {
+            return new int[0];
+        }
+        int numAlign = version / 7 + 2;
+        int step = (version * 8 + numAlign * 3 + 5) / (numAlign * 4 - 4) * 2;
+        int[] result = new int[numAlign];
+        result[0] = 6;
+        for (int i = numAlign - 1, pos = version * 4 + 10; i >= 1; i--, pos -= step) {
+            result[i] = pos;
+        }
+        return result;
+    }
+
+    /**
+     * Modules left for data and ECC once function patterns are placed
+     */
+    private static int getNumRawDataModules(int version) {
+        int result = (16 * version + 128) * version + 64;
+        if (version >= 2) {
+            int numAlign = version / 7 + 2;
+            result -= (25 * numAlign - 10) * numAlign - 55;
+            if (version >= 7) {
+                result -= 36;
+            }
+        }
+        return result;
+    }
+
+    private static int getNumDataCodewords(int version, Ecc ecc) {
+        return getNumRawDataModules(version) / 8
+            - ECC_CODEWORDS_PER_BLOCK[ecc.ordinal()][version] * NUM_ERROR_CORRECTION_BLOCKS[ecc.ordinal()][version];
+    }
+
+    private void setFunction(int x, int y, boolean dark) {
+        int index = y * size + x;
+        modules[index] = (byte) (dark ? DARK : LIGHT);
+        free[index] = 0;
+    }
+
+    private static boolean bit(int value, int i) {
+        return ((value >>> i) & 1) != 0;
+    }
+
+    /**
+     * An encoded symbol; modules are stored row by row, 1 for dark
+     */
+    public static final class QrCode {
+        private final int version;
+        private final Ecc ecc;
+        private final int mask;
+        private final int size;
+        private final byte[] modules;
+
+        QrCode(int version, Ecc ecc, int mask, int size, byte[] modules) {
+            this.version = version;
+            this.ecc = ecc;
+            this.mask = mask;
+            this.size = size;
+            this.modules = modules;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public Ecc getEcc() {
+            return ecc;
+        }
+
+        public int getMask() {
+            return mask;
+        }
+
+        /** Width and height in modules, without the quiet zone */
+        public int getSize() {
+            return size;
+        }
+
+        public boolean isDark(int x, int y) {
+            return x >= 0 && x < size && y >= 0 && y < size && modules[y * size + x] != 0;
+        }
+    }
+}
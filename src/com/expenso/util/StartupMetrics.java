@@ -0,0 +1,126 @@
+package com.expenso.util;
+
+import com.expenso.data.DataManager;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times how long the window takes to appear and keeps a history in startup.log
+ * Times are counted from the start of the JVM, so its boot and class loading are
+ * included: the first paint of the window, when the skeleton shows, and the
+ * first paint with the expenses in it. Time spent in the sign-in dialog is left
+ * out of both and logged on its own, as it depends on the user's typing. Each
+ * start adds a line to startup.log in the Expenso directory, so the effect of a
+ * change such as the AppCDS archive can be compared run by run. Only the first
+ * window of a process is recorded.
+ */
+public final class StartupMetrics {
+    private static final String LOG_FILE = "startup.log";
+    private static final String HEADER = "time,java,jvm_ms,first_paint_ms,data_shown_ms,expenses,sign_in_ms";
+    private static final int MAX_ENTRIES = 200;
+
+    // Wall-clock millis; 0 until reached
+    private static long mainStarted;
+    private static long firstPaint;
+    private static long signInStarted;
+    private static long signInMillis;
+    private static boolean recorded;
+
+    private StartupMetrics() {
+    }
+
+    /**
+     * Call first thing in main(), before any window classes load
+     */
+    public static synchronized void started() {
+        mainStarted = System.currentTimeMillis();
+    }
+
+    /**
+     * The sign-in dialog is about to open
+     */
+    public static synchronized void signInStarted() {
+        signInStarted = System.currentTimeMillis();
+    }
+
+    /**
+     * The sign-in dialog closed; the time it was open is not counted as startup
+     */
+    public static synchronized void signInFinished() {
+        if (signInStarted != 0) {
+            signInMillis += System.currentTimeMillis() - signInStarted;
+            signInStarted = 0;
+        }
+    }
+
+    /**
+     * The window painted for the first time
+     */
+    public static synchronized void firstPaint() {
+        if (mainStarted != 0 && firstPaint == 0) {
+            firstPaint = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * The window painted with the expenses in it; records the startup once
+     */
+    public static synchronized void dataShown(int expenses) {
+        if (mainStarted == 0 || firstPaint == 0 || recorded) {
+            return;
+        }
+        recorded = true;
+        long now = System.currentTimeMillis();
+        // Asked only now so the management classes do not load during startup
+        long origin = ManagementFactory.getRuntimeMXBean().getStartTime();
+        if (origin <= 0 || origin > mainStarted) {
+            origin = mainStarted;
+        }
+        long jvm = mainStarted - origin;
+        long paint = firstPaint - origin - signInMillis;
+        long data = now - origin - signInMillis;
+        System.out.println("Startup: first paint " + paint + " ms, data shown " + data
+            + " ms (" + expenses + " expenses, JVM " + jvm + " ms"
+            + (signInMillis > 0 ? ", sign-in " + signInMillis + " ms not counted)" : ")"));
+        append(String.join(",",
+            LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).toString(),
+            System.getProperty("java.version"),
+            String.valueOf(jvm),
+            String.valueOf(paint),
+            String.valueOf(data),
+            String.valueOf(expenses),
+            String.valueOf(signInMillis)));
+    }
+
+    /**
+     * Add a line to the log, keeping the last MAX_ENTRIES starts
+     */
+    private static void append(String line) {
+        File file = new File(DataManager.getRootDirectory(), LOG_FILE);
+        try {
+            List<String> lines = new ArrayList<>();
+            if (file.exists()) {
+                lines.addAll(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+            }
+            // Also replaces the header of an older version, which had fewer columns
+            if (!lines.isEmpty() && lines.get(0).startsWith("time,")) {
+                lines.set(0, HEADER);
+            } else {
+                lines.add(0, HEADER);
+            }
+            lines.add(line);
+            if (lines.size() > MAX_ENTRIES + 1) {
+                lines.subList(1, lines.size() - MAX_ENTRIES).clear();
+            }
+            Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Error saving startup time: " + e.getMessage());
+        }
+    }
+}
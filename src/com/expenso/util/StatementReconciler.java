@@ -0,0 +1,298 @@
+package com.expenso.util;
+
+import com.expenso.model.Transaction;
+import com.expenso.model.Transaction.TransactionType;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks the running balance of a statement while it is being parsed
+ * Fed transactions in statement order, it verifies that each balance equals
+ * the previous one plus or minus the amount, which exposes dropped, repeated
+ * or mistyped rows. Only the previous row is remembered, so memory does not
+ * grow with the statement. Works for oldest-first and newest-first exports;
+ * the order is inferred from the first unambiguous pair of rows.
+ */
+public class StatementReconciler implements BankStatementParser.TransactionHandler {
+    private static final int MAX_ISSUES = 50;
+
+    public enum Order { UNKNOWN, OLDEST_FIRST, NEWEST_FIRST }
+
+    /**
+     * A place where the running balance does not add up
+     */
+    public static final class Issue {
+        private final long row;
+        private final LocalDate date;
+        private final String description;
+        private final long expectedPaise;
+        private final long actualPaise;
+
+        Issue(long row, LocalDate date, String description, long expectedPaise, long actualPaise) {
+            this.row = row;
+            this.date = date;
+            this.description = description;
+            this.expectedPaise = expectedPaise;
+            this.actualPaise = actualPaise;
+        }
+
+        /** 1-based position among the statement's transactions */
+        public long getRow() {
+            return row;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public double getExpected() {
+            return expectedPaise / 100.0;
+        }
+
+        public double getActual() {
+            return actualPaise / 100.0;
+        }
+
+        /** Amount unaccounted for, e.g. the total of missing rows */
+        public double getDifference() {
+            return (actualPaise - expectedPaise) / 100.0;
+        }
+
+        public String toString() {
+            return String.format("Row %d (%s, %s): balance ₹%.2f, expected ₹%.2f, off by ₹%.2f",
+                row, date, description, getActual(), getExpected(), getDifference());
+        }
+    }
+
+    private final BankStatementParser.TransactionHandler next;
+
+    private Order order = Order.UNKNOWN;
+    private long rows;
+    private long checked;
+    private long mismatches;
+    private final List<Issue> issues = new ArrayList<>();
+    // Pairs that could not be checked before the order was known
+    private long pendingMismatches;
+
+    private boolean hasPrevious;
+    private long previousBalance;
+    private long previousDelta;
+    private LocalDate previousDate;
+
+    private boolean hasBalances;
+    private long firstBalance, firstDelta, lastBalance, lastDelta;
+    private LocalDate from, to;
+    private String account;
+
+    public StatementReconciler() {
+        this(null);
+    }
+
+    /**
+     * Reconcile transactions on their way to another handler
+     */
+    public StatementReconciler(BankStatementParser.TransactionHandler next) {
+        this.next = next;
+    }
+
+    @Override
+    public void handle(Transaction txn) throws Exception {
+        accept(txn);
+        if (next != null) {
+            next.handle(txn);
+        }
+    }
+
+    /**
+     * Check the next transaction in statement order
+     */
+    public synchronized void accept(Transaction txn) {
+        rows++;
+        if (account == null) {
+            account = txn.getAccount();
+        }
+        LocalDate date = txn.getDate();
+        if (date != null) {
+            if (from == null || date.isBefore(from)) from = date;
+            if (to == null || date.isAfter(to)) to = date;
+        }
+        Double balanceValue = txn.getBalance();
+        if (balanceValue == null) {
+            // Nothing to compare against, the chain restarts at the next balance
+            hasPrevious = false;
+            return;
+        }
+
+        long balance = Math.round(balanceValue * 100);
+        long delta = Math.round(txn.getAmount() * 100) * (isCredit(txn) ? 1 : -1);
+
+        if (!hasBalances) {
+            hasBalances = true;
+            firstBalance = balance;
+            firstDelta = delta;
+        }
+        lastBalance = balance;
+        lastDelta = delta;
+
+        if (hasPrevious) {
+            checked++;
+            boolean forward = previousBalance + delta == balance;
+            boolean backward = balance + previousDelta == previousBalance;
+
+            if (order == Order.UNKNOWN) {
+                if (forward != backward) {
+                    order = forward ? Order.OLDEST_FIRST : Order.NEWEST_FIRST;
+                } else if (!forward) {
+                    // Broken before the order is known; fall back to the dates
+                    if (previousDate != null && date != null && !date.equals(previousDate)) {
+                        order = date.isAfter(previousDate) ? Order.OLDEST_FIRST : Order.NEWEST_FIRST;
+                    } else {
+                        pendingMismatches++;
+                    }
+                }
+            }
+
+            if (order == Order.OLDEST_FIRST && !forward) {
+                flag(txn, previousBalance + delta, balance);
+            } else if (order == Order.NEWEST_FIRST && !backward) {
+                flag(txn, previousBalance - previousDelta, balance);
+            }
+        }
+
+        hasPrevious = true;
+        previousBalance = balance;
+        previousDelta = delta;
+        previousDate = date;
+    }
+
+    /**
+     * Forget the previous row, e.g. when a resumed import skips ahead
+     */
+    public synchronized void restart() {
+        hasPrevious = false;
+    }
+
+    private void flag(Transaction txn, long expected, long actual) {
+        mismatches++;
+        if (issues.size() < MAX_ISSUES) {
+            issues.add(new Issue(rows, txn.getDate(), txn.getDescription(), expected, actual));
+        }
+    }
+
+    private static boolean isCredit(Transaction txn) {
+        return txn.getType() == TransactionType.CREDIT || txn.getType() == TransactionType.UPI_RECEIVED;
+    }
+
+    public synchronized Result getResult() {
+        long opening, closing;
+        if (order == Order.NEWEST_FIRST) {
+            opening = lastBalance - lastDelta;
+            closing = firstBalance;
+        } else {
+            opening = firstBalance - firstDelta;
+            closing = lastBalance;
+        }
+        return new Result(account, order, rows, checked, mismatches + pendingMismatches,
+            new ArrayList<>(issues), hasBalances, from, to, opening, closing);
+    }
+
+    /**
+     * Outcome of a reconciliation
+     */
+    public static final class Result {
+        private final String account;
+        private final Order order;
+        private final long rows;
+        private final long checked;
+        private final long mismatches;
+        private final List<Issue> issues;
+        private final boolean hasBalances;
+        private final LocalDate from;
+        private final LocalDate to;
+        private final long openingPaise;
+        private final long closingPaise;
+
+        Result(String account, Order order, long rows, long checked, long mismatches, List<Issue> issues,
+               boolean hasBalances, LocalDate from, LocalDate to, long openingPaise, long closingPaise) {
+            this.account = account;
+            this.order = order;
+            this.rows = rows;
+            this.checked = checked;
+            this.mismatches = mismatches;
+            this.issues = Collections.unmodifiableList(issues);
+            this.hasBalances = hasBalances;
+            this.from = from;
+            this.to = to;
+            this.openingPaise = openingPaise;
+            this.closingPaise = closingPaise;
+        }
+
+        /** Account number from the statement, or null (CSV exports have none) */
+        public String getAccount() {
+            return account;
+        }
+
+        public Order getOrder() {
+            return order;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        /** Pairs of consecutive rows whose balances were compared */
+        public long getChecked() {
+            return checked;
+        }
+
+        public long getMismatches() {
+            return mismatches;
+        }
+
+        /** The first mismatches found, at most 50 */
+        public List<Issue> getIssues() {
+            return issues;
+        }
+
+        /** Whether the statement carried a balance column at all */
+        public boolean hasBalances() {
+            return hasBalances;
+        }
+
+        public boolean isConsistent() {
+            return mismatches == 0;
+        }
+
+        public LocalDate getFrom() {
+            return from;
+        }
+
+        public LocalDate getTo() {
+            return to;
+        }
+
+        /** Balance before the first transaction */
+        public double getOpeningBalance() {
+            return openingPaise / 100.0;
+        }
+
+        /** Balance after the last transaction */
+        public double getClosingBalance() {
+            return closingPaise / 100.0;
+        }
+
+        public String toString() {
+            if (!hasBalances) {
+                return String.format("%d rows, %s to %s, no balances to reconcile", rows, from, to);
+            }
+            return String.format("%d rows, %d balance checks, %d mismatches; %s to %s, ₹%.2f → ₹%.2f",
+                rows, checked, mismatches, from, to, getOpeningBalance(), getClosingBalance());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.expenso.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for blocking I/O work
+ * Uses a virtual-thread-per-task executor when the running JDK provides one (21+),
+ * otherwise falls back to a cached pool of daemon platform threads.
+ * Callers bound their own concurrency (e.g. with a Semaphore).
+ */
+public final class TaskExecutors {
+
+    private TaskExecutors() {
+    }
+
+    /**
+     * Create an executor that starts a new (virtual if possible) thread per task
+     */
+    public static ExecutorService newPerTaskExecutor(String namePrefix) {
+        try {
+            Object executor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return (ExecutorService) executor;
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(daemonFactory(namePrefix));
+        }
+    }
+
+    /**
+     * Whether tasks run on virtual threads in this JVM
+     */
+    public static boolean virtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Thread factory producing named daemon threads
+     */
+    public static ThreadFactory daemonFactory(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, namePrefix + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,222 @@
+package com.expenso.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds UPI deep links (upi://pay?pa=...&am=...) into a reusable byte buffer
+ * Values are percent-encoded as UTF-8 per RFC 3986, so names and notes with
+ * '&', '=', '#', '+' or non-ASCII text cannot break the link, and amounts are
+ * written from paise without going through floating point formatting. The
+ * finished link is ASCII and can go straight to QrEncoder.encode(byte[], int).
+ * A builder is meant to be reused for many links, so it is not thread-safe.
+ */
+public final class UpiLinkBuilder implements CharSequence {
+    private static final byte[] SCHEME = "upi://pay".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    // RFC 3986 unreserved characters pass through; '@' is also legal in a query and keeps VPAs readable
+    private static final boolean[] SAFE = new boolean[128];
+
+    static {
+        for (char c = 'A'; c <= 'Z'; c++) SAFE[c] = true;
+        for (char c = 'a'; c <= 'z'; c++) SAFE[c] = true;
+        for (char c = '0'; c <= '9'; c++) SAFE[c] = true;
+        SAFE['-'] = SAFE['.'] = SAFE['_'] = SAFE['~'] = SAFE['@'] = true;
+    }
+
+    private byte[] buffer = new byte[256];
+    private int length;
+    private boolean hasParams;
+
+    public UpiLinkBuilder() {
+        reset();
+    }
+
+    /**
+     * Start a new link, keeping the buffer
+     */
+    public UpiLinkBuilder reset() {
+        length = 0;
+        hasParams = false;
+        appendRaw(SCHEME);
+        return this;
+    }
+
+    /** Payee VPA, e.g. name@okhdfc */
+    public UpiLinkBuilder payee(CharSequence upiId) {
+        return param("pa", upiId);
+    }
+
+    /** Payee name */
+    public UpiLinkBuilder name(CharSequence payeeName) {
+        return param("pn", payeeName);
+    }
+
+    /** Merchant category code */
+    public UpiLinkBuilder merchantCode(CharSequence mc) {
+        return param("mc", mc);
+    }
+
+    /** Transaction id from the payee's system */
+    public UpiLinkBuilder transactionId(CharSequence tid) {
+        return param("tid", tid);
+    }
+
+    /** Transaction reference, e.g. an order or invoice number, echoed back by the bank */
+    public UpiLinkBuilder transactionRef(CharSequence tr) {
+        return param("tr", tr);
+    }
+
+    /** Note shown to the payer */
+    public UpiLinkBuilder note(CharSequence tn) {
+        return param("tn", tn);
+    }
+
+    /**
+     * Amount in paise, written as rupees with two decimals
+     */
+    public UpiLinkBuilder amountPaise(long paise) {
+        if (paise < 0) {
+            throw new IllegalArgumentException("Negative UPI amount: " + paise);
+        }
+        startParam("am");
+        appendDigits(paise / 100);
+        ensureCapacity(3);
+        int fraction = (int) (paise % 100);
+        buffer[length++] = '.';
+        buffer[length++] = (byte) ('0' + fraction / 10);
+        buffer[length++] = (byte) ('0' + fraction % 10);
+        return this;
+    }
+
+    /**
+     * Amount in rupees, rounded to the paisa
+     */
+    public UpiLinkBuilder amount(double rupees) {
+        return amountPaise(Math.round(rupees * 100));
+    }
+
+    /** Currency, INR for UPI */
+    public UpiLinkBuilder currency(CharSequence cu) {
+        return param("cu", cu);
+    }
+
+    /** Link to details of the transaction, e.g. the invoice */
+    public UpiLinkBuilder url(CharSequence url) {
+        return param("url", url);
+    }
+
+    /**
+     * Append any parameter; skipped when the value is null or empty
+     */
+    public UpiLinkBuilder param(String key, CharSequence value) {
+        if (value == null || value.length() == 0) {
+            return this;
+        }
+        startParam(key);
+        appendEncoded(value);
+        return this;
+    }
+
+    private void startParam(String key) {
+        ensureCapacity(key.length() + 2);
+        buffer[length++] = (byte) (hasParams ? '&' : '?');
+        for (int i = 0; i < key.length(); i++) {
+            buffer[length++] = (byte) key.charAt(i);
+        }
+        buffer[length++] = '=';
+        hasParams = true;
+    }
+
+    private void appendEncoded(CharSequence value) {
+        int n = value.length();
+        // Worst case is 4 UTF-8 bytes per code point at 3 characters each
+        ensureCapacity(n * 9);
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (SAFE[c]) {
+                    buffer[length++] = (byte) c;
+                } else {
+                    appendEscaped(c);
+                }
+            } else if (c < 0x800) {
+                appendEscaped(0xC0 | c >> 6);
+                appendEscaped(0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                appendEscaped(0xF0 | cp >> 18);
+                appendEscaped(0x80 | cp >> 12 & 0x3F);
+                appendEscaped(0x80 | cp >> 6 & 0x3F);
+                appendEscaped(0x80 | cp & 0x3F);
+            } else {
+                // A lone surrogate is not valid UTF-16, send U+FFFD in its place
+                int cp = Character.isSurrogate(c) ? 0xFFFD : c;
+                appendEscaped(0xE0 | cp >> 12);
+                appendEscaped(0x80 | cp >> 6 & 0x3F);
+                appendEscaped(0x80 | cp & 0x3F);
+            }
+        }
+    }
+
+    private void appendEscaped(int b) {
+        buffer[length++] = '%';
+        buffer[length++] = HEX[b >> 4 & 0xF];
+        buffer[length++] = HEX[b & 0xF];
+    }
+
+    private void appendDigits(long value) {
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void appendRaw(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    /**
+     * The link so far as ASCII bytes; valid up to length() until the builder is next changed
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + length);
+        }
+        return (char) buffer[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,254 @@
+package com.expenso.util;
+
+import com.expenso.model.UpiPayment;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Headless batch generation of UPI collection QR codes, e.g. for a month-end invoice run
+ * Reads payees from CSV, encodes their links on one worker per core and writes a
+ * PNG per payee plus a manifest.csv mapping files to links. Each worker keeps its
+ * own link builder, QR encoder and PNG writer for the whole run.
+ *
+ * Usage: java -cp bin com.expenso.util.UpiQrBatch payees.csv output-folder [size]
+ */
+public final class UpiQrBatch {
+    private static final int DEFAULT_SIZE = 300;
+    private static final String MANIFEST = "manifest.csv";
+
+    private UpiQrBatch() {
+    }
+
+    /**
+     * Outcome of a batch run
+     */
+    public static final class Result {
+        private final int generated;
+        private final int failed;
+        private final long elapsedNanos;
+
+        Result(int generated, int failed, long elapsedNanos) {
+            this.generated = generated;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getGenerated() {
+            return generated;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getCodesPerSecond() {
+            return elapsedNanos > 0 ? generated * 1e9 / elapsedNanos : 0;
+        }
+
+        public String toString() {
+            return String.format("Generated %d QR codes in %.2f s (%.0f codes/sec)%s", generated,
+                elapsedNanos / 1e9, getCodesPerSecond(), failed > 0 ? ", " + failed + " failed" : "");
+        }
+    }
+
+    /**
+     * Read payees from CSV with UPI ID, name, amount and an optional note
+     * Columns are found by header name (upi/vpa, name/payee, amount, note/remarks/invoice);
+     * without a recognisable header they are taken in that order.
+     */
+    public static List<UpiPayment> readPayees(File csv) throws IOException {
+        List<UpiPayment> payments = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(csv), StandardCharsets.UTF_8))) {
+            int upiCol = 0, nameCol = 1, amountCol = 2, noteCol = 3;
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.trim().isEmpty()) continue;
+                String[] columns = BankStatementParser.parseCSVLine(line);
+
+                if (lineNo == 1 && isHeader(columns)) {
+                    upiCol = nameCol = amountCol = noteCol = -1;
+                    for (int i = 0; i < columns.length; i++) {
+                        String column = columns[i].toLowerCase().trim();
+                        if (upiCol < 0 && (column.contains("upi") || column.contains("vpa"))) {
+                            upiCol = i;
+                        } else if (nameCol < 0 && (column.contains("name") || column.contains("payee"))) {
+                            nameCol = i;
+                        } else if (amountCol < 0 && column.contains("amount")) {
+                            amountCol = i;
+                        } else if (noteCol < 0 && (column.contains("note") || column.contains("remark")
+                                || column.contains("invoice") || column.contains("description"))) {
+                            noteCol = i;
+                        }
+                    }
+                    if (upiCol < 0 || amountCol < 0) {
+                        throw new IOException("CSV header needs UPI ID and amount columns");
+                    }
+                    continue;
+                }
+
+                String upiId = field(columns, upiCol);
+                double amount = BankStatementParser.parseAmount(field(columns, amountCol));
+                if (!upiId.contains("@") || amount <= 0) {
+                    System.err.println("Skipping payee on line " + lineNo + ": " + line);
+                    continue;
+                }
+                String name = field(columns, nameCol);
+                payments.add(new UpiPayment(upiId, name.isEmpty() ? upiId : name, amount, field(columns, noteCol)));
+            }
+        }
+        return payments;
+    }
+
+    private static boolean isHeader(String[] columns) {
+        for (String column : columns) {
+            if (column.contains("@")) return false;
+        }
+        return true;
+    }
+
+    private static String field(String[] columns, int index) {
+        return index >= 0 && index < columns.length ? columns[index].trim() : "";
+    }
+
+    /**
+     * Write a QR code PNG for every payment into the folder, using all cores
+     */
+    public static Result generate(List<UpiPayment> payments, File outputDir, int size)
+            throws IOException, InterruptedException {
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Cannot create " + outputDir);
+        }
+        String[] links = new String[payments.size()];
+        String[] files = new String[payments.size()];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), payments.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, TaskExecutors.daemonFactory("upi-qr"));
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> workers = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                workers.add(pool.submit(() -> {
+                    QrEncoder encoder = new QrEncoder();
+                    UpiLinkBuilder link = new UpiLinkBuilder();
+                    ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+                    try {
+                        // Payments are claimed one at a time so slow ones don't hold up a whole slice
+                        int i;
+                        while ((i = next.getAndIncrement()) < payments.size()) {
+                            UpiPayment payment = payments.get(i);
+                            String name = fileName(i, payment);
+                            try {
+                                payment.writeUpiLink(link);
+                                BufferedImage image = QRCodeGenerator.render(
+                                    encoder.encode(link.getBuffer(), link.length()), size);
+                                links[i] = link.toString();
+                                // An image stream over a file overwrites in place without truncating
+                                File target = new File(outputDir, name);
+                                Files.deleteIfExists(target.toPath());
+                                try (ImageOutputStream out = ImageIO.createImageOutputStream(target)) {
+                                    writer.setOutput(out);
+                                    writer.write(image);
+                                } finally {
+                                    writer.setOutput(null);
+                                }
+                                files[i] = name;
+                            } catch (IOException | RuntimeException e) {
+                                failed.incrementAndGet();
+                                System.err.println("Error generating QR for " + payment.getPayeeUpiId() + ": " + e.getMessage());
+                            }
+                        }
+                    } finally {
+                        writer.dispose();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("QR worker failed", e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        writeManifest(new File(outputDir, MANIFEST), payments, files, links);
+        return new Result(payments.size() - failed.get(), failed.get(), elapsed);
+    }
+
+    private static void writeManifest(File file, List<UpiPayment> payments, String[] files, String[] links)
+            throws IOException {
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.println("File,UPI ID,Name,Amount,Note,Link");
+            for (int i = 0; i < payments.size(); i++) {
+                if (files[i] == null) continue;
+                UpiPayment p = payments.get(i);
+                out.println(String.join(",", files[i], csv(p.getPayeeUpiId()), csv(p.getPayeeName()),
+                    String.format("%.2f", p.getAmount()), csv(p.getNote()), csv(links[i])));
+            }
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null) return "";
+        return value.contains(",") || value.contains("\"") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+
+    /**
+     * Numbered so files keep the CSV order, e.g. 0007_Ravi_Kumar.png
+     */
+    private static String fileName(int index, UpiPayment payment) {
+        String name = payment.getPayeeName().replaceAll("[^A-Za-z0-9._-]+", "_");
+        if (name.length() > 40) {
+            name = name.substring(0, 40);
+        }
+        return String.format("%04d_%s.png", index + 1, name);
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length < 2) {
+            System.err.println("Usage: UpiQrBatch <payees.csv> <output-folder> [size]");
+            System.exit(2);
+        }
+        try {
+            List<UpiPayment> payments = readPayees(new File(args[0]));
+            int size = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SIZE;
+            Result result = generate(payments, new File(args[1]), size);
+            System.out.println(result);
+            System.exit(result.getFailed() > 0 ? 1 : 0);
+        } catch (Exception e) {
+            System.err.println("Error generating QR codes: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
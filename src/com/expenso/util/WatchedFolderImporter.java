@@ -0,0 +1,301 @@
+package com.expenso.util;
+
+import com.expenso.data.DataManager;
+import com.expenso.data.DuplicateDetector;
+import com.expenso.data.StatementHistory;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports bank statements dropped into a folder
+ * A WatchService reports new and modified files, so the folder is never
+ * polled. Each file is debounced until it has been quiet for a few seconds
+ * with an unchanged size (it may still be copying), then imported as an
+ * {@link ImportJob} with duplicate detection. Files are processed one at a
+ * time in arrival order; imported files are remembered by size and
+ * modification time so restarts only pick up new or changed statements.
+ */
+public class WatchedFolderImporter {
+    private static final String STATE_FILE = "watched-imports.properties";
+    private static final long QUIET_PERIOD_MS = 2_000;
+    private static final String FOLDER_KEY = "watch.folder";
+
+    /**
+     * Receives per-file results, called from the import thread
+     */
+    public interface Listener {
+        /** @param warnings Balance gaps or overlaps with earlier statements, empty if none */
+        void onImported(File file, ImportJob.Progress progress, List<String> warnings);
+
+        void onError(File file, Throwable error);
+    }
+
+    private final Path folder;
+    private final ImportJob.Committer committer;
+    private final DuplicateDetector duplicateDetector;
+    private final File stateFile;
+    private final Properties imported = new Properties();
+    private final StatementHistory history = new StatementHistory();
+    private Listener listener;
+
+    private WatchService watchService;
+    private Thread watchThread;
+    private ScheduledExecutorService debouncer;
+    private ExecutorService importer;
+    private final Map<Path, ScheduledFuture<?>> pending = new HashMap<>();
+    private volatile boolean running;
+
+    /**
+     * @param committer Receives parsed batches, e.g. adding them through {@link DataManager#addTransactions}
+     * @param duplicateDetector Filters statements that overlap earlier imports, may be null
+     */
+    public WatchedFolderImporter(File folder, ImportJob.Committer committer, DuplicateDetector duplicateDetector) {
+        this.folder = folder.toPath().toAbsolutePath();
+        this.committer = committer;
+        this.duplicateDetector = duplicateDetector;
+        this.stateFile = new File(DataManager.getDataDirectory(), STATE_FILE);
+        loadState();
+    }
+
+    /**
+     * Folder chosen in a previous session, or null
+     */
+    public static File getSavedFolder() {
+        Properties props = new Properties();
+        load(new File(DataManager.getDataDirectory(), STATE_FILE), props);
+        String path = props.getProperty(FOLDER_KEY);
+        return path != null ? new File(path) : null;
+    }
+
+    /**
+     * Remember the watched folder for the next session, or forget it
+     */
+    public void saveFolder(boolean remember) {
+        synchronized (this) {
+            if (remember) {
+                imported.setProperty(FOLDER_KEY, folder.toString());
+            } else {
+                imported.remove(FOLDER_KEY);
+            }
+            store();
+        }
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public File getFolder() {
+        return folder.toFile();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) return;
+        watchService = FileSystems.getDefault().newWatchService();
+        folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        debouncer = Executors.newSingleThreadScheduledExecutor(TaskExecutors.daemonFactory("watch-debounce"));
+        importer = Executors.newSingleThreadExecutor(TaskExecutors.daemonFactory("watch-import"));
+        running = true;
+
+        watchThread = TaskExecutors.daemonFactory("watch-folder").newThread(this::watchLoop);
+        watchThread.start();
+
+        // Statements dropped while the app was closed
+        scanFolder();
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        debouncer.shutdownNow();
+        importer.shutdownNow();
+        synchronized (pending) {
+            pending.clear();
+        }
+    }
+
+    private void watchLoop() {
+        while (running) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Events were dropped, fall back to a full listing
+                    scanFolder();
+                } else {
+                    schedule(folder.resolve((Path) event.context()));
+                }
+            }
+            if (!key.reset()) {
+                System.err.println("Watched folder is no longer accessible: " + folder);
+                stop();
+                break;
+            }
+        }
+    }
+
+    private void scanFolder() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder)) {
+            for (Path file : files) {
+                schedule(file);
+            }
+        } catch (IOException e) {
+            System.err.println("Error listing watched folder: " + e.getMessage());
+        }
+    }
+
+    /**
+     * (Re)start the quiet period for a file
+     */
+    private void schedule(Path file) {
+        if (!running || !BankStatementParser.isSupportedFile(file.toFile())) {
+            return;
+        }
+        synchronized (pending) {
+            ScheduledFuture<?> previous = pending.remove(file);
+            if (previous != null) {
+                previous.cancel(false);
+            }
+            long size = file.toFile().length();
+            pending.put(file, debouncer.schedule(() -> settle(file, size), QUIET_PERIOD_MS, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Queue the file once its size stopped changing
+     */
+    private void settle(Path file, long sizeBefore) {
+        synchronized (pending) {
+            pending.remove(file);
+        }
+        File f = file.toFile();
+        if (!f.isFile()) {
+            return;
+        }
+        if (f.length() != sizeBefore || !isReadable(f)) {
+            schedule(file);
+            return;
+        }
+        if (isImported(f)) {
+            return;
+        }
+        importer.submit(() -> importFile(f));
+    }
+
+    /**
+     * Writers on some platforms hold an exclusive lock until the copy is done
+     */
+    private static boolean isReadable(File file) {
+        try {
+            new FileInputStream(file).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void importFile(File file) {
+        if (!running || isImported(file)) return;
+        ImportJob job = new ImportJob(ImportSources.bankStatement(file), committer);
+        job.setDuplicateDetector(duplicateDetector);
+        StatementReconciler reconciler = BankStatementParser.isZip(file.getName()) ? null : new StatementReconciler();
+        job.setReconciler(reconciler);
+        try {
+            job.start();
+            job.await();
+        } catch (InterruptedException e) {
+            job.cancel();
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        Listener l = listener;
+        if (job.getState() == ImportJob.State.COMPLETED) {
+            markImported(file);
+            List<String> warnings = new ArrayList<>();
+            if (reconciler != null) {
+                StatementReconciler.Result result = reconciler.getResult();
+                for (StatementReconciler.Issue issue : result.getIssues()) {
+                    warnings.add(issue.toString());
+                }
+                warnings.addAll(history.check(result));
+                history.record(result);
+            }
+            if (l != null) {
+                l.onImported(file, job.getProgress(), warnings);
+            }
+        } else if (job.getState() == ImportJob.State.FAILED && l != null) {
+            l.onError(file, job.getError());
+        }
+    }
+
+    private synchronized boolean isImported(File file) {
+        return signature(file).equals(imported.getProperty(file.getAbsolutePath()));
+    }
+
+    private synchronized void markImported(File file) {
+        imported.setProperty(file.getAbsolutePath(), signature(file));
+        store();
+    }
+
+    private void store() {
+        try (OutputStream out = new FileOutputStream(stateFile)) {
+            imported.store(out, "Expenso watched folder imports");
+        } catch (IOException e) {
+            System.err.println("Error saving watched folder state: " + e.getMessage());
+        }
+    }
+
+    private static String signature(File file) {
+        return file.length() + ":" + file.lastModified();
+    }
+
+    private void loadState() {
+        load(stateFile, imported);
+    }
+
+    private static void load(File file, Properties props) {
+        if (!file.exists()) return;
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+        } catch (IOException e) {
+            System.err.println("Error loading watched folder state: " + e.getMessage());
+        }
+    }
+}